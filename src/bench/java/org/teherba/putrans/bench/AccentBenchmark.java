@@ -0,0 +1,209 @@
+/*  JMH benchmark for the accent composition in a6 brackets
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+    äöüÄÖÜß - Caution: always store this file as UTF-8!
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  org.teherba.putrans.AccentMap;
+import  java.util.Random;
+import  java.util.concurrent.TimeUnit;
+import  org.openjdk.jmh.annotations.Benchmark;
+import  org.openjdk.jmh.annotations.BenchmarkMode;
+import  org.openjdk.jmh.annotations.Fork;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Measurement;
+import  org.openjdk.jmh.annotations.Mode;
+import  org.openjdk.jmh.annotations.OperationsPerInvocation;
+import  org.openjdk.jmh.annotations.OutputTimeUnit;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+import  org.openjdk.jmh.annotations.Warmup;
+
+/** Compares the table lookup in {@link AccentMap} with the nested
+ *  <em>switch</em> statements which <em>IBM6788Converter.evalA6Code</em>
+ *  used before. The pairs are drawn from German and French umlauts
+ *  and accents, with some unknown pairs.
+ *  @author Dr. Georg Fischer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AccentBenchmark {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** number of pairs per invocation */
+    private static final int PAIRS = 1024;
+
+    /** EBCDIC base characters: a, A, e, E, i, I, o, O, u, U, c, C, and unknown x */
+    private static final int[] BASES   = { 0x81, 0xc1, 0x85, 0xc5, 0x89, 0xc9, 0x96, 0xd6, 0xa4, 0xe4, 0x83, 0xc3, 0xa7 };
+    /** accents: diaeresis (most frequent), acute, grave, circumflex, cedilla, slash */
+    private static final int[] ACCENTS = { 0xbd, 0xbd, 0xbd, 0xbe, 0xbe, 0x79, 0x5f, 0x9d, 0x61 };
+
+    /** 1st bytes (base characters) */
+    private int[] ch4s;
+    /** 2nd bytes (accents) */
+    private int[] ch5s;
+
+    /** the table under test */
+    private AccentMap accents;
+
+    /** Draws the pairs
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(6788);
+        ch4s = new int[PAIRS];
+        ch5s = new int[PAIRS];
+        int ind = 0;
+        while (ind < PAIRS) {
+            ch4s[ind] = BASES  [random.nextInt(BASES  .length)];
+            ch5s[ind] = ACCENTS[random.nextInt(ACCENTS.length)];
+            ind ++;
+        } // while ind
+        accents = AccentMap.getInstance();
+    } // setup
+
+    /** Composes all pairs with the table
+     *  @return checksum
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int table() {
+        int sum = 0;
+        int ind = 0;
+        while (ind < PAIRS) {
+            sum += accents.get(ch5s[ind], ch4s[ind]);
+            ind ++;
+        } // while ind
+        return sum;
+    } // table
+
+    /** Composes all pairs with the former switch statements
+     *  @return checksum
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int switches() {
+        int sum = 0;
+        int ind = 0;
+        while (ind < PAIRS) {
+            sum += switchCode(ch4s[ind], ch5s[ind]);
+            ind ++;
+        } // while ind
+        return sum;
+    } // switches
+
+    /** The former composition in <em>IBM6788Converter.evalA6Code</em>
+     *  @param ch4 EBCDIC character to be accented
+     *  @param ch5 accent
+     *  @return the Unicode character, {@link AccentMap#UNKNOWN} or {@link AccentMap#IGNORE}
+     */
+    public static char switchCode(int ch4, int ch5) {
+        char result = AccentMap.IGNORE;
+        switch (ch5) {
+            case 0x08: // ignore, micro stepping ???
+                if (ch4 >= 0x20 && ch4 <= 0x2f) {
+                } else {
+                     result = AccentMap.UNKNOWN;
+                }
+                break;
+            case 0x5f: // circumflex over EBCDIC
+                switch(ch4) {
+                    case 0x81: result = 'â'; break; // acircum
+                    case 0xc1: result = 'Â'; break; // Acircum
+                    case 0x85: result = 'ê'; break; // ecircum
+                    case 0xc5: result = 'Ê'; break; // Ecircum
+                    case 0x89: result = 'î'; break; // icircum
+                    case 0xc9: result = 'Î'; break; // Icircum
+                    case 0x96: result = 'ô'; break; // ocircum
+                    case 0xd6: result = 'Ô'; break; // Ocircum
+                    case 0xa4: result = 'û'; break; // ucircum
+                    case 0xe4: result = 'Û'; break; // Ucircum
+                    default:   result = AccentMap.UNKNOWN; break;
+                }
+                break;
+            case 0x61: // "/" over EBCDIC
+                switch(ch4) {
+                    case 0x96: result = 'ø'; break; // o/
+                    case 0xd6: result = 'Ø'; break; // O/
+                    default:   result = AccentMap.UNKNOWN; break;
+                }
+                break;
+            case 0x79: // grave over EBCDIC
+                switch(ch4) {
+                    case 0x81: result = 'à'; break; // agrave
+                    case 0xc1: result = 'À'; break; // Agrave
+                    case 0x85: result = 'è'; break; // egrave
+                    case 0xc5: result = 'È'; break; // Egrave
+                    case 0x89: result = 'ì'; break; // igrave
+                    case 0xc9: result = 'Ì'; break; // Ugrave
+                    case 0x96: result = 'ò'; break; // ograve
+                    case 0xd6: result = 'Ò'; break; // Ograve
+                    case 0xa4: result = 'ù'; break; // ugrave
+                    case 0xe4: result = 'Ù'; break; // Ugrave
+                    default:   result = AccentMap.UNKNOWN; break;
+                }
+                break;
+            // 91 would be degree/ring
+            case 0x9d: // cedilla under EBCDIC
+                switch(ch4) {
+                    case 0x83: result = 'ç'; break; // cedil
+                    case 0xc3: result = 'Ç'; break; // Cedil
+                    default:   result = AccentMap.UNKNOWN; break;
+                }
+                break;
+            // bc would be macron (overline)
+            case 0xbd: // diaresis over EBCDIC
+                switch(ch4) {
+                    case 0x81: result = 'ä'; break; // ae
+                    case 0xc1: result = 'Ä'; break; // Ae
+                    case 0x85: result = 'ë'; break; // ediaresis
+                    case 0xc5: result = 'Ë'; break; // Ediaresis
+                    case 0x89: result = 'ï'; break; // idiaresis
+                    case 0xc9: result = 'Ï'; break; // Idiaresis
+                    case 0x96: result = 'ö'; break; // oe
+                    case 0xd6: result = 'Ö'; break; // Oe
+                    case 0xa4: result = 'ü'; break; // ue
+                    case 0xe4: result = 'Ü'; break; // Ue
+                    default:   result = AccentMap.UNKNOWN; break;
+                }
+                break;
+            case 0xbe: // acute over EBCDIC
+                switch(ch4) {
+                    case 0x81: result = 'á'; break; // aacute
+                    case 0xc1: result = 'Á'; break; // Aacute
+                    case 0x85: result = 'é'; break; // eacute
+                    case 0xc5: result = 'É'; break; // Eacute
+                    case 0x89: result = 'í'; break; // iacute
+                    case 0xc9: result = 'Í'; break; // Iacute
+                    case 0x96: result = 'ó'; break; // oacute
+                    case 0xd6: result = 'Ó'; break; // Oacute
+                    case 0xa4: result = 'ú'; break; // uacute
+                    case 0xe4: result = 'Ú'; break; // Uacute
+                    default:   result = AccentMap.UNKNOWN; break;
+                }
+                break;
+        } // switch(ch5)
+        return result;
+    } // switchCode
+
+} // AccentBenchmark
@@ -0,0 +1,74 @@
+/*  Test data for the JMH benchmarks
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  java.io.File;
+import  java.io.IOException;
+import  java.nio.file.Files;
+
+/** Loads the 6788 sample document for the benchmarks,
+ *  and scales it up by repeating its body behind the d6 file header.
+ *  The input file is <em>test/ibm6788/DOCUM002.TXT</em>
+ *  (relative to the current directory), or the file named by the
+ *  system property <em>putrans.bench.input</em>.
+ *  @author Dr. Georg Fischer
+ */
+public class BenchmarkInput {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** Default sample document */
+    public static final String DEFAULT_INPUT = "test/ibm6788/DOCUM002.TXT";
+
+    /** Length of the d6 file header bracket */
+    private static final int HEADER_LEN = 0x48;
+
+    /** No-args Constructor
+     */
+    private BenchmarkInput() {
+    } // Constructor
+
+    /** Reads the sample document
+     *  @return all bytes of the sample file
+     *  @throws IOException if the file cannot be read
+     */
+    public static byte[] sample() throws IOException {
+        String fileName = System.getProperty("putrans.bench.input", DEFAULT_INPUT);
+        return Files.readAllBytes(new File(fileName).toPath());
+    } // sample
+
+    /** Builds a scaled-up input document
+     *  @param scale number of copies of the document body
+     *  @return the d6 header followed by <em>scale</em> copies of the body
+     *  @throws IOException if the sample file cannot be read
+     */
+    public static byte[] scaled(int scale) throws IOException {
+        byte[] sample = sample();
+        int head = sample.length > HEADER_LEN && (sample[1] & 0xff) == 0xd6 ? HEADER_LEN : 0;
+        int body = sample.length - head;
+        byte[] result = new byte[head + body * scale];
+        System.arraycopy(sample, 0, result, 0, head);
+        int icopy = 0;
+        while (icopy < scale) {
+            System.arraycopy(sample, head, result, head + body * icopy, body);
+            icopy ++;
+        } // while icopy
+        return result;
+    } // scaled
+
+} // BenchmarkInput
@@ -0,0 +1,88 @@
+/*  Runs the JMH benchmarks and reports allocation per input byte
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+
+    Usage:
+        java -jar dist/putrans-bench.jar [JMH options]
+    for example:
+        java -jar dist/putrans-bench.jar Generator -p format=ibm6788
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  java.util.Collection;
+import  org.openjdk.jmh.infra.BenchmarkParams;
+import  org.openjdk.jmh.profile.GCProfiler;
+import  org.openjdk.jmh.results.Result;
+import  org.openjdk.jmh.results.RunResult;
+import  org.openjdk.jmh.runner.Runner;
+import  org.openjdk.jmh.runner.options.CommandLineOptions;
+import  org.openjdk.jmh.runner.options.Options;
+import  org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Main program of the benchmark jar. It accepts all JMH commandline options,
+ *  always adds the GC profiler, and prints a summary with the throughput
+ *  in bytes/s and the number of bytes allocated per input byte
+ *  (<em>gc.alloc.rate.norm</em> divided by the bytes per operation).
+ *  @author Dr. Georg Fischer
+ */
+public class BenchmarkMain {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** Name of the auxiliary counter in {@link ByteCounter} */
+    private static final String BYTES  = "bytes";
+    /** Name of the normalized allocation rate of the GC profiler */
+    private static final String ALLOC  = "gc.alloc.rate.norm";
+
+    /** No-args Constructor
+     */
+    private BenchmarkMain() {
+    } // Constructor
+
+    /** Main program
+     *  @param args JMH commandline options
+     *  @throws Exception for JMH errors
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        System.out.println();
+        System.out.println(String.format("%-64s %14s %14s", "Benchmark", "bytes/s", "alloc B/byte"));
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            StringBuffer name = new StringBuffer(128);
+            String bench = params.getBenchmark();
+            name.append(bench.substring(bench.lastIndexOf('.', bench.lastIndexOf('.') - 1) + 1));
+            for (String key : params.getParamsKeys()) {
+                name.append(' ');
+                name.append(key);
+                name.append('=');
+                name.append(params.getParam(key));
+            } // for key
+            Result<?> bytes  = result.getSecondaryResults().get(BYTES);
+            Result<?> alloc  = result.getSecondaryResults().get(ALLOC);
+            double opsRate   = result.getPrimaryResult().getScore();
+            double bytesRate = bytes != null ? bytes.getScore() : Double.NaN;
+            double allocNorm = alloc != null ? alloc.getScore() : Double.NaN;
+            double perByte   = allocNorm / (bytesRate / opsRate);
+            System.out.println(String.format("%-64s %14.0f %14.3f", name.toString(), bytesRate, perByte));
+        } // for result
+    } // main
+
+} // BenchmarkMain
@@ -0,0 +1,108 @@
+/*  SAX sink for the JMH benchmarks
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  java.util.ArrayList;
+import  org.openjdk.jmh.infra.Blackhole;
+import  org.xml.sax.Attributes;
+import  org.xml.sax.ext.LexicalHandler;
+import  org.xml.sax.helpers.DefaultHandler;
+
+/** Consumes all SAX events of a generator without serializing them,
+ *  such that only the cost of the generator itself is measured.
+ *  Optionally records the character data for a later replay
+ *  into a serializer.
+ *  @author Dr. Georg Fischer
+ */
+public class BlackholeHandler extends DefaultHandler implements LexicalHandler {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** JMH sink which prevents dead code elimination */
+    private Blackhole hole;
+
+    /** recorded character data, or null if not recording */
+    private ArrayList<char[]> record;
+
+    /** Constructor with a sink
+     *  @param hole JMH blackhole, or null for recording only
+     */
+    public BlackholeHandler(Blackhole hole) {
+        this.hole   = hole;
+        this.record = null;
+    } // Constructor 1
+
+    /** Sets the sink
+     *  @param hole JMH blackhole
+     */
+    public void setBlackhole(Blackhole hole) {
+        this.hole = hole;
+    } // setBlackhole
+
+    /** Starts the recording of character data
+     */
+    public void startRecording() {
+        record = new ArrayList<char[]>(256);
+    } // startRecording
+
+    /** Gets the recorded character data
+     *  @return list of character chunks in document order
+     */
+    public ArrayList<char[]> getRecord() {
+        return record;
+    } // getRecord
+
+    public void startElement(String uri, String localName, String qName, Attributes attrs) {
+        if (hole != null) {
+            hole.consume(qName);
+            hole.consume(attrs);
+        }
+    } // startElement
+
+    public void endElement(String uri, String localName, String qName) {
+        if (hole != null) {
+            hole.consume(qName);
+        }
+    } // endElement
+
+    public void characters(char[] ch, int start, int len) {
+        if (hole != null) {
+            hole.consume(ch);
+            hole.consume(len);
+        }
+        if (record != null) {
+            char[] chunk = new char[len];
+            System.arraycopy(ch, start, chunk, 0, len);
+            record.add(chunk);
+        }
+    } // characters
+
+    public void comment(char[] ch, int start, int len) {
+        if (hole != null) {
+            hole.consume(len);
+        }
+    } // comment
+
+    public void startCDATA() { }
+    public void endCDATA() { }
+    public void startDTD(String name, String publicId, String systemId) { }
+    public void endDTD() { }
+    public void startEntity(String name) { }
+    public void endEntity(String name) { }
+
+} // BlackholeHandler
@@ -0,0 +1,125 @@
+/*  JMH benchmark for bracket-dense 6788 input
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  org.teherba.putrans.conv.IBM6788Converter;
+import  java.io.ByteArrayInputStream;
+import  java.io.IOException;
+import  java.util.concurrent.TimeUnit;
+import  org.openjdk.jmh.annotations.Benchmark;
+import  org.openjdk.jmh.annotations.BenchmarkMode;
+import  org.openjdk.jmh.annotations.Fork;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Measurement;
+import  org.openjdk.jmh.annotations.Mode;
+import  org.openjdk.jmh.annotations.OutputTimeUnit;
+import  org.openjdk.jmh.annotations.Param;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+import  org.openjdk.jmh.annotations.Warmup;
+import  org.openjdk.jmh.infra.Blackhole;
+
+/** Measures {@link IBM6788Converter} on a synthetic document where every
+ *  line consists of a margin bracket, an accent bracket and a few words.
+ *  Run it with the GC profiler (<em>-prof gc</em>) to see the allocation
+ *  per byte caused by the bracket handling.
+ *  @author Dr. Georg Fischer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BracketBenchmark {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** margin bracket: left 0x20, right 0x1d01 */
+    private static final int[] MARGINS = { 0x2b, 0xd4, 0x60, 0x00, 0x20, 0x00, 0x1d, 0x01, 0x00, 0xd4, 0x2b };
+    /** accent bracket: a with diaeresis */
+    private static final int[] UMLAUT  = { 0x2b, 0xa6, 0x07, 0x00, 0x81, 0xbd, 0xa6, 0x2b };
+    /** EBCDIC "Text " */
+    private static final int[] WORD    = { 0xe3, 0x85, 0xa7, 0xa3, 0x40 };
+
+    /** number of lines in the document */
+    @Param({"1000", "100000"})
+    public int lines;
+
+    /** input document */
+    private byte[] input;
+    /** converter under test */
+    private IBM6788Converter generator;
+    /** consumer of the SAX events */
+    private BlackholeHandler handler;
+
+    /** Builds the document and the converter
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        int lineLen = MARGINS.length + UMLAUT.length + WORD.length * 4 + 1;
+        input = new byte[lineLen * lines];
+        int pos = 0;
+        int iline = 0;
+        while (iline < lines) {
+            pos = copy(MARGINS, pos);
+            pos = copy(UMLAUT , pos);
+            int iword = 0;
+            while (iword < 4) {
+                pos = copy(WORD, pos);
+                iword ++;
+            } // while iword
+            input[pos ++] = 0x06; // new line
+            iline ++;
+        } // while iline
+        generator = new IBM6788Converter();
+        generator.initialize();
+        handler = new BlackholeHandler(null);
+        generator.setContentHandler(handler);
+        generator.setLexicalHandler(handler);
+    } // setup
+
+    /** Copies some bytes into the input document
+     *  @param bytes the bytes to be copied
+     *  @param pos position in {@link #input}
+     *  @return position behind the copied bytes
+     */
+    private int copy(int[] bytes, int pos) {
+        int ind = 0;
+        while (ind < bytes.length) {
+            input[pos ++] = (byte) bytes[ind];
+            ind ++;
+        } // while ind
+        return pos;
+    } // copy
+
+    /** Converts the whole input document once
+     *  @param counter counts the bytes processed
+     *  @param hole consumes the SAX events
+     *  @throws IOException never for an in-memory input
+     */
+    @Benchmark
+    public void generate(ByteCounter counter, Blackhole hole) throws IOException {
+        handler.setBlackhole(hole);
+        generator.setByteReader(new ByteArrayInputStream(input));
+        hole.consume(generator.generate());
+        counter.bytes += input.length;
+    } // generate
+
+} // BracketBenchmark
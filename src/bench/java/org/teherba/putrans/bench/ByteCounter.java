@@ -0,0 +1,47 @@
+/*  Byte counter for the JMH benchmarks
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  org.openjdk.jmh.annotations.AuxCounters;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+
+/** Auxiliary JMH counter for the number of document bytes processed.
+ *  JMH reports it as a rate, that is in bytes/s,
+ *  beside the primary result in operations/s.
+ *  @author Dr. Georg Fischer
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class ByteCounter {
+    /* no CVSID here: all public fields of an @AuxCounters class are counters */
+
+    /** number of bytes processed in the current iteration */
+    public long bytes;
+
+    /** Resets the counter before each iteration
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+    } // reset
+
+} // ByteCounter
@@ -0,0 +1,146 @@
+/*  JMH benchmark for the generators (foreign format to XML)
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  org.teherba.putrans.TextConverter;
+import  org.teherba.putrans.conv.IBM6788Converter;
+import  org.teherba.xtrans.XMLTransformer;
+import  java.io.ByteArrayInputStream;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.nio.file.Files;
+import  java.util.concurrent.TimeUnit;
+import  org.apache.commons.io.output.NullWriter;
+import  org.openjdk.jmh.annotations.Benchmark;
+import  org.openjdk.jmh.annotations.BenchmarkMode;
+import  org.openjdk.jmh.annotations.Fork;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Measurement;
+import  org.openjdk.jmh.annotations.Mode;
+import  org.openjdk.jmh.annotations.OutputTimeUnit;
+import  org.openjdk.jmh.annotations.Param;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+import  org.openjdk.jmh.annotations.TearDown;
+import  org.openjdk.jmh.annotations.Warmup;
+import  org.openjdk.jmh.infra.Blackhole;
+
+/** Measures <em>generate()</em> (and thereby <em>processInput</em>)
+ *  of {@link IBM6788Converter} and {@link TextConverter}
+ *  on the sample document and on scaled-up copies of it.
+ *  The SAX events either go into a {@link BlackholeHandler} ("null")
+ *  or through the XML serializer into a null writer ("xml").
+ *  The input is read from a byte array ("stream"), or from a temporary
+ *  file ("file"), which is memory-mapped if it is large enough.
+ *  @author Dr. Georg Fischer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** source format */
+    @Param({"ibm6788", "text"})
+    public String format;
+
+    /** number of copies of the document body */
+    @Param({"1", "16", "256"})
+    public int scale;
+
+    /** where the SAX events go */
+    @Param({"null", "xml"})
+    public String sink;
+
+    /** where the input comes from */
+    @Param({"stream", "file"})
+    public String source;
+
+    /** input document */
+    private byte[] input;
+    /** temporary copy of the input document for source "file" */
+    private File inputFile;
+    /** converter under test */
+    private TextConverter generator;
+    /** consumer of the SAX events for sink "null" */
+    private BlackholeHandler handler;
+
+    /** Prepares the input and the converter pipeline
+     *  @throws Exception if the sample cannot be read
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        input     = BenchmarkInput.scaled(scale);
+        if (source.equals("file")) {
+            inputFile = File.createTempFile("putrans", ".TXT");
+            Files.write(inputFile.toPath(), input);
+        }
+        generator = format.equals("text") ? new TextConverter() : new IBM6788Converter();
+        generator.initialize();
+        if (sink.equals("xml")) {
+            XMLTransformer serializer = new XMLTransformer();
+            serializer.initialize();
+            serializer.setCharWriter(new NullWriter());
+            generator.setContentHandler(serializer);
+            generator.setLexicalHandler(serializer);
+        } else {
+            handler = new BlackholeHandler(null);
+            generator.setContentHandler(handler);
+            generator.setLexicalHandler(handler);
+        }
+    } // setup
+
+    /** Removes the temporary input file
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (inputFile != null) {
+            inputFile.delete();
+        }
+    } // tearDown
+
+    /** Converts the whole input document once
+     *  @param counter counts the bytes processed
+     *  @param hole consumes the SAX events
+     *  @throws IOException if the input file cannot be read
+     */
+    @Benchmark
+    public void generate(ByteCounter counter, Blackhole hole) throws IOException {
+        if (handler != null) {
+            handler.setBlackhole(hole);
+        }
+        InputStream in = inputFile != null
+                ? new FileInputStream(inputFile)
+                : new ByteArrayInputStream(input);
+        try {
+            generator.setByteReader(in);
+            hole.consume(generator.generate());
+        } finally {
+            in.close();
+        }
+        counter.bytes += input.length;
+    } // generate
+
+} // GeneratorBenchmark
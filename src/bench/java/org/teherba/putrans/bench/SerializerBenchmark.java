@@ -0,0 +1,146 @@
+/*  JMH benchmark for the serializers (XML to foreign format)
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.bench;
+import  org.teherba.putrans.TextConverter;
+import  org.teherba.putrans.conv.IBM6788Converter;
+import  java.io.ByteArrayInputStream;
+import  java.io.File;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.OutputStream;
+import  java.util.ArrayList;
+import  java.util.concurrent.TimeUnit;
+import  org.apache.commons.io.output.NullOutputStream;
+import  org.openjdk.jmh.annotations.Benchmark;
+import  org.openjdk.jmh.annotations.BenchmarkMode;
+import  org.openjdk.jmh.annotations.Fork;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Measurement;
+import  org.openjdk.jmh.annotations.Mode;
+import  org.openjdk.jmh.annotations.OutputTimeUnit;
+import  org.openjdk.jmh.annotations.Param;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+import  org.openjdk.jmh.annotations.TearDown;
+import  org.openjdk.jmh.annotations.Warmup;
+import  org.xml.sax.SAXException;
+
+/** Measures the reverse SAX path (<em>startDocument</em>,
+ *  <em>characters</em>, <em>endDocument</em>) of {@link IBM6788Converter}
+ *  and {@link TextConverter}. The character data is recorded once
+ *  from a forward conversion of the sample document, and then replayed
+ *  into the serializer, which writes to a null stream ("stream"),
+ *  or to a temporary file ("file"). The 6788 serializer patches the
+ *  header of a file in place, but holds the output of a stream
+ *  (spilling beyond 64 KB).
+ *  The byte counter counts the characters replayed.
+ *  @author Dr. Georg Fischer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** result format */
+    @Param({"ibm6788", "text"})
+    public String format;
+
+    /** number of copies of the document body */
+    @Param({"1", "16", "256"})
+    public int scale;
+
+    /** where the output goes */
+    @Param({"stream", "file"})
+    public String target;
+
+    /** recorded character data */
+    private ArrayList<char[]> record;
+    /** total number of recorded characters */
+    private long recordLen;
+    /** converter under test */
+    private TextConverter serializer;
+    /** temporary output file for target "file" */
+    private File outputFile;
+
+    /** Records the character data and prepares the serializer
+     *  @throws Exception if the sample cannot be read
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        IBM6788Converter generator = new IBM6788Converter();
+        generator.initialize();
+        BlackholeHandler handler = new BlackholeHandler(null);
+        handler.startRecording();
+        generator.setContentHandler(handler);
+        generator.setLexicalHandler(handler);
+        generator.setByteReader(new ByteArrayInputStream(BenchmarkInput.scaled(scale)));
+        generator.generate();
+        record    = handler.getRecord();
+        recordLen = 0;
+        for (char[] chunk : record) {
+            recordLen += chunk.length;
+        } // for chunk
+
+        serializer = format.equals("text") ? new TextConverter() : new IBM6788Converter();
+        serializer.initialize();
+        serializer.setByteWriter(NullOutputStream.NULL_OUTPUT_STREAM);
+        if (target.equals("file")) {
+            outputFile = File.createTempFile("putrans", ".out");
+        }
+    } // setup
+
+    /** Removes the temporary output file
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (outputFile != null) {
+            outputFile.delete();
+        }
+    } // tearDown
+
+    /** Serializes the recorded document once
+     *  @param counter counts the characters processed
+     *  @throws SAXException for SAX errors
+     *  @throws IOException if the output file cannot be written
+     */
+    @Benchmark
+    public void serialize(ByteCounter counter) throws SAXException, IOException {
+        OutputStream out = outputFile != null
+                ? new FileOutputStream(outputFile)
+                : NullOutputStream.NULL_OUTPUT_STREAM;
+        try {
+            serializer.setByteWriter(out);
+            serializer.startDocument();
+            for (char[] chunk : record) {
+                serializer.characters(chunk, 0, chunk.length);
+            } // for chunk
+            serializer.endDocument();
+        } finally {
+            out.close();
+        }
+        counter.bytes += recordLen;
+    } // serialize
+
+} // SerializerBenchmark
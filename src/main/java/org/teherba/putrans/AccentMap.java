@@ -0,0 +1,150 @@
+/*  AccentMap.java - composition of accents and base characters in IBM 6788 a6 brackets
+ *  @(#) $Id$
+ *  2026-10-17: invalid keys are skipped
+ *  2026-10-17, Georg Fischer: extracted from IBM6788Converter.evalA6Code
+ */
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teherba.putrans;
+import  java.io.FileInputStream;
+import  java.io.InputStream;
+import  java.io.InputStreamReader;
+import  java.util.Arrays;
+import  java.util.Iterator;
+import  java.util.Properties;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Maps pairs of (accent byte, EBCDIC base byte) from IBM 6788 a6 brackets
+ *  to Unicode characters. The table is read once from the resource
+ *  <em>ibm6788-accents.properties</em>, and optionally from a file
+ *  named by the system property <em>putrans.accents</em>.
+ *  The single instance is immutable after its construction
+ *  and is shared by all converters.
+ *  @author Dr. Georg Fischer
+ */
+public class AccentMap {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** Name of the table resource in the classpath */
+    public static final String RESOURCE = "ibm6788-accents.properties";
+    /** Name of the system property for an additional table file */
+    public static final String PROPERTY = "putrans.accents";
+
+    /** Result for a pair with a known accent, but an unknown base character */
+    public static final char UNKNOWN = '\u0000';
+    /** Result for a pair which should be ignored */
+    public static final char IGNORE  = '\uffff';
+
+    /** Array bound for both bytes */
+    private static final int MAX_TAB = 256;
+
+    /** Unicode characters indexed by (accent &lt;&lt; 8) | base */
+    private final char[] codes;
+
+    /** Holder for the lazily built single instance */
+    private static class Holder {
+        static final AccentMap INSTANCE = new AccentMap();
+    } // Holder
+
+    /** Gets the shared instance
+     *  @return the accent map built from the resource (and the optional file)
+     */
+    public static AccentMap getInstance() {
+        return Holder.INSTANCE;
+    } // getInstance
+
+    /** Constructor, loads the table(s)
+     */
+    private AccentMap() {
+        Logger log = LogManager.getLogger(AccentMap.class.getName());
+        codes = new char[MAX_TAB * MAX_TAB];
+        Arrays.fill(codes, IGNORE); // accents which are not listed at all
+        boolean[] known = new boolean[MAX_TAB];
+        try {
+            InputStream in = AccentMap.class.getClassLoader().getResourceAsStream(RESOURCE);
+            if (in == null) {
+                log.error("resource " + RESOURCE + " not found");
+            } else {
+                load(in, known, RESOURCE, log);
+            }
+            String fileName = System.getProperty(PROPERTY);
+            if (fileName != null) {
+                load(new FileInputStream(fileName), known, fileName, log);
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+    } // Constructor
+
+    /** Tells whether a key consists of 4 hexadecimal digits
+     *  @param key key of a table entry
+     *  @return whether the key is valid
+     */
+    private static boolean isValidKey(String key) {
+        boolean result = key.length() == 4;
+        int pos = 0;
+        while (result && pos < key.length()) {
+            result = Character.digit(key.charAt(pos), 16) >= 0;
+            pos ++;
+        } // while pos
+        return result;
+    } // isValidKey
+
+    /** Stores the entries of one table.
+     *  Entries with an invalid key are skipped with a warning.
+     *  @param in stream with the properties in UTF-8, which will be closed
+     *  @param known which accents were already listed
+     *  @param source name of the table, for messages
+     *  @param log logger for the messages
+     *  @throws Exception if the table cannot be read
+     */
+    private void load(InputStream in, boolean[] known, String source, Logger log) throws Exception {
+        Properties table = new Properties();
+        try {
+            table.load(new InputStreamReader(in, "UTF-8"));
+        } finally {
+            in.close();
+        }
+        Iterator<String> iter = table.stringPropertyNames().iterator();
+        while (iter.hasNext()) {
+            String key    = iter.next();
+            String value  = table.getProperty(key);
+            if (! isValidKey(key)) {
+                log.warn(source + ": invalid key \"" + key + "\" skipped, 4 hexadecimal digits expected");
+                continue;
+            }
+            int    accent = Integer.parseInt(key.substring(0, 2), 16);
+            int    base   = Integer.parseInt(key.substring(2, 4), 16);
+            if (! known[accent]) { // now all other pairs with this accent are unknown
+                Arrays.fill(codes, accent * MAX_TAB, (accent + 1) * MAX_TAB, UNKNOWN);
+                known[accent] = true;
+            }
+            codes[accent * MAX_TAB + base] = value.length() > 0 ? value.charAt(0) : IGNORE;
+        } // while iter
+    } // load
+
+    /** Gets the composed character
+     *  @param accent accent byte (2nd byte in the a6 bracket)
+     *  @param base EBCDIC byte of the base character (1st byte)
+     *  @return the Unicode character, {@link #UNKNOWN} or {@link #IGNORE}
+     */
+    public char get(int accent, int base) {
+        return codes[((accent & 0xff) << 8) | (base & 0xff)];
+    } // get
+
+} // AccentMap
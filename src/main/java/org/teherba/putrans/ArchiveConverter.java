@@ -0,0 +1,481 @@
+/*  Converts all documents of a ZIP or TAR archive into another archive
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+
+    Usage:
+        java -jar dist/putrans.jar -archive -ibm6788 -xml in.zip out.zip [-glob "*.TXT"] [options]
+        java -jar dist/putrans.jar -archive -auto    -xml in.tar.gz out.tar [-glob "*.TXT"] [options]
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.Converter;
+import  org.teherba.putrans.PutransFactory;
+import  org.teherba.xtrans.BaseTransformer;
+import  java.io.BufferedInputStream;
+import  java.io.BufferedOutputStream;
+import  java.io.ByteArrayInputStream;
+import  java.io.ByteArrayOutputStream;
+import  java.io.FileInputStream;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.OutputStream;
+import  java.nio.charset.StandardCharsets;
+import  java.nio.file.FileSystems;
+import  java.nio.file.PathMatcher;
+import  java.nio.file.Paths;
+import  java.util.ArrayList;
+import  java.util.LinkedList;
+import  java.util.concurrent.Callable;
+import  java.util.concurrent.ExecutionException;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.Executors;
+import  java.util.concurrent.Future;
+import  java.util.zip.GZIPInputStream;
+import  java.util.zip.GZIPOutputStream;
+import  java.util.zip.ZipEntry;
+import  java.util.zip.ZipInputStream;
+import  java.util.zip.ZipOutputStream;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Reads the entries of a ZIP or TAR archive (optionally gzipped) as a stream,
+ *  converts the matching entries on a pool of worker threads, and writes
+ *  the results into a new archive, in the order of the input entries.
+ *  No intermediate files are written: each entry is held in memory
+ *  while it is converted, and the number of entries in flight is bounded,
+ *  such that the memory does not grow with the size of the archive.
+ *  <p>
+ *  The kind of the input archive is recognized from its first bytes,
+ *  the kind of the output archive from the extension of its name
+ *  (".zip", ".tar", ".tar.gz" or ".tgz").
+ *  Entries which do not match the pattern, or which cannot be converted,
+ *  are not copied into the output archive.
+ *  @author Dr. Georg Fischer
+ */
+public class ArchiveConverter {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Length of a TAR block */
+    private static final int BLOCK_LEN = 512;
+
+    /** code for the input format, or "auto" */
+    private String sourceFormat;
+    /** code for the output format */
+    private String resultFormat;
+    /** option string for both transformers */
+    private String options;
+    /** selects the entries by their name */
+    private PathMatcher matcher;
+    /** extension appended to the output entries */
+    private String extension;
+    /** converter which is shared by all worker threads */
+    private Converter converter;
+
+    /** An entry of an archive */
+    protected static class Entry {
+        /** path in the archive */
+        public String name;
+        /** modification time in milliseconds */
+        public long   time;
+        /** content, or null if the conversion failed */
+        public byte[] data;
+    } // inner class Entry
+
+    /** Constructor
+     *  @param sourceFormat code for the input format, for example "ibm6788", or "auto"
+     *  @param resultFormat code for the output format, for example "xml"
+     *  @param options option string for both transformers
+     *  @param glob pattern for the names of the entries, for example "*.TXT"
+     */
+    public ArchiveConverter(String sourceFormat, String resultFormat, String options, String glob) {
+        log = LogManager.getLogger(ArchiveConverter.class.getName());
+        this.sourceFormat = sourceFormat;
+        this.resultFormat = resultFormat;
+        this.options      = options;
+        this.matcher      = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.converter    = new Converter();
+        converter.factory = new PutransFactory();
+        BaseTransformer serializer = converter.factory.getTransformer(resultFormat);
+        this.extension    = serializer != null ? serializer.getFileExtension() : resultFormat;
+    } // Constructor
+
+    //----------------
+    // TAR
+    //----------------
+
+    /** Gets a NUL-terminated string from a TAR header
+     *  @param block the header
+     *  @param start offset of the field
+     *  @param len length of the field
+     *  @return content of the field
+     */
+    private static String getField(byte[] block, int start, int len) {
+        int end = start;
+        while (end < start + len && block[end] != 0) {
+            end ++;
+        } // while end
+        return new String(block, start, end - start, StandardCharsets.UTF_8);
+    } // getField
+
+    /** Gets an octal number from a TAR header
+     *  @param block the header
+     *  @param start offset of the field
+     *  @param len length of the field
+     *  @return value of the field
+     */
+    private static long getOctal(byte[] block, int start, int len) {
+        long result = 0;
+        int ipos = start;
+        while (ipos < start + len && (block[ipos] == ' ' || block[ipos] == 0)) {
+            ipos ++;
+        } // while leading spaces
+        while (ipos < start + len && block[ipos] >= '0' && block[ipos] <= '7') {
+            result = (result << 3) + (block[ipos] - '0');
+            ipos ++;
+        } // while digits
+        return result;
+    } // getOctal
+
+    /** Stores an octal number, with leading zeroes and a trailing NUL, into a TAR header
+     *  @param block the header
+     *  @param start offset of the field
+     *  @param len length of the field
+     *  @param value number to be stored
+     */
+    private static void putOctal(byte[] block, int start, int len, long value) {
+        int ipos = start + len - 1;
+        block[ipos --] = 0;
+        while (ipos >= start) {
+            block[ipos --] = (byte) ('0' + (value & 7));
+            value >>>= 3;
+        } // while ipos
+    } // putOctal
+
+    /** Reads a number of bytes completely
+     *  @param in input stream
+     *  @param buffer where to store the bytes
+     *  @param len number of bytes to be read
+     *  @return whether all bytes were read
+     *  @throws IOException if the stream cannot be read
+     */
+    private static boolean readFully(InputStream in, byte[] buffer, int len) throws IOException {
+        int pos = 0;
+        int count = 0;
+        while (pos < len && count >= 0) {
+            count = in.read(buffer, pos, len - pos);
+            if (count > 0) {
+                pos += count;
+            }
+        } // while pos
+        return pos == len;
+    } // readFully
+
+    /** Reads the next regular file from a TAR stream.
+     *  Directories, links and PAX headers are skipped; GNU long names are evaluated.
+     *  @param in input stream, positioned at a header block
+     *  @return the next file, or null at the end of the archive
+     *  @throws IOException if the stream cannot be read, or is truncated
+     */
+    private static Entry readTarEntry(InputStream in) throws IOException {
+        Entry result = null;
+        byte[] block = new byte[BLOCK_LEN];
+        String longName = null;
+        while (result == null && readFully(in, block, BLOCK_LEN) && block[0] != 0) {
+            long size = getOctal(block, 124, 12);
+            if (size > Integer.MAX_VALUE - BLOCK_LEN) {
+                throw new IOException("TAR entry too large: " + getField(block, 0, 100));
+            }
+            byte[] data = new byte[(int) ((size + BLOCK_LEN - 1) / BLOCK_LEN * BLOCK_LEN)];
+            if (! readFully(in, data, data.length)) {
+                throw new IOException("TAR archive truncated");
+            }
+            char type = (char) block[156];
+            if (type == 'L') { // GNU long name of the following entry
+                longName = getField(data, 0, (int) size);
+            } else if (type == '0' || type == 0) { // regular file
+                result = new Entry();
+                String prefix = getField(block, 345, 155);
+                result.name = longName != null ? longName
+                        : (getField(block, 257, 5).equals("ustar") && prefix.length() > 0 ? prefix + "/" : "")
+                        + getField(block, 0, 100);
+                result.time = getOctal(block, 136, 12) * 1000L;
+                result.data = new byte[(int) size];
+                System.arraycopy(data, 0, result.data, 0, (int) size);
+            } else { // directory, link, PAX header ...
+                longName = null;
+            }
+        } // while not found
+        return result;
+    } // readTarEntry
+
+    /** Writes a file into a TAR stream, with a ustar header
+     *  @param out output stream
+     *  @param entry the file
+     *  @throws IOException if the stream cannot be written, or the name is too long
+     */
+    private static void writeTarEntry(OutputStream out, Entry entry) throws IOException {
+        byte[] block = new byte[BLOCK_LEN];
+        byte[] name  = entry.name.getBytes(StandardCharsets.UTF_8);
+        int split = 0; // name = prefix "/" rest
+        if (name.length > 100) { // find the first slash behind which the rest fits
+            split = name.length - 101;
+            while (split < name.length && split <= 155 && name[split] != '/') {
+                split ++;
+            } // while split
+            if (split <= 0 || split > 155 || split >= name.length) {
+                throw new IOException("name too long for TAR: " + entry.name);
+            }
+        }
+        if (split > 0) {
+            System.arraycopy(name, 0, block, 345, split);
+            System.arraycopy(name, split + 1, block, 0, name.length - split - 1);
+        } else {
+            System.arraycopy(name, 0, block, 0, name.length);
+        }
+        putOctal(block, 100,  8, 0644);
+        putOctal(block, 108,  8, 0);
+        putOctal(block, 116,  8, 0);
+        putOctal(block, 124, 12, entry.data.length);
+        putOctal(block, 136, 12, entry.time / 1000L);
+        block[156] = '0';
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, block, 257, 8);
+        int ipos = 148;
+        while (ipos < 156) { // checksum field counts as spaces
+            block[ipos ++] = ' ';
+        } // while ipos
+        long sum = 0;
+        ipos = 0;
+        while (ipos < BLOCK_LEN) {
+            sum += block[ipos ++] & 0xff;
+        } // while ipos
+        putOctal(block, 148, 7, sum);
+        out.write(block);
+        out.write(entry.data);
+        int rest = entry.data.length % BLOCK_LEN;
+        if (rest > 0) {
+            out.write(new byte[BLOCK_LEN - rest]);
+        }
+    } // writeTarEntry
+
+    //----------------
+    // Conversion
+    //----------------
+
+    /** Reads the rest of a stream
+     *  @param in input stream
+     *  @return all bytes up to the end of the stream
+     *  @throws IOException if the stream cannot be read
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int count = 0;
+        while ((count = in.read(buffer)) >= 0) {
+            result.write(buffer, 0, count);
+        } // while count
+        return result.toByteArray();
+    } // readAll
+
+    /** Converts one entry
+     *  @param entry input entry
+     *  @return output entry; its data are null if the conversion failed
+     */
+    protected Entry convertEntry(Entry entry) {
+        Entry result = new Entry();
+        result.name  = entry.name + "." + extension;
+        result.time  = entry.time;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(entry.data.length * 2 + 256);
+            if (converter.convert(sourceFormat, resultFormat, options, new ByteArrayInputStream(entry.data), out)) {
+                result.data = out.toByteArray();
+            } else {
+                log.error(entry.name + ": conversion failed");
+            }
+        } catch (Exception exc) {
+            log.error(entry.name + ": " + exc.getMessage(), exc);
+        }
+        return result;
+    } // convertEntry
+
+    /** Converts all matching entries of an archive
+     *  @param in  input archive (ZIP, TAR or gzipped TAR)
+     *  @param out output stream for the archive of results
+     *  @param outName name of the output archive; its extension determines the kind
+     *  @return number of entries which could not be converted
+     *  @throws IOException if an archive cannot be read or written
+     *  @throws InterruptedException if the run is interrupted
+     */
+    public int run(InputStream in, OutputStream out, String outName) throws IOException, InterruptedException {
+        int failed = 0;
+        int count  = 0;
+        long startTime = System.currentTimeMillis();
+        in = new BufferedInputStream(in, 8192);
+        in.mark(4);
+        byte[] magic = new byte[4];
+        boolean complete = readFully(in, magic, 4);
+        in.reset();
+        if (complete && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) { // gzip
+            in = new BufferedInputStream(new GZIPInputStream(in, 8192), 8192);
+            in.mark(4);
+            complete = readFully(in, magic, 4);
+            in.reset();
+        }
+        ZipInputStream zipIn = null;
+        if (complete && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            zipIn = new ZipInputStream(in, StandardCharsets.UTF_8);
+        } // else TAR
+        String lowName = outName.toLowerCase();
+        ZipOutputStream zipOut = null;
+        if (lowName.endsWith(".tar.gz") || lowName.endsWith(".tgz")) {
+            out = new GZIPOutputStream(out, 8192);
+        } else if (! lowName.endsWith(".tar")) {
+            zipOut = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            out = zipOut;
+        }
+
+        int limit = Runtime.getRuntime().availableProcessors() * 2; // entries in flight
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        LinkedList<Future<Entry>> pending = new LinkedList<Future<Entry>>();
+        try {
+            boolean busy = true;
+            while (busy) {
+                Entry entry = null;
+                if (zipIn != null) {
+                    ZipEntry zipEntry = zipIn.getNextEntry();
+                    while (zipEntry != null && zipEntry.isDirectory()) {
+                        zipEntry = zipIn.getNextEntry();
+                    } // while directory
+                    if (zipEntry != null) {
+                        entry = new Entry();
+                        entry.name = zipEntry.getName();
+                        entry.time = zipEntry.getTime();
+                        entry.data = readAll(zipIn);
+                    }
+                } else {
+                    entry = readTarEntry(in);
+                }
+                if (entry == null) {
+                    busy = false;
+                } else if (matcher.matches(Paths.get(entry.name).getFileName())) {
+                    count ++;
+                    final Entry input = entry;
+                    pending.add(pool.submit(new Callable<Entry>() {
+                        public Entry call() {
+                            return convertEntry(input);
+                        }
+                    }));
+                }
+                while (pending.size() > 0 && (pending.size() >= limit || ! busy || pending.getFirst().isDone())) {
+                    // write the results in the order of the input
+                    Entry result = null;
+                    try {
+                        result = pending.removeFirst().get();
+                    } catch (ExecutionException exc) {
+                        log.error(exc.getMessage(), exc);
+                    }
+                    if (result == null || result.data == null) {
+                        failed ++;
+                    } else if (zipOut != null) {
+                        ZipEntry zipEntry = new ZipEntry(result.name);
+                        if (result.time > 0) {
+                            zipEntry.setTime(result.time);
+                        }
+                        zipOut.putNextEntry(zipEntry);
+                        zipOut.write(result.data);
+                        zipOut.closeEntry();
+                    } else {
+                        writeTarEntry(out, result);
+                    }
+                } // while pending
+            } // while busy
+        } finally {
+            pool.shutdownNow();
+        }
+        if (zipOut != null) {
+            zipOut.finish();
+        } else {
+            out.write(new byte[BLOCK_LEN * 2]); // end of archive
+            if (out instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) out).finish();
+            }
+        }
+        out.flush();
+        log.info(count + " entries, " + failed + " failed, " + (System.currentTimeMillis() - startTime) + " ms");
+        return failed;
+    } // run
+
+    /** Evaluates the commandline arguments and converts the archive
+     *  @param args arguments: -archive -form1 -form2 inarchive outarchive [-glob pattern] [-opt value ...];
+     *  "-" stands for stdin or stdout (as ZIP)
+     *  @return number of entries which could not be converted, or -1 for invalid arguments
+     */
+    public static int run(String[] args) {
+        int result = -1;
+        PutransFactory factory = new PutransFactory();
+        ArrayList<String> formats = new ArrayList<String>(2);
+        ArrayList<String> files   = new ArrayList<String>(2);
+        StringBuffer options = new StringBuffer(64);
+        String glob = "*";
+        int iarg = 0;
+        if (iarg < args.length && args[iarg].equals("-archive")) {
+            iarg ++;
+        }
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (! arg.startsWith("-") || arg.equals("-")) {
+                files.add(arg);
+            } else if (arg.equals("-glob") && iarg < args.length) {
+                glob = args[iarg ++];
+            } else if (formats.size() == 0 && arg.equals("-" + PutransFactory.AUTO_FORMAT)) {
+                formats.add(PutransFactory.AUTO_FORMAT);
+            } else if (formats.size() < 2 && factory.isFormat(arg)) {
+                formats.add(arg.substring(1));
+            } else { // option with a value
+                options.append(arg);
+                if (iarg < args.length) {
+                    options.append(' ');
+                    options.append(args[iarg ++]);
+                }
+                options.append(' ');
+            }
+        } // while iarg
+        if (formats.size() != 2 || files.size() != 2) {
+            System.err.println("usage: -archive -form1 -form2 inarchive outarchive [-glob pattern] [-opt value ...]");
+        } else {
+            try {
+                InputStream  in  = files.get(0).equals("-") ? System.in  : new FileInputStream (files.get(0));
+                OutputStream out = new BufferedOutputStream(files.get(1).equals("-")
+                        ? System.out : new FileOutputStream(files.get(1)), 65536);
+                try {
+                    result = (new ArchiveConverter(formats.get(0), formats.get(1), options.toString().trim(), glob))
+                            .run(in, out, files.get(1).equals("-") ? "stdout.zip" : files.get(1));
+                } finally {
+                    in .close();
+                    out.close();
+                }
+            } catch (Exception exc) {
+                LogManager.getLogger(ArchiveConverter.class.getName()).error(exc.getMessage(), exc);
+            }
+        }
+        return result;
+    } // run
+
+} // ArchiveConverter
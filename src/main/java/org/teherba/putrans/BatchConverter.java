@@ -0,0 +1,613 @@
+/*  Converts all files of a directory tree in one JVM
+    @(#) $Id$
+    2026-10-17: manifest with a stable output version, escaped fields
+    2026-10-17: metrics MBean
+    2026-10-17: incremental, resumable runs with putrans-manifest.tsv
+    2026-10-17: -cache
+    2026-10-17: -auto
+    2026-10-17, Georg Fischer
+
+    Usage:
+        java -jar dist/putrans.jar -batch -ibm6788 -xml indir outdir [-glob "*.TXT"] [options]
+        java -jar dist/putrans.jar -batch -auto    -xml indir outdir [-glob "*.TXT"] [options]
+        java -jar dist/putrans.jar -batch -ibm6788 -xml indir outdir -cache cachedir [options]
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.Converter;
+import  org.teherba.putrans.PutransFactory;
+import  org.teherba.xtrans.BaseTransformer;
+import  java.io.BufferedReader;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.InputStreamReader;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.PrintWriter;
+import  java.nio.file.FileSystems;
+import  java.nio.file.Files;
+import  java.nio.file.Path;
+import  java.nio.file.PathMatcher;
+import  java.nio.file.StandardCopyOption;
+import  java.security.MessageDigest;
+import  java.security.NoSuchAlgorithmException;
+import  java.util.ArrayList;
+import  java.util.Collections;
+import  java.util.Comparator;
+import  java.util.Iterator;
+import  java.util.List;
+import  java.util.concurrent.Callable;
+import  java.util.concurrent.ConcurrentHashMap;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.Executors;
+import  java.util.concurrent.Future;
+import  java.util.stream.Stream;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Converts every matching file of an input directory tree into
+ *  an output directory tree, with one source and one result format.
+ *  The files are processed on a work-stealing pool sized to the
+ *  number of cores, largest files first, such that the run is not
+ *  prolonged by a big file which starts last.
+ *  All worker threads share one {@link Converter}, which takes
+ *  new transformers for each file.
+ *  With the source format "auto", the format of each file is
+ *  recognized from its first bytes; unrecognized files fail.
+ *  A failing file does not stop the others. A summary with the status
+ *  and the timing of each file is written to <em>putrans-batch.tsv</em>
+ *  in the output directory.
+ *  <p>
+ *  The manifest <em>putrans-manifest.tsv</em> in the output directory
+ *  records the size, modification time and SHA-256 hash of each input file
+ *  which was converted, together with the output file and the converter
+ *  version ({@link Converter#OUTPUT_VERSION}, formats and options).
+ *  Tabs, line breaks and backslashes in the fields are escaped.
+ *  A file is only converted again if it is new, if its content has changed,
+ *  if its output is missing, or if the version has changed.
+ *  Each conversion is appended to the manifest immediately, such that
+ *  a run which was interrupted resumes behind the last converted file.
+ *  At the end of a run, the manifest is compacted to one line per file.
+ *  @author Dr. Georg Fischer
+ */
+public class BatchConverter {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Name of the summary file in the output directory */
+    public static final String SUMMARY_FILE = "putrans-batch.tsv";
+    /** Name of the manifest file in the output directory */
+    public static final String MANIFEST_FILE = "putrans-manifest.tsv";
+    /** Header line of the manifest */
+    private static final String MANIFEST_HEADER = "#status\tbytes\tmtime\tsha256\tversion\tinput\toutput";
+
+    /** code for the input format */
+    private String sourceFormat;
+    /** code for the output format */
+    private String resultFormat;
+    /** option string for both transformers */
+    private String options;
+    /** root of the input tree */
+    private File inDir;
+    /** root of the output tree */
+    private File outDir;
+    /** selects the input files by their name */
+    private PathMatcher matcher;
+    /** extension appended to the output files */
+    private String extension;
+
+    /** converter which is shared by all worker threads */
+    private Converter converter;
+    /** converter version, formats and options, which are recorded in the manifest */
+    private String version;
+    /** last manifest line for each input file, indexed by the path relative to the input tree */
+    private ConcurrentHashMap<String, Record> manifest;
+    /** appends to the manifest */
+    private PrintWriter manifestWriter;
+
+    /** A line of the manifest */
+    protected static class Record {
+        /** whether the conversion was successful */
+        public boolean ok;
+        /** size of the input file */
+        public long   size;
+        /** modification time of the input file */
+        public long   mtime;
+        /** SHA-256 of the input file */
+        public String hash;
+        /** converter version, formats and options */
+        public String version;
+        /** input file, relative to the input tree */
+        public String input;
+        /** output file */
+        public String output;
+
+        /** Formats the record as a line of the manifest
+         *  @return tab-separated fields
+         */
+        public String toString() {
+            return (ok ? "ok" : "FAILED")
+                    + "\t" + size
+                    + "\t" + mtime
+                    + "\t" + hash
+                    + "\t" + escape(version)
+                    + "\t" + escape(input)
+                    + "\t" + escape(output);
+        } // toString
+    } // inner class Record
+
+    /** Result of the conversion of one file */
+    protected static class Outcome {
+        /** input file */
+        public File   file;
+        /** output file */
+        public File   target;
+        /** size of the input file */
+        public long   size;
+        /** duration of the conversion */
+        public long   millis;
+        /** whether the conversion was successful */
+        public boolean ok;
+        /** error message, or empty */
+        public String message;
+        /** whether the file was unchanged since the previous run */
+        public boolean skipped;
+    } // inner class Outcome
+
+    /** Constructor
+     *  @param sourceFormat code for the input format, for example "ibm6788"
+     *  @param resultFormat code for the output format, for example "xml"
+     *  @param options option string for both transformers
+     *  @param inDir  root of the input tree
+     *  @param outDir root of the output tree
+     *  @param glob pattern for the names of the input files, for example "*.TXT"
+     */
+    public BatchConverter(String sourceFormat, String resultFormat, String options
+            , File inDir, File outDir, String glob) {
+        log = LogManager.getLogger(BatchConverter.class.getName());
+        this.sourceFormat = sourceFormat;
+        this.resultFormat = resultFormat;
+        this.options      = options;
+        this.inDir        = inDir;
+        this.outDir       = outDir;
+        this.matcher      = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.converter    = new Converter();
+        converter.factory = new PutransFactory();
+        BaseTransformer serializer = converter.factory.getTransformer(resultFormat);
+        this.extension    = serializer != null ? serializer.getFileExtension() : resultFormat;
+        this.version      = ("v" + Converter.OUTPUT_VERSION + " -" + sourceFormat + " -" + resultFormat + " " + options)
+                .trim().replaceAll("\\s+", " ");
+        this.manifest     = new ConcurrentHashMap<String, Record>(1024);
+    } // Constructor
+
+    /** Escapes a field of the manifest, such that it contains no tab or line break
+     *  @param field the field, for example a path
+     *  @return the field with backslash, tab, CR and LF replaced by \\, \t, \r and \n
+     */
+    protected static String escape(String field) {
+        StringBuilder result = new StringBuilder(field.length() + 16);
+        int pos = 0;
+        while (pos < field.length()) {
+            char ch = field.charAt(pos ++);
+            switch (ch) {
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                default:
+                    result.append(ch);
+                    break;
+            } // switch ch
+        } // while pos
+        return result.toString();
+    } // escape
+
+    /** Reverses {@link #escape}
+     *  @param field an escaped field of the manifest
+     *  @return the original field
+     */
+    protected static String unescape(String field) {
+        StringBuilder result = new StringBuilder(field.length());
+        int pos = 0;
+        while (pos < field.length()) {
+            char ch = field.charAt(pos ++);
+            if (ch == '\\' && pos < field.length()) {
+                ch = field.charAt(pos ++);
+                switch (ch) {
+                    case 't':
+                        ch = '\t';
+                        break;
+                    case 'r':
+                        ch = '\r';
+                        break;
+                    case 'n':
+                        ch = '\n';
+                        break;
+                    default: // backslash
+                        break;
+                } // switch ch
+            }
+            result.append(ch);
+        } // while pos
+        return result.toString();
+    } // unescape
+
+    /** Gets the path of an input file relative to the input tree
+     *  @param file input file in the input tree
+     *  @return relative path, with "/" as separator
+     */
+    protected String getRelative(File file) {
+        return inDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    } // getRelative
+
+    /** Reads the manifest of a previous run, if any
+     *  @throws IOException if the manifest cannot be read
+     */
+    protected void readManifest() throws IOException {
+        File file = new File(outDir, MANIFEST_FILE);
+        if (file.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if (! line.startsWith("#") && fields.length == 7) { // an incomplete last line is ignored
+                        try {
+                            Record record  = new Record();
+                            record.ok      = fields[0].equals("ok");
+                            record.size    = Long.parseLong(fields[1]);
+                            record.mtime   = Long.parseLong(fields[2]);
+                            record.hash    = fields[3];
+                            record.version = unescape(fields[4]);
+                            record.input   = unescape(fields[5]);
+                            record.output  = unescape(fields[6]);
+                            manifest.put(record.input, record); // later lines override earlier ones
+                        } catch (NumberFormatException exc) {
+                            log.warn(MANIFEST_FILE + ": invalid line " + line);
+                        }
+                    }
+                } // while reading
+            } finally {
+                reader.close();
+            }
+        }
+    } // readManifest
+
+    /** Appends a line to the manifest, and flushes it immediately
+     *  @param record the line
+     */
+    protected void appendManifest(Record record) {
+        manifest.put(record.input, record);
+        synchronized (manifestWriter) {
+            manifestWriter.println(record.toString());
+            manifestWriter.flush();
+        }
+    } // appendManifest
+
+    /** Rewrites the manifest with the last line of each input file of this run
+     *  @param files input files of this run
+     *  @throws IOException if the manifest cannot be written
+     */
+    protected void compactManifest(List<File> files) throws IOException {
+        File temp = new File(outDir, MANIFEST_FILE + ".tmp");
+        PrintWriter writer = new PrintWriter(temp, "UTF-8");
+        try {
+            writer.println(MANIFEST_HEADER);
+            for (File file : files) {
+                Record record = manifest.get(getRelative(file));
+                if (record != null) {
+                    writer.println(record.toString());
+                }
+            } // for file
+        } finally {
+            writer.close();
+        }
+        Files.move(temp.toPath(), new File(outDir, MANIFEST_FILE).toPath()
+                , StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } // compactManifest
+
+    /** Computes the SHA-256 hash of a file
+     *  @param file the file
+     *  @return 64 lowercase hex digits
+     *  @throws IOException if the file cannot be read
+     */
+    protected static String hashFile(File file) throws IOException {
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exc) { // every JRE has SHA-256
+            throw new IllegalStateException(exc);
+        }
+        byte[] buffer = new byte[65536];
+        InputStream in = new FileInputStream(file);
+        try {
+            int count = 0;
+            while ((count = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, count);
+            } // while count
+        } finally {
+            in.close();
+        }
+        byte[] hash = digest.digest();
+        StringBuilder result = new StringBuilder(hash.length * 2);
+        int ind = 0;
+        while (ind < hash.length) {
+            result.append(Character.forDigit((hash[ind] >> 4) & 0x0f, 16));
+            result.append(Character.forDigit( hash[ind]       & 0x0f, 16));
+            ind ++;
+        } // while ind
+        return result.toString();
+    } // hashFile
+
+    /** Lists the input files
+     *  @return all regular files in the input tree which match the pattern, largest first
+     *  @throws IOException if the input tree cannot be read
+     */
+    protected List<File> listFiles() throws IOException {
+        return listFiles(inDir, matcher);
+    } // listFiles()
+
+    /** Lists the files of a directory tree
+     *  @param inDir root of the tree
+     *  @param matcher selects the files by their name
+     *  @return all regular files in the tree which match the pattern, largest first
+     *  @throws IOException if the tree cannot be read
+     */
+    protected static List<File> listFiles(File inDir, PathMatcher matcher) throws IOException {
+        List<File> files = new ArrayList<File>(1024);
+        Stream<Path> paths = Files.walk(inDir.toPath());
+        try {
+            Iterator<Path> iter = paths.iterator();
+            while (iter.hasNext()) {
+                Path path = iter.next();
+                if (Files.isRegularFile(path) && matcher.matches(path.getFileName())) {
+                    files.add(path.toFile());
+                }
+            } // while iter
+        } finally {
+            paths.close();
+        }
+        Collections.sort(files, new Comparator<File>() {
+            public int compare(File file1, File file2) {
+                return Long.compare(file2.length(), file1.length());
+            }
+        });
+        return files;
+    } // listFiles(File, PathMatcher)
+
+    /** Determines the output file for an input file
+     *  @param file input file in the input tree
+     *  @return file at the same relative path in the output tree, with the result format's extension appended
+     */
+    public File getTarget(File file) {
+        Path relative = inDir.toPath().relativize(file.toPath());
+        return new File(new File(outDir, relative.toString()).getPath() + "." + extension);
+    } // getTarget
+
+    /** Converts one file if it is new or has changed since the last run, and records it in the manifest
+     *  @param file input file
+     *  @return status and timing of the conversion
+     */
+    protected Outcome convertFile(File file) {
+        Outcome outcome = new Outcome();
+        outcome.file    = file;
+        outcome.target  = getTarget(file);
+        outcome.size    = file.length();
+        outcome.message = "";
+        long startTime  = System.nanoTime();
+        try {
+            Record record  = new Record();
+            record.size    = outcome.size;
+            record.mtime   = file.lastModified();
+            record.version = version;
+            record.input   = getRelative(file);
+            record.output  = outcome.target.getPath();
+            Record old = manifest.get(record.input);
+            if (old != null && old.ok && old.size == record.size && old.version.equals(version)
+                    && old.output.equals(record.output) && outcome.target.exists()) {
+                if (old.mtime == record.mtime) { // unchanged
+                    outcome.skipped = true;
+                } else { // touched - compare the content
+                    record.hash = hashFile(file);
+                    if (record.hash.equals(old.hash)) {
+                        outcome.skipped = true;
+                        record.ok = true;
+                        appendManifest(record);
+                    }
+                }
+            }
+            if (outcome.skipped) {
+                outcome.ok = true;
+            } else {
+                if (record.hash == null) {
+                    record.hash = hashFile(file);
+                }
+                writeFile(file, outcome);
+                record.ok = outcome.ok;
+                appendManifest(record);
+            }
+        } catch (Exception exc) {
+            outcome.ok      = false;
+            outcome.message = String.valueOf(exc.getMessage());
+            log.error(file.getPath() + ": " + exc.getMessage(), exc);
+        }
+        outcome.millis = (System.nanoTime() - startTime) / 1000000L;
+        return outcome;
+    } // convertFile
+
+    /** Converts one file without regard to the manifest
+     *  @param file input file
+     *  @param outcome status of the conversion
+     *  @throws IOException if an IO error occurs
+     */
+    private void writeFile(File file, Outcome outcome) throws IOException {
+        String format = sourceFormat;
+        if (format.equals(PutransFactory.AUTO_FORMAT)) { // before the output file is created
+            format = PutransFactory.detectFormat(file);
+        }
+        if (format == null) { // junk is skipped
+            outcome.ok      = false;
+            outcome.message = "unknown source format";
+        } else {
+            outcome.target.getParentFile().mkdirs();
+            InputStream  in  = new FileInputStream(file); // unbuffered, such that large files can be mapped
+            OutputStream out = new FileOutputStream(outcome.target); // unbuffered, such that a 6788 header can be patched in place
+            try {
+                outcome.ok = converter.convert(format, resultFormat, options, in, out);
+            } finally {
+                in .close();
+                out.close();
+            }
+        }
+    } // writeFile
+
+    /** Converts all new or changed input files in parallel, and writes the summary and the manifest
+     *  @return number of files which could not be converted
+     *  @throws IOException if the input tree cannot be read or the summary cannot be written
+     *  @throws InterruptedException if the run is interrupted
+     */
+    public int run() throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        List<File> files = listFiles();
+        outDir.mkdirs();
+        readManifest();
+        File manifestFile = new File(outDir, MANIFEST_FILE);
+        boolean exists = manifestFile.exists();
+        manifestWriter = new PrintWriter(new OutputStreamWriter(new FileOutputStream(manifestFile, true), "UTF-8"));
+        if (! exists) {
+            manifestWriter.println(MANIFEST_HEADER);
+        }
+        List<Callable<Outcome>> tasks = new ArrayList<Callable<Outcome>>(files.size());
+        for (final File file : files) {
+            tasks.add(new Callable<Outcome>() {
+                public Outcome call() {
+                    return convertFile(file);
+                }
+            });
+        } // for file
+        ExecutorService pool = Executors.newWorkStealingPool();
+        List<Future<Outcome>> futures;
+        try {
+            futures = pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+            manifestWriter.close();
+        }
+        compactManifest(files);
+
+        int failed  = 0;
+        int skipped = 0;
+        PrintWriter summary = new PrintWriter(new File(outDir, SUMMARY_FILE), "UTF-8");
+        try {
+            summary.println("#status\tmillis\tbytes\tinput\toutput\tmessage");
+            for (Future<Outcome> future : futures) {
+                Outcome outcome;
+                try {
+                    outcome = future.get();
+                } catch (Exception exc) { // convertFile catches everything, but anyway
+                    failed ++;
+                    log.error(exc.getMessage(), exc);
+                    continue;
+                }
+                if (! outcome.ok) {
+                    failed ++;
+                }
+                if (outcome.skipped) {
+                    skipped ++;
+                }
+                summary.println((outcome.skipped ? "unchanged" : outcome.ok ? "ok" : "FAILED")
+                        + "\t" + outcome.millis
+                        + "\t" + outcome.size
+                        + "\t" + escape(outcome.file  .getPath())
+                        + "\t" + escape(outcome.target.getPath())
+                        + "\t" + escape(outcome.message));
+            } // for future
+        } finally {
+            summary.close();
+        }
+        log.info(files.size() + " files, " + skipped + " unchanged, " + failed + " failed, "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return failed;
+    } // run
+
+    /** Evaluates the commandline arguments and runs the conversion
+     *  @param args arguments: -batch -form1 -form2 indir outdir [-glob pattern] [-cache dir] [-opt value ...]
+     *  @return number of files which could not be converted, or -1 for invalid arguments
+     */
+    public static int run(String[] args) {
+        int result = -1;
+        Metrics.register(); // for jconsole during long runs
+        PutransFactory factory = new PutransFactory();
+        ArrayList<String> formats = new ArrayList<String>(2);
+        ArrayList<String> dirs    = new ArrayList<String>(2);
+        StringBuffer options = new StringBuffer(64);
+        String glob = "*";
+        ResultCache cache = null;
+        int iarg = 0;
+        if (iarg < args.length && args[iarg].equals("-batch")) {
+            iarg ++;
+        }
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (! arg.startsWith("-")) {
+                dirs.add(arg);
+            } else if (arg.equals("-glob") && iarg < args.length) {
+                glob = args[iarg ++];
+            } else if (arg.equals("-cache") && iarg < args.length) {
+                cache = new ResultCache(new File(args[iarg ++]));
+            } else if (formats.size() == 0 && arg.equals("-" + PutransFactory.AUTO_FORMAT)) {
+                formats.add(PutransFactory.AUTO_FORMAT);
+            } else if (formats.size() < 2 && factory.isFormat(arg)) {
+                formats.add(arg.substring(1));
+            } else { // option with a value
+                options.append(arg);
+                if (iarg < args.length) {
+                    options.append(' ');
+                    options.append(args[iarg ++]);
+                }
+                options.append(' ');
+            }
+        } // while iarg
+        if (formats.size() != 2 || dirs.size() != 2) {
+            System.err.println("usage: -batch -form1 -form2 indir outdir [-glob pattern] [-cache dir] [-opt value ...]");
+        } else {
+            try {
+                BatchConverter batch = new BatchConverter(formats.get(0), formats.get(1), options.toString().trim()
+                        , new File(dirs.get(0)), new File(dirs.get(1)), glob);
+                batch.converter.setCache(cache);
+                result = batch.run();
+            } catch (Exception exc) {
+                LogManager.getLogger(BatchConverter.class.getName()).error(exc.getMessage(), exc);
+            }
+        }
+        return result;
+    } // run
+
+} // BatchConverter
@@ -0,0 +1,372 @@
+/*  Runs the lines of a command file concurrently, in the order of their file dependencies
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+
+    Usage:
+        java -jar dist/putrans.jar -f commands.txt [-threads n]
+
+    Each line of the command file holds the arguments of one conversion, for example:
+        # comment
+        -ibm6788 test/ibm6788/DOCUM002.TXT -xml  out/DOCUM002.html
+        -text    data/text2.dat -tee out/text2.xml -text out/text2.txt
+        -xml     out/text2.xml  -text out/text2.2.txt
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.Converter;
+import  org.teherba.putrans.PutransFactory;
+import  java.io.BufferedReader;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.io.InputStreamReader;
+import  java.util.ArrayList;
+import  java.util.HashMap;
+import  java.util.List;
+import  java.util.concurrent.CountDownLatch;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.Executors;
+import  java.util.concurrent.atomic.AtomicInteger;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Runs the lines of a command file (behind <em>-f</em>) on a bounded pool.
+ *  Each line holds the arguments of one conversion, as they would be
+ *  given on the commandline: <em>-form1 infile [-tee file] [-form2] [outfile] [options]</em>.
+ *  Empty lines and lines starting with "#" are ignored; arguments with
+ *  spaces may be enclosed in double quotes.
+ *  <p>
+ *  The first file of a line is read, the files behind <em>-tee</em> and
+ *  any further files are written. A line without an output file writes to
+ *  standard output. A line waits for the earlier lines
+ *  <ul>
+ *  <li>which write one of its files (read after write, write after write),</li>
+ *  <li>which read one of the files it writes (write after read).</li>
+ *  </ul>
+ *  All other lines run concurrently. The lines which write to standard output
+ *  are run one after the other, in the order of the command file, such that
+ *  their output is not interleaved. A line whose prerequisite failed is not run,
+ *  and fails too.
+ *  @author Dr. Georg Fischer
+ */
+public class CommandFile {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Pseudo file name for standard output */
+    private static final String STDOUT = "-";
+
+    /** factory for the recognition of format codes */
+    private PutransFactory factory;
+    /** pool which runs the lines */
+    private ExecutorService pool;
+    /** counts the lines which are not yet finished */
+    private CountDownLatch pending;
+    /** number of lines which failed */
+    private AtomicInteger failed;
+
+    /** A line of the command file, and its dependencies */
+    protected class Line implements Runnable {
+        /** number of the line in the command file, starting at 1 */
+        public int lineNo;
+        /** arguments of the conversion */
+        public String[] args;
+        /** files which are read */
+        public List<String> inputs;
+        /** files which are written, or {@link #STDOUT} */
+        public List<String> outputs;
+        /** lines which wait for this line */
+        public List<Line> dependents;
+        /** number of unfinished lines which this line waits for */
+        public AtomicInteger waiting;
+        /** whether a line which this line waits for has failed */
+        public volatile boolean blocked;
+
+        /** Constructor
+         *  @param lineNo number of the line in the command file
+         *  @param args arguments of the conversion
+         */
+        public Line(int lineNo, String[] args) {
+            this.lineNo     = lineNo;
+            this.args       = args;
+            this.inputs     = new ArrayList<String>(1);
+            this.outputs    = new ArrayList<String>(2);
+            this.dependents = new ArrayList<Line>(4);
+            this.waiting    = new AtomicInteger(1); // released by {@link CommandFile#run(File, int)} when all dependencies are known
+            this.blocked    = false;
+        } // Constructor
+
+        /** Runs the conversion, and releases the lines which wait for it
+         */
+        public void run() {
+            boolean ok = false;
+            long startTime = System.nanoTime();
+            if (blocked) {
+                log.error("line " + lineNo + ": not run since a prerequisite failed");
+            } else {
+                try {
+                    Converter converter = new Converter();
+                    converter.factory = factory; // shared, such that the formats are instantiated once
+                    ok = converter.processCommand(args);
+                } catch (Throwable exc) { // the other lines continue
+                    log.error("line " + lineNo + ": " + exc.getMessage(), exc);
+                }
+                if (! ok) {
+                    log.error("line " + lineNo + " failed: " + join(args));
+                }
+            }
+            if (! ok) {
+                failed.incrementAndGet();
+            }
+            log.debug("line " + lineNo + ": " + (ok ? "ok" : "FAILED") + ", "
+                    + (System.nanoTime() - startTime) / 1000000L + " ms");
+            for (Line dependent : dependents) {
+                if (! ok) {
+                    dependent.blocked = true;
+                }
+                dependent.release();
+            } // for dependent
+            pending.countDown();
+        } // run
+
+        /** Decrements the number of unfinished prerequisites, and submits
+         *  the line to the pool when there are none left
+         */
+        public void release() {
+            if (waiting.decrementAndGet() == 0) {
+                pool.execute(this);
+            }
+        } // release
+
+        /** Lets this line wait for another line
+         *  @param prerequisite an earlier line, or null
+         */
+        public void waitFor(Line prerequisite) {
+            if (prerequisite != null && prerequisite != this && ! prerequisite.dependents.contains(this)) {
+                prerequisite.dependents.add(this);
+                waiting.incrementAndGet();
+            }
+        } // waitFor
+    } // inner class Line
+
+    /** Constructor
+     */
+    public CommandFile() {
+        log = LogManager.getLogger(CommandFile.class.getName());
+        factory = new PutransFactory();
+        failed  = new AtomicInteger(0);
+    } // Constructor
+
+    /** Joins arguments for a message
+     *  @param args the arguments
+     *  @return arguments separated by spaces
+     */
+    private static String join(String[] args) {
+        StringBuilder result = new StringBuilder(128);
+        int iarg = 0;
+        while (iarg < args.length) {
+            if (iarg > 0) {
+                result.append(' ');
+            }
+            result.append(args[iarg ++]);
+        } // while iarg
+        return result.toString();
+    } // join
+
+    /** Splits a line of the command file into arguments
+     *  @param line the line
+     *  @return arguments, separated by whitespace, without enclosing double quotes
+     */
+    protected static String[] split(String line) {
+        ArrayList<String> result = new ArrayList<String>(8);
+        StringBuilder arg = new StringBuilder(64);
+        boolean quoted = false;
+        boolean inArg  = false;
+        int pos = 0;
+        while (pos < line.length()) {
+            char ch = line.charAt(pos ++);
+            if (ch == '"') {
+                quoted = ! quoted;
+                inArg  = true;
+            } else if (! quoted && Character.isWhitespace(ch)) {
+                if (inArg) {
+                    result.add(arg.toString());
+                    arg.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                arg.append(ch);
+                inArg = true;
+            }
+        } // while pos
+        if (inArg) {
+            result.add(arg.toString());
+        }
+        return result.toArray(new String[result.size()]);
+    } // split
+
+    /** Gets a unique name for a file
+     *  @param name path of the file, relative to the current directory
+     *  @return normalized absolute path
+     */
+    private static String normalize(String name) {
+        return new File(name).getAbsoluteFile().toPath().normalize().toString();
+    } // normalize
+
+    /** Determines the files which are read and written by a line,
+     *  see {@link Converter#getFiles}
+     *  @param line line with its arguments
+     */
+    protected void classify(Line line) {
+        List<String> tees  = new ArrayList<String>(1);
+        List<String> files = Converter.getFiles(line.args, factory, tees);
+        for (String name : tees) {
+            line.outputs.add(normalize(name));
+        } // for tees
+        int ifile = 0;
+        while (ifile < files.size()) {
+            if (ifile == 0) {
+                line.inputs .add(normalize(files.get(ifile)));
+            } else {
+                line.outputs.add(normalize(files.get(ifile)));
+            }
+            ifile ++;
+        } // while ifile
+        if (files.size() < 2) {
+            line.outputs.add(STDOUT);
+        }
+    } // classify
+
+    /** Reads the command file, and determines the dependencies of the lines
+     *  @param file the command file
+     *  @return all lines, in the order of the command file
+     *  @throws IOException if the command file cannot be read
+     */
+    protected List<Line> readLines(File file) throws IOException {
+        List<Line> lines = new ArrayList<Line>(1024);
+        HashMap<String, Line>       writers = new HashMap<String, Line>(1024);       // last line which writes a file
+        HashMap<String, List<Line>> readers = new HashMap<String, List<Line>>(1024); // lines which read it since then
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String text = null;
+            int lineNo = 0;
+            while ((text = reader.readLine()) != null) {
+                lineNo ++;
+                text = text.trim();
+                if (text.length() > 0 && ! text.startsWith("#")) {
+                    Line line = new Line(lineNo, split(text));
+                    classify(line);
+                    for (String name : line.inputs) {
+                        line.waitFor(writers.get(name));
+                    } // for inputs
+                    for (String name : line.outputs) {
+                        line.waitFor(writers.get(name));
+                        List<Line> earlier = readers.remove(name);
+                        if (earlier != null) {
+                            for (Line other : earlier) {
+                                line.waitFor(other);
+                            } // for other
+                        }
+                    } // for outputs
+                    for (String name : line.inputs) {
+                        List<Line> list = readers.get(name);
+                        if (list == null) {
+                            list = new ArrayList<Line>(4);
+                            readers.put(name, list);
+                        }
+                        list.add(line);
+                    } // for inputs
+                    for (String name : line.outputs) {
+                        writers.put(name, line);
+                    } // for outputs
+                    lines.add(line);
+                }
+            } // while reading
+        } finally {
+            reader.close();
+        }
+        return lines;
+    } // readLines
+
+    /** Runs all lines of a command file
+     *  @param file the command file
+     *  @param threads size of the pool
+     *  @return number of lines which failed
+     *  @throws IOException if the command file cannot be read
+     *  @throws InterruptedException if the run is interrupted
+     */
+    public int run(File file, int threads) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        List<Line> lines = readLines(file);
+        pending = new CountDownLatch(lines.size());
+        pool    = Executors.newFixedThreadPool(threads);
+        try {
+            for (Line line : lines) { // in file order, such that independent lines start in that order
+                line.release();
+            } // for line
+            pending.await();
+        } finally {
+            pool.shutdown();
+        }
+        log.info(lines.size() + " lines, " + failed.get() + " failed, "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return failed.get();
+    } // run
+
+    /** Evaluates the commandline arguments and runs the command file
+     *  @param args arguments: -f cmdfile [-threads n]
+     *  @return number of lines which failed, or -1 for invalid arguments
+     */
+    public static int run(String[] args) {
+        int result = -1;
+        Metrics.register(); // for jconsole during long runs
+        String name = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean valid = true;
+        int iarg = 0;
+        if (iarg < args.length && args[iarg].equals("-f")) {
+            iarg ++;
+        }
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (arg.equals("-threads") && iarg < args.length) {
+                try {
+                    threads = Math.max(1, Integer.parseInt(args[iarg ++]));
+                } catch (NumberFormatException exc) {
+                    valid = false;
+                }
+            } else if (name == null && ! arg.startsWith("-")) {
+                name = arg;
+            } else {
+                valid = false;
+            }
+        } // while iarg
+        if (! valid || name == null) {
+            System.err.println("usage: -f cmdfile [-threads n]");
+        } else {
+            try {
+                result = new CommandFile().run(new File(name), threads);
+            } catch (Exception exc) {
+                LogManager.getLogger(CommandFile.class.getName()).error(exc.getMessage(), exc);
+            }
+        }
+        return result;
+    } // run
+
+} // CommandFile
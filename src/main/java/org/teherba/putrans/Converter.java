@@ -1,5 +1,23 @@
 /*  Commandline tool which converts between various text processing file formats.
  *  @(#) $Id: Converter.java 966 2012-08-29 07:06:07Z gfis $
+ *  2026-10-17: processCommand runs all forms through convert, without processFile
+ *  2026-10-17: output length for the metrics is taken before closeAll
+ *  2026-10-17: -fused text without -enc2 in ISO-8859-1, like -text
+ *  2026-10-17: output is flushed before closeAll
+ *  2026-10-17: option -feed n for the push API
+ *  2026-10-17: metrics per format only for valid formats
+ *  2026-10-17: OUTPUT_VERSION
+ *  2026-10-17: -f command files run concurrently
+ *  2026-10-17: option -fused html|text|null
+ *  2026-10-17: -scan mode
+ *  2026-10-17: metrics
+ *  2026-10-17: getVersion
+ *  2026-10-17: -cache
+ *  2026-10-17: -archive mode
+ *  2026-10-17: -image mode
+ *  2026-10-17: -auto
+ *  2026-10-17: convert(...) with new transformers
+ *  2026-10-17: -batch mode; convert(...)
  *  2017-07-22, Georg Fischer: copied from xtrans.MainConverter
  */
 /*
@@ -19,7 +37,34 @@
  */
 package org.teherba.putrans;
 import  org.teherba.putrans.PutransFactory;
+import  org.teherba.putrans.sink.HtmlSink;
+import  org.teherba.putrans.sink.NullSink;
+import  org.teherba.putrans.sink.PlainTextSink;
+import  org.teherba.putrans.sink.TextSink;
+import  org.teherba.xtrans.BaseTransformer;
 import  org.teherba.xtrans.MainTransformer;
+import  java.io.BufferedInputStream;
+import  java.io.BufferedWriter;
+import  java.io.ByteArrayInputStream;
+import  java.io.ByteArrayOutputStream;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.FileOutputStream;
+import  java.io.FilterOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.InputStreamReader;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.Writer;
+import  java.net.URL;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.FileChannel;
+import  java.util.ArrayList;
+import  java.util.Enumeration;
+import  java.util.List;
+import  java.util.jar.Attributes;
+import  java.util.jar.Manifest;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -31,7 +76,17 @@ import  org.apache.logging.log4j.LogManager;
  *  foreign format. 
  *  <p>
  *  The main method reads processing parameter (formats, filenames, filters,
- *  options) from the command line, or from lines in an input file (behind -f).
+ *  options) from the command line, or from lines in an input file (behind -f),
+ *  which are run concurrently, c.f. {@link CommandFile}.
+ *  With <em>-batch</em> as first argument, all files of a directory tree
+ *  are converted in one JVM, c.f. {@link BatchConverter}.
+ *  With <em>-image</em>, the documents are read directly from
+ *  FAT12 disk images, c.f. {@link DiskImage}, and with <em>-archive</em>
+ *  from a ZIP or TAR archive into another archive, c.f. {@link ArchiveConverter}.
+ *  With <em>-cache dir</em>, results are taken from and stored into
+ *  a {@link ResultCache} in that directory.
+ *  With <em>-auto</em> as source format, the format of the input file
+ *  is recognized from its first bytes, c.f. {@link PutransFactory#detectFormat}.
  *  @author Dr. Georg Fischer
  */
 public class Converter extends MainTransformer { 
@@ -42,21 +97,485 @@ public class Converter extends MainTransformer {
     
     /** Factory delivering transformers for different input and output file formats */
     // private PutransFactory factory;
+
+    /** Version of the output of the converters, which must be incremented whenever
+     *  a change of a converter changes its output; outputs of -batch runs with
+     *  another version are converted again, and results which were cached
+     *  by another version are not used (see {@link ResultCache#getKey})
+     */
+    public static final String OUTPUT_VERSION = "1";
+
+    /** Cache for the results of conversions, or null */
+    private ResultCache cache;
   
     /** Constructor
      */
     public Converter() {
         log = LogManager.getLogger(Converter.class.getName());
+        cache = null;
         // System.out.println(factory.toString());
     } // Constructor 0
 
+    /** Gets the version of the converters, from the section "putrans"
+     *  of the jar's META-INF/MANIFEST.MF
+     *  @return Implementation-Version, or "unknown" outside of a jar
+     */
+    public static String getVersion() {
+        String result = "unknown";
+        try {
+            Enumeration<URL> urls = Converter.class.getClassLoader().getResources("META-INF/MANIFEST.MF");
+            while (result.equals("unknown") && urls.hasMoreElements()) {
+                InputStream in = urls.nextElement().openStream();
+                try {
+                    Attributes attributes = (new Manifest(in)).getAttributes("putrans");
+                    if (attributes != null && attributes.getValue("Implementation-Version") != null) {
+                        result = attributes.getValue("Implementation-Version");
+                    }
+                } finally {
+                    in.close();
+                }
+            } // while urls
+        } catch (IOException exc) {
+            LogManager.getLogger(Converter.class.getName()).error(exc.getMessage(), exc);
+        }
+        return result;
+    } // getVersion
+
+    /** Sets the cache for the results of conversions
+     *  @param cache the cache, or null for no caching
+     */
+    public void setCache(ResultCache cache) {
+        this.cache = cache;
+    } // setCache
+
+    /** Evaluates the option <em>-cache dir</em>
+     *  @param args commandline arguments
+     *  @return the arguments without the option
+     */
+    protected String[] parseCache(String[] args) {
+        ArrayList<String> rest = new ArrayList<String>(args.length);
+        int iarg = 0;
+        while (iarg < args.length) {
+            if (args[iarg].equals("-cache") && iarg + 1 < args.length) {
+                setCache(new ResultCache(new File(args[iarg + 1])));
+                iarg ++;
+            } else {
+                rest.add(args[iarg]);
+            }
+            iarg ++;
+        } // while iarg
+        return rest.toArray(new String[rest.size()]);
+    } // parseCache
+
+    /** Converts a stream in one format to a stream in another format.
+     *  The transformers are wired like in the servlet.
+     *  Each call uses new transformers, such that several threads
+     *  may convert concurrently with the same converter.
+     *  If a cache is set, and the input is not too long, the result is
+     *  taken from the cache, or stored there after the conversion.
+     *  The transformers may close both streams at the end of the conversion;
+     *  the caller must not use them after the call, but should still close them.
+     *  @param sourceFormat code for the input format, for example "ibm6788",
+     *  or "auto" for the detection of the format
+     *  @param resultFormat code for the output format, for example "xml"
+     *  @param options option string for both transformers, for example "-enc1 ISO-8859-1"
+     *  @param in  input stream; for "auto", it must be a FileInputStream or support mark/reset
+     *  @param out output stream
+     *  @return whether the conversion was successful
+     *  @throws IOException if an IO error occurs
+     */
+    public boolean convert(String sourceFormat, String resultFormat, String options
+            , InputStream in, OutputStream out) throws IOException {
+        boolean result = false;
+        if (sourceFormat.equals(PutransFactory.AUTO_FORMAT)) {
+            sourceFormat = PutransFactory.detectFormat(in);
+            if (sourceFormat == null) {
+                log.error("unknown source format");
+                return result;
+            }
+        }
+        if (cache != null) {
+            byte[] input = null;
+            if (! (in instanceof FileInputStream)) {
+                if (! in.markSupported()) {
+                    in = new BufferedInputStream(in, 65536);
+                }
+                input = cache.readInput(in);
+            } else { // large files are mapped instead
+                FileChannel channel = ((FileInputStream) in).getChannel();
+                if (channel.size() - channel.position() <= cache.getMaxEntry()) {
+                    input = cache.readInput(new BufferedInputStream(in, 65536));
+                }
+            }
+            if (input != null) {
+                String key = ResultCache.getKey(input, input.length, sourceFormat, resultFormat, options);
+                byte[] output = cache.get(key);
+                if (output == null) {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream(input.length * 2 + 256);
+                    result = convertStream(sourceFormat, resultFormat, options, new ByteArrayInputStream(input), buffer);
+                    output = buffer.toByteArray();
+                    if (result) {
+                        cache.put(key, output);
+                    }
+                } else {
+                    result = true;
+                    Metrics.getInstance().countCacheHit();
+                }
+                out.write(output);
+                out.flush();
+                return result;
+            }
+        }
+        return convertStream(sourceFormat, resultFormat, options, in, out);
+    } // convert
+
+    /** Converts a stream, without cache, and records the metrics
+     *  @param sourceFormat code for the input format, for example "ibm6788"
+     *  @param resultFormat code for the output format, for example "xml"
+     *  @param options option string for both transformers
+     *  @param in  input stream
+     *  @param out output stream
+     *  @return whether the conversion was successful
+     *  @throws IOException if an IO error occurs
+     */
+    private boolean convertStream(String sourceFormat, String resultFormat, String options
+            , InputStream in, OutputStream out) throws IOException {
+        boolean result = false;
+        long startTime = System.nanoTime();
+        long inLen  = 0;
+        long outPos = 0;
+        Metrics.CountingInputStream  countIn  = null;
+        Metrics.CountingOutputStream countOut = null;
+        if (in instanceof FileInputStream) { // keep it, such that it can be mapped
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            inLen  = channel.size() - channel.position();
+        } else {
+            countIn  = new Metrics.CountingInputStream(in);
+            in       = countIn;
+        }
+        if (out instanceof FileOutputStream) { // the position of the channel suffices
+            outPos   = ((FileOutputStream) out).getChannel().position();
+        } else {
+            countOut = new Metrics.CountingOutputStream(out);
+            out      = countOut;
+        }
+        long[] outEnd = new long[] { outPos };
+        try {
+            result = convertWired(sourceFormat, resultFormat, options, in, out, outEnd);
+        } finally {
+            boolean valid = factory.getTransformer(sourceFormat) != null && factory.getTransformer(resultFormat) != null;
+            Metrics.getInstance().recordConversion(valid ? sourceFormat : null, valid ? resultFormat : null
+                    , countIn  != null ? countIn .getCount() : inLen
+                    , countOut != null ? countOut.getCount() : outEnd[0] - outPos
+                    , System.nanoTime() - startTime, result);
+        }
+        return result;
+    } // convertStream
+
+    /** Creates a sink for the fused output of a {@link TextConverter}
+     *  @param name "html" (same output as "-xml"), "text" (same output as "-text"),
+     *  or "null" (counts only, for benchmarks)
+     *  @param out output stream
+     *  @param encoding name of the result encoding
+     *  @return the sink, or null if the name is unknown
+     *  @throws IOException if the encoding is not supported
+     */
+    private static TextSink newSink(String name, OutputStream out, String encoding) throws IOException {
+        TextSink result = null;
+        if (false) {
+        } else if (name.equals("html")) {
+            result = new HtmlSink(out, encoding);
+        } else if (name.equals("text")) {
+            result = new PlainTextSink(out, encoding);
+        } else if (name.equals("null")) {
+            result = new NullSink();
+        }
+        return result;
+    } // newSink
+
+    /** Runs the generator.
+     *  With the option <em>-feed n</em>, a {@link TextConverter} is driven by
+     *  its push API instead, with pieces of n bytes which may end anywhere.
+     *  @param generator transformer for the input format, with its reader and handlers set
+     *  @param in input stream
+     *  @return whether the transformation was successful
+     *  @throws IOException if an IO error occurs
+     */
+    private boolean generate(BaseTransformer generator, InputStream in) throws IOException {
+        int feed = 0;
+        try {
+            feed = Integer.parseInt(generator.getOption("feed", "0"));
+        } catch (NumberFormatException exc) {
+            log.error("invalid option -feed");
+        }
+        if (feed <= 0 || ! (generator instanceof TextConverter)) {
+            return generator.generate();
+        }
+        TextConverter pushed = (TextConverter) generator;
+        byte[] piece = new byte[feed];
+        pushed.begin();
+        int len = 0;
+        while ((len = in.read(piece)) >= 0) {
+            pushed.feed(ByteBuffer.wrap(piece, 0, len));
+        } // while len
+        return pushed.finish();
+    } // generate
+
+    /** Wires the transformers and converts a stream.
+     *  With the option <em>-fused html|text|null</em>, a {@link TextConverter}
+     *  generator writes to a {@link TextSink} directly, and the serializer is not used.
+     *  With the option <em>-feed n</em>, the generator is driven by its push API (see {@link #generate}).
+     *  @param sourceFormat code for the input format, for example "ibm6788"
+     *  @param resultFormat code for the output format, for example "xml"
+     *  @param options option string for both transformers
+     *  @param in  input stream
+     *  @param out output stream
+     *  @param outEnd for a {@link FileOutputStream}, element 0 receives the position of
+     *  its channel behind the output, before the transformers close it
+     *  @return whether the conversion was successful
+     *  @throws IOException if an IO error occurs
+     */
+    private boolean convertWired(String sourceFormat, String resultFormat, String options
+            , InputStream in, OutputStream out, long[] outEnd) throws IOException {
+        boolean result = false;
+        BaseTransformer generator  = ((PutransFactory) factory).newTransformer(sourceFormat);
+        BaseTransformer serializer = ((PutransFactory) factory).newTransformer(resultFormat);
+        if (generator == null) {
+            log.error("invalid source format " + sourceFormat);
+        } else if (serializer == null) {
+            log.error("invalid result format " + resultFormat);
+        } else {
+            generator .parseOptionString(options);
+            generator .setSourceEncoding(generator .getOption("enc1", "UTF-8"));
+            serializer.parseOptionString(options);
+            serializer.setResultEncoding(serializer.getOption("enc2", "UTF-8"));
+            String fused = generator.getOption("fused", "");
+            if (fused.length() > 0) { // bypass SAX and the serializer
+                String encoding = serializer.getResultEncoding();
+                if (fused.equals("text") && serializer.getOption("enc2", "").length() == 0) {
+                    encoding = TextConverter.DEFAULT_ENCODING; // like the serializer for "-text"
+                }
+                TextSink sink = newSink(fused, out, encoding);
+                if (sink == null) {
+                    log.error("invalid option -fused " + fused);
+                } else if (! (generator instanceof TextConverter)) {
+                    log.error("option -fused is not supported for source format " + sourceFormat);
+                } else {
+                    ((TextConverter) generator).setSink(sink);
+                    generator.setByteReader(in);
+                    result = generate(generator, in);
+                    out.flush();
+                    if (out instanceof FileOutputStream) {
+                        outEnd[0] = ((FileOutputStream) out).getChannel().position();
+                    }
+                    generator.closeAll();
+                    if (sink instanceof NullSink) {
+                        log.info(sink.toString());
+                    }
+                }
+            } else {
+                generator .setContentHandler(serializer);
+                generator .setLexicalHandler(serializer);
+                if (generator.isBinaryFormat()) {
+                    generator.setByteReader(in);
+                } else {
+                    generator.setCharReader(new InputStreamReader(in, generator.getSourceEncoding()));
+                }
+                Writer writer = null;
+                if (serializer.isBinaryFormat()) {
+                    serializer.setByteWriter(out);
+                } else {
+                    writer = new BufferedWriter(new OutputStreamWriter(out, serializer.getResultEncoding()));
+                    serializer.setCharWriter(writer);
+                }
+                result = generate(generator, in);
+                if (writer != null) {
+                    writer.flush();
+                }
+                out.flush();
+                if (out instanceof FileOutputStream) {
+                    outEnd[0] = ((FileOutputStream) out).getChannel().position();
+                }
+                generator .closeAll(); // closes the streams
+                serializer.closeAll();
+            }
+        }
+        return result;
+    } // convertWired
+
+    /** Determines whether an argument is a format code
+     *  @param arg commandline argument
+     *  @return whether it is "-" followed by a code known to the factory
+     */
+    private boolean isFormat(String arg) {
+        return ((PutransFactory) factory).isFormat(arg);
+    } // isFormat
+
+    /** Determines the files of a command.
+     *  Format codes are recognized by the factory; all other options take a value.
+     *  @param args arguments: -form1 file1 [-tee file] [-form2] [file2] [options]
+     *  @param factory factory for the recognition of format codes
+     *  @param tees the files behind <em>-tee</em> are appended to this list
+     *  @return the other files: the input file first, then any output files
+     */
+    protected static List<String> getFiles(String[] args, PutransFactory factory, List<String> tees) {
+        List<String> files = new ArrayList<String>(2);
+        int iarg = 0;
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (! arg.startsWith("-") || arg.length() == 1) {
+                files.add(arg);
+            } else if (arg.equals("-tee")) {
+                if (iarg < args.length) {
+                    tees.add(args[iarg ++]);
+                }
+            } else if (arg.equals("-" + PutransFactory.AUTO_FORMAT) || factory.isFormat(arg)) {
+                // format code
+            } else if (iarg < args.length) { // option with a value
+                iarg ++;
+            }
+        } // while iarg
+        return files;
+    } // getFiles
+
+    /** Converts a file, or standard input to standard output
+     *  @param sourceFormat code for the input format, for example "ibm6788"
+     *  @param resultFormat code for the output format, for example "xml"
+     *  @param options option string for both transformers
+     *  @param inName  name of the input file, or "-" for standard input
+     *  @param outName name of the output file, or null for standard output
+     *  @return whether the conversion was successful
+     */
+    private boolean convertFile(String sourceFormat, String resultFormat, String options
+            , String inName, String outName) {
+        boolean result = false;
+        try {
+            InputStream in = inName.equals("-") ? System.in : new FileInputStream(inName);
+            try {
+                OutputStream out = null;
+                if (outName != null) {
+                    out = new FileOutputStream(outName);
+                } else { // the transformers must not close it, since further commands may write to it
+                    out = new FilterOutputStream(System.out) {
+                        public void write(byte[] buffer, int offset, int len) throws IOException {
+                            System.out.write(buffer, offset, len);
+                        } // write
+                        public void close() throws IOException {
+                            flush();
+                        } // close
+                    };
+                }
+                try {
+                    result = convert(sourceFormat, resultFormat, options, in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                if (in != System.in) {
+                    in.close();
+                }
+            }
+        } catch (IOException exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        return result;
+    } // convertFile
+
+    /** Processes the arguments of one command, from the commandline
+     *  or from a line of a command file. All forms run through {@link #convert},
+     *  such that the result is known; each <em>-tee</em> file is written by a
+     *  conversion to XML of its own.
+     *  @param args arguments: -form1 file1 [-tee file] [-form2] [file2] [options]
+     *  @return whether all conversions of the command were successful
+     */
+    public boolean processCommand(String[] args) {
+        args = parseCache(args);
+        int iarg = 0;
+        while (iarg < args.length - 1) { // replace "-auto file" by the detected format
+            if (args[iarg].equals("-" + PutransFactory.AUTO_FORMAT)) {
+                String format = null;
+                try {
+                    format = PutransFactory.detectFormat(new File(args[iarg + 1]));
+                } catch (IOException exc) {
+                    log.error(exc.getMessage(), exc);
+                }
+                if (format == null) {
+                    System.err.println(args[iarg + 1] + ": unknown source format");
+                    return false;
+                }
+                args[iarg] = "-" + format;
+            }
+            iarg ++;
+        } // while iarg
+        ArrayList<String> formats = new ArrayList<String>(2);
+        ArrayList<String> files   = new ArrayList<String>(2);
+        ArrayList<String> tees    = new ArrayList<String>(1);
+        StringBuffer options = new StringBuffer(64);
+        iarg = 0;
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (! arg.startsWith("-") || arg.length() == 1) {
+                files.add(arg);
+            } else if (arg.equals("-tee") && iarg < args.length) {
+                tees.add(args[iarg ++]);
+            } else if (formats.size() < 2 && isFormat(arg)) {
+                formats.add(arg.substring(1));
+            } else { // option with a value
+                options.append(arg);
+                if (iarg < args.length) {
+                    options.append(' ');
+                    options.append(args[iarg ++]);
+                }
+                options.append(' ');
+            }
+        } // while iarg
+        if (formats.size() == 0 || files.size() == 0 || files.size() > 2
+                || (tees.size() > 0 && files.get(0).equals("-"))) {
+            System.err.println("usage: -form1 infile [-tee file] [-form2] [outfile] [-opt value ...]");
+            return false;
+        }
+        String sourceFormat = formats.get(0);
+        String resultFormat = formats.size() > 1 ? formats.get(1) : "xml";
+        String optionString = options.toString().trim();
+        boolean result = true;
+        for (String tee : tees) { // the XML of the generator, in a conversion of its own
+            if (! convertFile(sourceFormat, "xml", optionString, files.get(0), tee)) {
+                result = false;
+            }
+        } // for tees
+        if (! convertFile(sourceFormat, resultFormat, optionString, files.get(0), files.size() > 1 ? files.get(1) : null)) {
+            result = false;
+        }
+        return result;
+    } // processCommand
+
     /** Main program, processes the commandline arguments
-     *  @param args arguments: -form1 file1 -form2 file2
+     *  @param args arguments: -form1 file1 -form2 file2,
+     *  or -batch -form1 -form2 indir outdir [-glob pattern] [options],
+     *  or -image -form1 -form2 outdir image1 [image2 ...] [-glob pattern] [options],
+     *  or -archive -form1 -form2 inarchive outarchive [-glob pattern] [options],
+     *  or -scan indir [report] [-glob pattern] [options],
+     *  or -f cmdfile [-threads n]
      */
     public static void main(String args[]) {
+        if (args.length > 0 && args[0].equals("-batch")) {
+            System.exit(BatchConverter.run(args) == 0 ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("-image")) {
+            System.exit(DiskImage.run(args) == 0 ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("-archive")) {
+            System.exit(ArchiveConverter.run(args) == 0 ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("-scan")) {
+            System.exit(CorpusAnalyzer.run(args) == 0 ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("-f")) {
+            System.exit(CommandFile.run(args) == 0 ? 0 : 1);
+        }
         Converter converter = new Converter();
         converter.factory = new PutransFactory();
-        converter.processFile(args);
+        System.exit(converter.processCommand(args) ? 0 : 1);
     } // main
 
 } // Converter
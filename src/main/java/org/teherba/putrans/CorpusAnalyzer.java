@@ -0,0 +1,488 @@
+/*  Scans a corpus of IBM 6788 files for bracket statistics
+    @(#) $Id$
+    2026-10-17: files on which the tokenizer fails are counted as failed
+    2026-10-17, Georg Fischer
+
+    Usage:
+        java -jar dist/putrans.jar -scan indir [report.tsv] [-glob "*.TXT"] [-codepage cp]
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.BatchConverter;
+import  org.teherba.putrans.conv.IBM6788Converter;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.PrintWriter;
+import  java.nio.file.FileSystems;
+import  java.nio.file.PathMatcher;
+import  java.util.ArrayList;
+import  java.util.Collections;
+import  java.util.Comparator;
+import  java.util.Iterator;
+import  java.util.List;
+import  java.util.Map;
+import  java.util.TreeMap;
+import  java.util.concurrent.Callable;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.Executors;
+import  java.util.concurrent.Future;
+import  org.xml.sax.Attributes;
+import  org.xml.sax.ext.DefaultHandler2;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Runs the tokenizer of the {@link IBM6788Converter} over all files
+ *  of a directory tree, in parallel and without any SAX output,
+ *  and reports:
+ *  <ul>
+ *  <li>the number and the lengths of the brackets for each bracket code,</li>
+ *  <li>the a6 pairs which are not known in the {@link AccentMap},</li>
+ *  <li>the control bytes whose meaning is not yet known (29-2f, 30, 31, 33, 34),</li>
+ *  </ul>
+ *  each with some sample positions <em>file@0xoffset</em>.
+ *  The report is a tab-separated file, sorted by descending counts
+ *  in each section, such that the most frequent codes come first.
+ *  @author Dr. Georg Fischer
+ */
+public class CorpusAnalyzer {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Maximum number of sample positions per code */
+    public static final int MAX_SAMPLES = 4;
+    /** Header line of the report */
+    private static final String REPORT_HEADER = "#kind\tcode\tcount\tlengths\tsamples";
+
+    /** root of the input tree */
+    private File inDir;
+    /** selects the input files by their name */
+    private PathMatcher matcher;
+    /** option string for the tokenizer, for example "-codepage 273" */
+    private String options;
+    /** statistics of all files scanned so far */
+    private Statistics total;
+
+    /** Count and sample positions of a code */
+    protected static class Tally {
+        /** code as hex digits, for example "a6" or "4a,79" */
+        public String code;
+        /** number of occurrences */
+        public long count;
+        /** number of occurrences by bracket length, for brackets only */
+        public TreeMap<Integer, Long> lengths;
+        /** some positions where the code occurs */
+        public ArrayList<String> samples;
+
+        /** Constructor
+         *  @param code code as hex digits
+         */
+        public Tally(String code) {
+            this.code    = code;
+            this.count   = 0;
+            this.lengths = null;
+            this.samples = new ArrayList<String>(MAX_SAMPLES);
+        } // Constructor
+
+        /** Adds the occurrences of another tally for the same code
+         *  @param other tally to be added
+         */
+        public void add(Tally other) {
+            count += other.count;
+            if (other.lengths != null) {
+                if (lengths == null) {
+                    lengths = new TreeMap<Integer, Long>();
+                }
+                Iterator<Map.Entry<Integer, Long>> iter = other.lengths.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<Integer, Long> entry = iter.next();
+                    Long old = lengths.get(entry.getKey());
+                    lengths.put(entry.getKey(), old == null ? entry.getValue() : old + entry.getValue());
+                } // while iter
+            }
+            int isamp = 0;
+            while (samples.size() < MAX_SAMPLES && isamp < other.samples.size()) {
+                samples.add(other.samples.get(isamp ++));
+            } // while isamp
+        } // add
+
+        /** Formats the tally as a line of the report
+         *  @param kind "bracket", "unknown" or "control"
+         *  @return tab-separated fields
+         */
+        public String toString(String kind) {
+            StringBuilder result = new StringBuilder(128);
+            result.append(kind);
+            result.append('\t');
+            result.append(code);
+            result.append('\t');
+            result.append(count);
+            result.append('\t');
+            if (lengths != null) {
+                String sep = "";
+                Iterator<Map.Entry<Integer, Long>> iter = lengths.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<Integer, Long> entry = iter.next();
+                    result.append(sep);
+                    result.append(entry.getKey());
+                    result.append(':');
+                    result.append(entry.getValue());
+                    sep = " ";
+                } // while iter
+            }
+            result.append('\t');
+            int isamp = 0;
+            while (isamp < samples.size()) {
+                if (isamp > 0) {
+                    result.append(' ');
+                }
+                result.append(samples.get(isamp));
+                isamp ++;
+            } // while isamp
+            return result.toString();
+        } // toString
+    } // inner class Tally
+
+    /** Statistics of one file, or of several files */
+    protected static class Statistics {
+        /** number of files */
+        public int  files;
+        /** number of files which could not be read */
+        public int  failed;
+        /** number of bytes */
+        public long bytes;
+        /** brackets, indexed by their code */
+        public Tally[] brackets;
+        /** a6 pairs which are not known, indexed by ch4 * 256 + ch5 */
+        public TreeMap<Integer, Tally> unknowns;
+        /** control bytes which are not yet known, indexed by their value */
+        public Tally[] controls;
+
+        /** Constructor
+         */
+        public Statistics() {
+            files    = 0;
+            failed   = 0;
+            bytes    = 0;
+            brackets = new Tally[256];
+            unknowns = new TreeMap<Integer, Tally>();
+            controls = new Tally[256];
+        } // Constructor
+
+        /** Gets the tally for a byte code, and creates it if necessary
+         *  @param tallies array indexed by the code
+         *  @param code byte value
+         *  @return tally for the code
+         */
+        private static Tally getTally(Tally[] tallies, int code) {
+            Tally result = tallies[code];
+            if (result == null) {
+                StringBuilder hex = new StringBuilder(2);
+                TextConverter.appendHex(hex, code);
+                result = new Tally(hex.toString());
+                tallies[code] = result;
+            }
+            return result;
+        } // getTally
+
+        /** Adds the statistics of other files
+         *  @param other statistics to be added
+         */
+        public synchronized void add(Statistics other) {
+            files  += other.files;
+            failed += other.failed;
+            bytes  += other.bytes;
+            int code = 0;
+            while (code < 256) {
+                if (other.brackets[code] != null) {
+                    getTally(brackets, code).add(other.brackets[code]);
+                }
+                if (other.controls[code] != null) {
+                    getTally(controls, code).add(other.controls[code]);
+                }
+                code ++;
+            } // while code
+            Iterator<Map.Entry<Integer, Tally>> iter = other.unknowns.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Integer, Tally> entry = iter.next();
+                Tally tally = unknowns.get(entry.getKey());
+                if (tally == null) {
+                    tally = new Tally(entry.getValue().code);
+                    unknowns.put(entry.getKey(), tally);
+                }
+                tally.add(entry.getValue());
+            } // while iter
+        } // add
+    } // inner class Statistics
+
+    /** The tokenizer of the {@link IBM6788Converter}, which only
+     *  records the codes instead of emitting SAX events
+     */
+    protected static class Scanner extends IBM6788Converter {
+        /** statistics of the current file */
+        private Statistics stats;
+        /** name of the current file in the samples */
+        private String name;
+
+        /** Constructor
+         *  @param stats statistics of the current file
+         *  @param name name of the current file in the samples
+         */
+        public Scanner(Statistics stats, String name) {
+            super();
+            this.stats = stats;
+            this.name  = name;
+        } // Constructor
+
+        /** Adds a sample position to a tally
+         *  @param tally tally of the code
+         *  @param offset position in the current file
+         */
+        private void addSample(Tally tally, long offset) {
+            if (tally.samples.size() < MAX_SAMPLES) {
+                tally.samples.add(name + "@0x" + Long.toHexString(offset));
+            }
+        } // addSample
+
+        protected void noteBracket(int code, int len, long offset) {
+            Tally tally = Statistics.getTally(stats.brackets, code);
+            tally.count ++;
+            if (tally.lengths == null) {
+                tally.lengths = new TreeMap<Integer, Long>();
+            }
+            Long old = tally.lengths.get(len);
+            tally.lengths.put(len, old == null ? 1L : old + 1L);
+            addSample(tally, offset);
+        } // noteBracket
+
+        protected void noteUnknownCode(int ch4, int ch5, long offset) {
+            Integer key = ch4 * 256 + ch5;
+            Tally tally = stats.unknowns.get(key);
+            if (tally == null) {
+                StringBuilder hex = new StringBuilder(5);
+                appendHex(hex, ch4);
+                hex.append(',');
+                appendHex(hex, ch5);
+                tally = new Tally(hex.toString());
+                stats.unknowns.put(key, tally);
+            }
+            tally.count ++;
+            addSample(tally, offset);
+        } // noteUnknownCode
+
+        protected void noteControl(int ch, long offset) {
+            Tally tally = Statistics.getTally(stats.controls, ch);
+            tally.count ++;
+            addSample(tally, offset);
+        } // noteControl
+
+        /** Discards the document text */
+        protected void fireContent() {
+            content.setLength(0);
+        } // fireContent
+
+        /** Discards the start of an element */
+        protected void fireStartElement(String tag, String qName, Attributes attrs) {
+        } // fireStartElement
+
+        /** Discards the end of an element */
+        protected void fireEndElement(String tag, String qName) {
+        } // fireEndElement
+    } // inner class Scanner
+
+    /** Constructor
+     *  @param inDir root of the input tree
+     *  @param glob pattern for the names of the input files, for example "*.TXT"
+     *  @param options option string for the tokenizer, for example "-codepage 273"
+     */
+    public CorpusAnalyzer(File inDir, String glob, String options) {
+        log = LogManager.getLogger(CorpusAnalyzer.class.getName());
+        this.inDir   = inDir;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        this.options = options;
+        this.total   = new Statistics();
+    } // Constructor
+
+    /** Scans one file, and adds its statistics to the total
+     *  @param file input file
+     */
+    protected void scanFile(File file) {
+        Statistics stats = new Statistics();
+        stats.files = 1;
+        stats.bytes = file.length();
+        String name = inDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+        DefaultHandler2 handler = new DefaultHandler2(); // ignores everything
+        Scanner scanner = new Scanner(stats, name);
+        scanner.initialize();
+        scanner.parseOptionString(options);
+        scanner.setSourceEncoding(scanner.getOption("enc1", "UTF-8"));
+        scanner.setContentHandler(handler);
+        scanner.setLexicalHandler(handler);
+        try {
+            InputStream in = new FileInputStream(file); // unbuffered, such that large files can be mapped
+            try {
+                scanner.setByteReader(in);
+                if (! scanner.generate()) {
+                    stats.failed = 1;
+                    log.error(file.getPath() + ": scan failed");
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException exc) {
+            stats.failed = 1;
+            log.error(file.getPath() + ": " + exc.getMessage());
+        }
+        total.add(stats);
+    } // scanFile
+
+    /** Scans all files in parallel
+     *  @return statistics of all files
+     *  @throws IOException if the input tree cannot be read
+     *  @throws InterruptedException if the run is interrupted
+     */
+    public Statistics run() throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        List<File> files = BatchConverter.listFiles(inDir, matcher);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(files.size());
+        for (final File file : files) {
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    scanFile(file);
+                    return null;
+                }
+            });
+        } // for file
+        ExecutorService pool = Executors.newWorkStealingPool();
+        try {
+            List<Future<Object>> futures = pool.invokeAll(tasks);
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception exc) { // scanFile catches the IO errors, but anyway
+                    log.error(exc.getMessage(), exc);
+                }
+            } // for future
+        } finally {
+            pool.shutdown();
+        }
+        log.info(total.files + " files, " + total.bytes + " bytes, " + total.failed + " failed, "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return total;
+    } // run
+
+    /** Writes the tallies of one section of the report, most frequent first
+     *  @param writer where to write the report
+     *  @param kind "bracket", "unknown" or "control"
+     *  @param tallies tallies of the section
+     */
+    private static void writeSection(PrintWriter writer, String kind, List<Tally> tallies) {
+        Collections.sort(tallies, new Comparator<Tally>() {
+            public int compare(Tally tally1, Tally tally2) {
+                int result = Long.compare(tally2.count, tally1.count);
+                return result != 0 ? result : tally1.code.compareTo(tally2.code);
+            }
+        });
+        int ind = 0;
+        while (ind < tallies.size()) {
+            writer.println(tallies.get(ind).toString(kind));
+            ind ++;
+        } // while ind
+    } // writeSection
+
+    /** Writes the report
+     *  @param stats statistics of all files
+     *  @param writer where to write the report
+     */
+    public static void writeReport(Statistics stats, PrintWriter writer) {
+        writer.println("# " + stats.files + " files, " + stats.bytes + " bytes, " + stats.failed + " failed");
+        writer.println(REPORT_HEADER);
+        List<Tally> brackets = new ArrayList<Tally>(256);
+        List<Tally> controls = new ArrayList<Tally>(16);
+        int code = 0;
+        while (code < 256) {
+            if (stats.brackets[code] != null) {
+                brackets.add(stats.brackets[code]);
+            }
+            if (stats.controls[code] != null) {
+                controls.add(stats.controls[code]);
+            }
+            code ++;
+        } // while code
+        writeSection(writer, "bracket", brackets);
+        writeSection(writer, "unknown", new ArrayList<Tally>(stats.unknowns.values()));
+        writeSection(writer, "control", controls);
+        writer.flush();
+    } // writeReport
+
+    /** Evaluates the commandline arguments and runs the analysis
+     *  @param args arguments: -scan indir [report] [-glob pattern] [-opt value ...]
+     *  @return number of files which could not be read, or -1 for invalid arguments
+     */
+    public static int run(String[] args) {
+        int result = -1;
+        ArrayList<String> files = new ArrayList<String>(2);
+        StringBuffer options = new StringBuffer(64);
+        String glob = "*";
+        int iarg = 0;
+        if (iarg < args.length && args[iarg].equals("-scan")) {
+            iarg ++;
+        }
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (! arg.startsWith("-")) {
+                files.add(arg);
+            } else if (arg.equals("-glob") && iarg < args.length) {
+                glob = args[iarg ++];
+            } else { // option with a value
+                options.append(arg);
+                if (iarg < args.length) {
+                    options.append(' ');
+                    options.append(args[iarg ++]);
+                }
+                options.append(' ');
+            }
+        } // while iarg
+        if (files.size() < 1 || files.size() > 2) {
+            System.err.println("usage: -scan indir [report] [-glob pattern] [-opt value ...]");
+        } else {
+            try {
+                CorpusAnalyzer analyzer = new CorpusAnalyzer(new File(files.get(0)), glob, options.toString().trim());
+                Statistics stats = analyzer.run();
+                PrintWriter writer = files.size() > 1
+                        ? new PrintWriter(files.get(1), "UTF-8")
+                        : new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+                try {
+                    writeReport(stats, writer);
+                } finally {
+                    if (files.size() > 1) {
+                        writer.close();
+                    }
+                }
+                result = stats.failed;
+            } catch (Exception exc) {
+                LogManager.getLogger(CorpusAnalyzer.class.getName()).error(exc.getMessage(), exc);
+            }
+        }
+        return result;
+    } // run
+
+} // CorpusAnalyzer
@@ -0,0 +1,495 @@
+/*  Reads the documents from the image of a FAT12 floppy disk
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+
+    Usage:
+        java -jar dist/putrans.jar -image -ibm6788 -xml outdir disk1.img [disk2.img ...] [-glob "DOCUM*.TXT"] [options]
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.Converter;
+import  org.teherba.putrans.PutransFactory;
+import  org.teherba.xtrans.BaseTransformer;
+import  java.io.File;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.OutputStream;
+import  java.io.PrintWriter;
+import  java.io.RandomAccessFile;
+import  java.nio.ByteBuffer;
+import  java.nio.ByteOrder;
+import  java.nio.channels.FileChannel;
+import  java.nio.file.FileSystems;
+import  java.nio.file.PathMatcher;
+import  java.nio.file.Paths;
+import  java.util.ArrayList;
+import  java.util.List;
+import  java.util.concurrent.Callable;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.Executors;
+import  java.util.concurrent.Future;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Reads the files in the root directory of a raw FAT12 disk image,
+ *  for example a 3.5" DS/DD diskette (720 KB) written by a Wheelwriter.
+ *  The image is memory-mapped, and each file is read as a stream
+ *  along its cluster chain, without extraction to a temporary directory.
+ *  <p>
+ *  The geometry is taken from the BIOS parameter block in the boot sector.
+ *  If that is not plausible, the standard geometry for the size
+ *  of the image (360 KB, 720 KB, 1.2 MB, 1.44 MB) is assumed.
+ *  <p>
+ *  With <em>-image</em> as first argument, the {@link Converter} converts
+ *  all matching documents of one or more images; the images are
+ *  processed in parallel, and a summary is written like in {@link BatchConverter}.
+ *  @author Dr. Georg Fischer
+ */
+public class DiskImage {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Length of a directory entry */
+    private static final int DIR_ENTRY_LEN = 32;
+    /** Attribute bit for a volume label */
+    private static final int ATTR_VOLUME    = 0x08;
+    /** Attribute bit for a subdirectory */
+    private static final int ATTR_DIRECTORY = 0x10;
+    /** Attribute value of a long file name entry */
+    private static final int ATTR_LONG_NAME = 0x0f;
+    /** First cluster number which marks the end of a chain (or a bad cluster) */
+    private static final int END_OF_CHAIN   = 0xff7;
+
+    /** Standard geometries: image size, sectors per cluster, root entries, sectors per FAT */
+    private static final int[][] GEOMETRIES = new int[][]
+            { {  368640, 2, 112, 2 } // 5.25" DS/DD  360 KB
+            , {  737280, 2, 112, 3 } // 3.5"  DS/DD  720 KB
+            , { 1228800, 1, 224, 7 } // 5.25" DS/HD  1.2 MB
+            , { 1474560, 1, 224, 9 } // 3.5"  DS/HD 1.44 MB
+            };
+
+    /** A file in the root directory */
+    public static class Entry {
+        /** name in the form "DOCUM001.TXT" */
+        public String name;
+        /** first cluster */
+        public int    cluster;
+        /** length in bytes */
+        public long   size;
+    } // inner class Entry
+
+    /** the image file */
+    private File file;
+    /** the mapped content of the image */
+    private ByteBuffer image;
+    /** bytes per sector */
+    private int sectorLen;
+    /** bytes per cluster */
+    private int clusterLen;
+    /** offset of the first FAT */
+    private int fatStart;
+    /** offset of the root directory */
+    private int rootStart;
+    /** number of entries in the root directory */
+    private int rootEntries;
+    /** offset of cluster 2 */
+    private int dataStart;
+    /** number of the highest cluster + 1 */
+    private int clusterLimit;
+
+    /** Maps an image file and evaluates its boot sector
+     *  @param file the image file
+     *  @throws IOException if the file cannot be read, or is no FAT12 image
+     */
+    public DiskImage(File file) throws IOException {
+        log = LogManager.getLogger(DiskImage.class.getName());
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // remains valid after the close
+        } finally {
+            raf.close();
+        }
+        image.order(ByteOrder.LITTLE_ENDIAN);
+        int imageLen = image.capacity();
+        if (imageLen < 512) {
+            throw new IOException(file.getPath() + ": no disk image");
+        }
+        sectorLen       = image.getShort(0x0b) & 0xffff;
+        int clusterSecs = image.get     (0x0d) & 0xff;
+        int reserved    = image.getShort(0x0e) & 0xffff;
+        int fatCount    = image.get     (0x10) & 0xff;
+        rootEntries     = image.getShort(0x11) & 0xffff;
+        int fatSecs     = image.getShort(0x16) & 0xffff;
+        if (sectorLen != 512 || clusterSecs == 0 || reserved == 0 || fatCount == 0 || fatCount > 2
+                || rootEntries == 0 || fatSecs == 0 || fatSecs > 12) { // BPB missing or not FAT12
+            int igeo = 0;
+            while (igeo < GEOMETRIES.length && GEOMETRIES[igeo][0] != imageLen) {
+                igeo ++;
+            } // while igeo
+            if (igeo >= GEOMETRIES.length) {
+                throw new IOException(file.getPath() + ": unknown disk geometry, " + imageLen + " bytes");
+            }
+            sectorLen   = 512;
+            clusterSecs = GEOMETRIES[igeo][1];
+            reserved    = 1;
+            fatCount    = 2;
+            rootEntries = GEOMETRIES[igeo][2];
+            fatSecs     = GEOMETRIES[igeo][3];
+        }
+        clusterLen   = clusterSecs * sectorLen;
+        fatStart     = reserved * sectorLen;
+        rootStart    = fatStart + fatCount * fatSecs * sectorLen;
+        dataStart    = rootStart + rootEntries * DIR_ENTRY_LEN;
+        clusterLimit = 2 + (imageLen - dataStart) / clusterLen;
+        if (dataStart > imageLen) {
+            throw new IOException(file.getPath() + ": root directory beyond the end of the image");
+        }
+    } // Constructor
+
+    /** Gets the image file
+     *  @return file which was mapped
+     */
+    public File getFile() {
+        return file;
+    } // getFile
+
+    /** Lists the files in the root directory; deleted entries,
+     *  the volume label, subdirectories and long names are skipped
+     *  @param matcher selects the files by their name, or null for all files
+     *  @return files in the order of the directory
+     */
+    public List<Entry> getEntries(PathMatcher matcher) {
+        List<Entry> result = new ArrayList<Entry>(rootEntries);
+        int ientry = 0;
+        boolean busy = true;
+        while (busy && ientry < rootEntries) {
+            int pos = rootStart + ientry * DIR_ENTRY_LEN;
+            int first = image.get(pos) & 0xff;
+            int attr  = image.get(pos + 0x0b) & 0xff;
+            if (first == 0) { // end of directory
+                busy = false;
+            } else if (first != 0xe5 && attr != ATTR_LONG_NAME
+                    && (attr & (ATTR_VOLUME | ATTR_DIRECTORY)) == 0) {
+                Entry entry   = new Entry();
+                entry.name    = getName(pos);
+                entry.cluster = image.getShort(pos + 0x1a) & 0xffff;
+                entry.size    = image.getInt  (pos + 0x1c) & 0xffffffffL;
+                if (matcher == null || matcher.matches(Paths.get(entry.name))) {
+                    result.add(entry);
+                }
+            }
+            ientry ++;
+        } // while ientry
+        return result;
+    } // getEntries
+
+    /** Assembles the name of a directory entry
+     *  @param pos offset of the entry
+     *  @return name and extension, separated by a dot if the extension is not empty
+     */
+    private String getName(int pos) {
+        StringBuilder name = new StringBuilder(12);
+        int ipos = 0;
+        while (ipos < 11) {
+            if (ipos == 8) {
+                name.append('.');
+            }
+            char ch = (char) (image.get(pos + ipos) & 0xff);
+            if (ipos == 0 && ch == 0x05) { // escaped 0xe5
+                ch = (char) 0xe5;
+            }
+            if (ch != ' ') {
+                name.append(ch);
+            }
+            ipos ++;
+        } // while ipos
+        if (name.charAt(name.length() - 1) == '.') {
+            name.setLength(name.length() - 1);
+        }
+        return name.toString();
+    } // getName
+
+    /** Gets the successor of a cluster from the FAT
+     *  @param cluster number of the cluster
+     *  @return number of the next cluster in the chain
+     */
+    private int nextCluster(int cluster) {
+        int pos = fatStart + cluster + (cluster >> 1); // 1.5 bytes per entry
+        int pair = (image.get(pos) & 0xff) | ((image.get(pos + 1) & 0xff) << 8);
+        return (cluster & 1) == 0 ? pair & 0xfff : pair >> 4;
+    } // nextCluster
+
+    /** Opens a file of the image for reading
+     *  @param entry the file
+     *  @return stream over the file's clusters
+     *  @throws IOException if the cluster chain is broken
+     */
+    public InputStream open(Entry entry) throws IOException {
+        int count = (int) ((entry.size + clusterLen - 1) / clusterLen);
+        int[] clusters = new int[count];
+        int cluster = entry.cluster;
+        int icl = 0;
+        while (icl < count) {
+            if (cluster < 2 || cluster >= clusterLimit || cluster >= END_OF_CHAIN) {
+                throw new IOException(file.getPath() + ": " + entry.name + ": cluster chain broken after "
+                        + icl + " of " + count + " clusters");
+            }
+            clusters[icl ++] = cluster;
+            cluster = nextCluster(cluster);
+        } // while icl
+        return new ChainInputStream(clusters, entry.size);
+    } // open
+
+    /** Reads a file along its cluster chain from the mapped image
+     */
+    private class ChainInputStream extends InputStream {
+        /** the file's clusters */
+        private int[] clusters;
+        /** length of the file */
+        private long size;
+        /** position of the next byte in the file */
+        private long position;
+        /** position for reset */
+        private long marked;
+        /** private view of the image, such that several streams may read concurrently */
+        private ByteBuffer view;
+
+        /** Constructor
+         *  @param clusters the file's clusters, in order
+         *  @param size length of the file
+         */
+        ChainInputStream(int[] clusters, long size) {
+            this.clusters = clusters;
+            this.size     = size;
+            position      = 0;
+            marked        = 0;
+            view          = image.duplicate();
+        } // Constructor
+
+        public int read() throws IOException {
+            int result = -1;
+            if (position < size) {
+                result = view.get(dataStart + (clusters[(int) (position / clusterLen)] - 2) * clusterLen
+                        + (int) (position % clusterLen)) & 0xff;
+                position ++;
+            }
+            return result;
+        } // read()
+
+        public int read(byte[] buffer, int offset, int len) throws IOException {
+            int total = 0;
+            while (len > 0 && position < size) {
+                int inCluster = (int) (position % clusterLen);
+                int count = (int) Math.min(Math.min(len, clusterLen - inCluster), size - position);
+                view.position(dataStart + (clusters[(int) (position / clusterLen)] - 2) * clusterLen + inCluster);
+                view.get(buffer, offset, count);
+                offset   += count;
+                len      -= count;
+                total    += count;
+                position += count;
+            } // while len
+            return total > 0 || len == 0 ? total : -1;
+        } // read(byte[])
+
+        public long skip(long count) {
+            long result = Math.max(0, Math.min(count, size - position));
+            position += result;
+            return result;
+        } // skip
+
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, size - position);
+        } // available
+
+        public boolean markSupported() {
+            return true;
+        } // markSupported
+
+        public void mark(int limit) {
+            marked = position;
+        } // mark
+
+        public void reset() {
+            position = marked;
+        } // reset
+    } // inner class ChainInputStream
+
+    /** Converts the matching files of one image into a subdirectory of the output directory
+     *  @param converter converter which is shared by all threads
+     *  @param sourceFormat code for the input format, or "auto"
+     *  @param resultFormat code for the output format
+     *  @param options option string for both transformers
+     *  @param matcher selects the files by their name
+     *  @param outDir root of the output tree
+     *  @param extension extension appended to the output files
+     *  @param summary lines for the summary: status, millis, bytes, input, output, message
+     *  @return number of files which could not be converted
+     */
+    protected int convertAll(Converter converter, String sourceFormat, String resultFormat, String options
+            , PathMatcher matcher, File outDir, String extension, List<String> summary) {
+        int failed = 0;
+        String imageName = file.getName().replaceFirst("\\.[^\\.]*$", "");
+        File targetDir = new File(outDir, imageName);
+        List<Entry> entries = getEntries(matcher);
+        for (Entry entry : entries) {
+            long startTime = System.nanoTime();
+            File target = new File(targetDir, entry.name + "." + extension);
+            boolean ok = false;
+            String message = "";
+            try {
+                InputStream in = open(entry);
+                String format = sourceFormat;
+                if (format.equals(PutransFactory.AUTO_FORMAT)) {
+                    format = PutransFactory.detectFormat(in);
+                }
+                if (format == null) {
+                    message = "unknown source format";
+                } else {
+                    targetDir.mkdirs();
+                    OutputStream out = new FileOutputStream(target); // unbuffered, such that a 6788 header can be patched in place
+                    try {
+                        ok = converter.convert(format, resultFormat, options, in, out);
+                    } finally {
+                        in .close();
+                        out.close();
+                    }
+                }
+            } catch (Exception exc) {
+                message = String.valueOf(exc.getMessage());
+                log.error(file.getPath() + ": " + entry.name + ": " + exc.getMessage(), exc);
+            }
+            if (! ok) {
+                failed ++;
+            }
+            summary.add((ok ? "ok" : "FAILED")
+                    + "\t" + (System.nanoTime() - startTime) / 1000000L
+                    + "\t" + entry.size
+                    + "\t" + file.getPath() + "/" + entry.name
+                    + "\t" + target.getPath()
+                    + "\t" + message);
+        } // for entry
+        return failed;
+    } // convertAll
+
+    /** Evaluates the commandline arguments and converts the images
+     *  @param args arguments: -image -form1 -form2 outdir image1 [image2 ...] [-glob pattern] [-opt value ...]
+     *  @return number of files which could not be converted, or -1 for invalid arguments
+     */
+    public static int run(String[] args) {
+        int result = -1;
+        Logger log = LogManager.getLogger(DiskImage.class.getName());
+        final Converter converter = new Converter();
+        PutransFactory factory = new PutransFactory();
+        converter.factory = factory;
+        ArrayList<String> formats = new ArrayList<String>(2);
+        ArrayList<String> files   = new ArrayList<String>(16);
+        StringBuffer options = new StringBuffer(64);
+        String glob = "*";
+        int iarg = 0;
+        if (iarg < args.length && args[iarg].equals("-image")) {
+            iarg ++;
+        }
+        while (iarg < args.length) {
+            String arg = args[iarg ++];
+            if (! arg.startsWith("-")) {
+                files.add(arg);
+            } else if (arg.equals("-glob") && iarg < args.length) {
+                glob = args[iarg ++];
+            } else if (formats.size() == 0 && arg.equals("-" + PutransFactory.AUTO_FORMAT)) {
+                formats.add(PutransFactory.AUTO_FORMAT);
+            } else if (formats.size() < 2 && factory.isFormat(arg)) {
+                formats.add(arg.substring(1));
+            } else { // option with a value
+                options.append(arg);
+                if (iarg < args.length) {
+                    options.append(' ');
+                    options.append(args[iarg ++]);
+                }
+                options.append(' ');
+            }
+        } // while iarg
+        if (formats.size() != 2 || files.size() < 2) {
+            System.err.println("usage: -image -form1 -form2 outdir image1 [image2 ...] [-glob pattern] [-opt value ...]");
+            return result;
+        }
+        final String sourceFormat = formats.get(0);
+        final String resultFormat = formats.get(1);
+        final String optionString = options.toString().trim();
+        final File   outDir       = new File(files.get(0));
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        BaseTransformer serializer = factory.getTransformer(resultFormat);
+        final String extension    = serializer != null ? serializer.getFileExtension() : resultFormat;
+        long startTime = System.currentTimeMillis();
+        try {
+            List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>(files.size());
+            int ifile = 1;
+            while (ifile < files.size()) {
+                final File imageFile = new File(files.get(ifile ++));
+                tasks.add(new Callable<List<String>>() {
+                    public List<String> call() {
+                        List<String> lines = new ArrayList<String>(64);
+                        try {
+                            (new DiskImage(imageFile)).convertAll(converter, sourceFormat, resultFormat, optionString
+                                    , matcher, outDir, extension, lines);
+                        } catch (Exception exc) {
+                            LogManager.getLogger(DiskImage.class.getName()).error(exc.getMessage(), exc);
+                            lines.add("FAILED\t0\t" + imageFile.length() + "\t" + imageFile.getPath() + "\t\t" + exc.getMessage());
+                        }
+                        return lines;
+                    }
+                });
+            } // while ifile
+            ExecutorService pool = Executors.newWorkStealingPool();
+            List<Future<List<String>>> futures;
+            try {
+                futures = pool.invokeAll(tasks);
+            } finally {
+                pool.shutdown();
+            }
+            int failed = 0;
+            int count  = 0;
+            outDir.mkdirs();
+            PrintWriter summary = new PrintWriter(new File(outDir, BatchConverter.SUMMARY_FILE), "UTF-8");
+            try {
+                summary.println("#status\tmillis\tbytes\tinput\toutput\tmessage");
+                for (Future<List<String>> future : futures) {
+                    for (String line : future.get()) {
+                        count ++;
+                        if (! line.startsWith("ok")) {
+                            failed ++;
+                        }
+                        summary.println(line);
+                    } // for line
+                } // for future
+            } finally {
+                summary.close();
+            }
+            log.info((files.size() - 1) + " images, " + count + " files, " + failed + " failed, "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+            result = failed;
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        return result;
+    } // run
+
+} // DiskImage
@@ -1,5 +1,6 @@
 /*  EbcdicMap.java - generates the code mappings for IBM's EBCDIC character set
  *  @(#) $Id: EbcdicMap.java 9 2008-09-05 05:21:15Z gfis $
+ *  2026-10-17: immutable tables for several code pages, shared registry
  *  2017-07-22, Georg Fischer
  *
  */
@@ -20,57 +21,140 @@
  */
 
 package org.teherba.putrans;
+import  java.nio.charset.Charset;
+import  java.util.concurrent.ConcurrentHashMap;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
-/** Generates the code mappings for IBM's EBCDIC character set.
- *  The code tables are taken from Java's Codepage 1047.
+/** Generates the code mappings for IBM's EBCDIC character sets.
+ *  The code tables are taken from Java's code pages, for example
+ *  CP1047 (Latin-1, the default), CP273 (German), CP500 (international)
+ *  and CP037 (USA/Canada).
+ *  <p>
+ *  The tables of a code page are built once, on the first call of
+ *  {@link #getInstance}, and are immutable afterwards, such that they
+ *  can be shared by all converters and threads.
  */
 
 public class EbcdicMap {
     public final static String CVSID = "@(#) $Id: EbcdicMap.java 9 2008-09-05 05:21:15Z gfis $";
 
-    /** log4j logger (category) */
-    private Logger log;
-    
+    /** Code page which is used when none is specified */
+    public static final String DEFAULT_CODEPAGE = "CP1047";
+
     /** Array bound for both character tables */
     private static final int MAX_TAB = 256;
-    /** Converts from EBCDIC to ASCII  */
+
+    /** Converts from EBCDIC to ASCII (for CP1047)
+     *  @deprecated use {@link #getInstance} and {@link #toAscii}
+     */
+    @Deprecated
     public  static final char[] ebc_asc = new char[MAX_TAB];
-    /** Converts from ASCII  to EBCDIC */
+    /** Converts from ASCII  to EBCDIC (for CP1047)
+     *  @deprecated use {@link #getInstance} and {@link #toEbcdic}
+     */
+    @Deprecated
     public  static final char[] asc_ebc = new char[MAX_TAB];
 
-    /** Initializes mappings for the ISO 6937 character set.
+    /** Tables which were built so far, indexed by the canonical charset name */
+    private static final ConcurrentHashMap<String, EbcdicMap> registry = new ConcurrentHashMap<String, EbcdicMap>();
+
+    static { // fill the deprecated tables once
+        EbcdicMap map = getInstance(DEFAULT_CODEPAGE);
+        System.arraycopy(map.ebcAsc, 0, ebc_asc, 0, MAX_TAB);
+        System.arraycopy(map.ascEbc, 0, asc_ebc, 0, MAX_TAB);
+    } // static
+
+    /** Name of the code page */
+    private final String codepage;
+    /** Converts from EBCDIC to ASCII  */
+    private final char[] ebcAsc;
+    /** Converts from ASCII  to EBCDIC */
+    private final char[] ascEbc;
+
+    /** Gets the shared tables for a code page.
+     *  @param codepage name of the code page, for example "CP273";
+     *  the default code page is used for null or an unsupported name
+     *  @return immutable tables for the code page
+     */
+    public static EbcdicMap getInstance(String codepage) {
+        Charset charset = null;
+        try {
+            charset = Charset.forName(codepage != null ? codepage : DEFAULT_CODEPAGE);
+        } catch (Exception exc) {
+            LogManager.getLogger(EbcdicMap.class.getName()).error("unsupported code page " + codepage);
+            charset = Charset.forName(DEFAULT_CODEPAGE);
+        }
+        EbcdicMap result = registry.get(charset.name());
+        if (result == null) {
+            EbcdicMap map = new EbcdicMap(charset);
+            result = registry.putIfAbsent(charset.name(), map);
+            if (result == null) { // this thread built the tables
+                result = map;
+            }
+        }
+        return result;
+    } // getInstance
+
+    /** Initializes mappings for the default code page.
+     *  @deprecated use {@link #getInstance}
      */
+    @Deprecated
     public EbcdicMap() {
-        log = LogManager.getLogger(EbcdicMap.class.getName());
-        initialize();
+        this(Charset.forName(DEFAULT_CODEPAGE));
     } // Constructor 0
 
-    /** Initializes the translation tables. 
+    /** Builds the translation tables.
      *  See https://stackoverflow.com/questions/368603/convert-string-from-ascii-to-ebcdic-in-java
+     *  @param charset the EBCDIC code page
      */
-    public void initialize() {
+    private EbcdicMap(Charset charset) {
+        Logger log = LogManager.getLogger(EbcdicMap.class.getName());
+        codepage = charset.name();
+        ebcAsc   = new char[MAX_TAB];
+        ascEbc   = new char[MAX_TAB];
         byte[] bytes = new byte[MAX_TAB];
-        char ind = 0; 
+        char ind = 0;
         while (ind < MAX_TAB) {
             bytes[ind] = (byte) (ind & 0xff);
             ind ++;
         } // while ind
-        
-        try {
-            char[] chars = (new String(bytes, "CP1047")).toCharArray();
-            ind = 0;
-            while (ind < MAX_TAB) {
-                char val = chars[ind];
-                ebc_asc[ind] = val;
-                asc_ebc[val] = ind;
-                ind ++;
-            } // while ind 2
-        } catch (Exception exc) {
-            exc.printStackTrace();
-        }
-    } // initialize
 
+        char[] chars = (new String(bytes, charset)).toCharArray();
+        ind = 0;
+        while (ind < MAX_TAB) {
+            char val = chars[ind];
+            ebcAsc[ind] = val;
+            if (val < MAX_TAB) {
+                ascEbc[val] = ind;
+            } else {
+                log.error(codepage + ": EBCDIC 0x" + Integer.toHexString(ind) + " is not mapped to Latin-1");
+            }
+            ind ++;
+        } // while ind 2
+    } // Constructor(Charset)
+
+    /** Gets the name of the code page
+     *  @return canonical charset name, for example "IBM273"
+     */
+    public String getCodepage() {
+        return codepage;
+    } // getCodepage
+
+    /** Converts an EBCDIC byte
+     *  @param ebc the byte, 0..255
+     *  @return Unicode character
+     */
+    public char toAscii(int ebc) {
+        return ebcAsc[ebc & 0xff];
+    } // toAscii
+
+    /** Converts a character to EBCDIC
+     *  @param chx Unicode character
+     *  @return EBCDIC byte, or the code of '?' for characters outside Latin-1
+     */
+    public int toEbcdic(char chx) {
+        return ascEbc[chx < MAX_TAB ? chx : '?'];
+    } // toEbcdic
 
 } // EbcdicMap
@@ -0,0 +1,298 @@
+/*  Charset which decodes IBM 6788 documents to plain text
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.AccentMap;
+import  org.teherba.putrans.EbcdicMap;
+import  java.nio.ByteBuffer;
+import  java.nio.CharBuffer;
+import  java.nio.charset.Charset;
+import  java.nio.charset.CharsetDecoder;
+import  java.nio.charset.CharsetEncoder;
+import  java.nio.charset.CoderResult;
+
+/** Decodes the files of the IBM 6788 / Wheelwriter typewriter to plain text,
+ *  with the same characters as the conversion "-ibm6788 ... -text":
+ *  <ul>
+ *  <li>EBCDIC characters are mapped by {@link EbcdicMap},</li>
+ *  <li>a6 brackets are composed by {@link AccentMap}, unknown pairs
+ *  yield "{code xx,yy}",</li>
+ *  <li>06, 07 and 15 yield CR/LF, 28 is a no-break space, 37 a space,</li>
+ *  <li>the decoration bytes, the other control bytes and all other brackets
+ *  are dropped; the a7 title and the d6 header only leave a CR/LF.</li>
+ *  </ul>
+ *  The decoder keeps its state between the calls, such that brackets
+ *  and control sequences may span buffer boundaries.
+ *  Encoding is not supported.
+ *  <p>
+ *  The charset is named "x-ibm6788" (with the default code page),
+ *  or "x-ibm6788-" followed by the name of the EBCDIC code page,
+ *  for example "x-ibm6788-IBM273". It is found by
+ *  {@link Charset#forName} via {@link IBM6788CharsetProvider}.
+ *  @author Dr. Georg Fischer
+ */
+public class IBM6788Charset extends Charset {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** Canonical name of the charset with the default code page */
+    public static final String NAME = "x-ibm6788";
+
+    /** name of the EBCDIC code page */
+    private String codepage;
+
+    /** Constructor
+     *  @param name canonical name of the charset
+     *  @param aliases other names, or null
+     *  @param codepage name of the EBCDIC code page, for example "IBM273"
+     */
+    public IBM6788Charset(String name, String[] aliases, String codepage) {
+        super(name, aliases);
+        this.codepage = codepage;
+    } // Constructor
+
+    /** Tells whether this charset contains another one
+     *  @param cs the other charset
+     *  @return true for 6788 charsets only
+     */
+    public boolean contains(Charset cs) {
+        return cs instanceof IBM6788Charset;
+    } // contains
+
+    /** Tells whether this charset supports encoding
+     *  @return false
+     */
+    public boolean canEncode() {
+        return false;
+    } // canEncode
+
+    /** Constructs a new decoder
+     *  @return decoder with the EBCDIC code page of this charset
+     */
+    public CharsetDecoder newDecoder() {
+        return new Decoder(this, EbcdicMap.getInstance(codepage));
+    } // newDecoder
+
+    /** Encoding is not supported
+     *  @return nothing
+     *  @throws UnsupportedOperationException always
+     */
+    public CharsetEncoder newEncoder() {
+        throw new UnsupportedOperationException(name() + " can only be decoded");
+    } // newEncoder
+
+    /** Decoder for 6788 files */
+    protected static class Decoder extends CharsetDecoder {
+        /** Marks the bytes which are not simply mapped to a character */
+        private static final char SPECIAL = '\uffff';
+        /** Maximum number of bytes which are kept from a bracket */
+        private static final int MAX_HEAD = 16;
+        /** Line separator */
+        private static final String CRLF = "\r\n";
+
+        /** characters for all bytes in the text, or {@link #SPECIAL} */
+        private char[] chars;
+        /** composition of accents and base characters */
+        private AccentMap accents;
+        /** whether the decoder is inside a bracket */
+        private boolean inBracket;
+        /** first bytes of the current bracket, starting with the leading 2b */
+        private byte[] head;
+        /** number of bytes of the current bracket so far */
+        private int bracketLen;
+        /** characters which did not fit into the output buffer */
+        private String pending;
+        /** number of characters of {@link #pending} which were already output */
+        private int pendingPos;
+
+        /** Constructor
+         *  @param charset the 6788 charset
+         *  @param emap EBCDIC mapping
+         */
+        protected Decoder(Charset charset, EbcdicMap emap) {
+            super(charset, 1.0f, 12.0f); // "{code xx,yy}" for the shortest a6 bracket
+            accents = AccentMap.getInstance();
+            head    = new byte[MAX_HEAD];
+            chars   = new char[256];
+            int ch = 0;
+            while (ch < 256) {
+                switch (ch) {
+                    case 0x00: // nil
+                    case 0x06: // paragraph
+                    case 0x07: // page
+                    case 0x15: // line
+                    case 0x20: // decoration
+                    case 0x21:
+                    case 0x22:
+                    case 0x29: // unknown control bytes
+                    case 0x2a:
+                    case 0x2b: // bracket
+                    case 0x2c:
+                    case 0x2d:
+                    case 0x2e:
+                    case 0x2f:
+                    case 0x30:
+                    case 0x31:
+                    case 0x33:
+                    case 0x34:
+                        chars[ch] = SPECIAL;
+                        break;
+                    case 0x28:
+                        chars[ch] = '\u00a0'; // hard space
+                        break;
+                    case 0x37:
+                        chars[ch] = ' '; // soft space
+                        break;
+                    default:
+                        chars[ch] = emap.toAscii(ch);
+                        break;
+                } // switch ch
+                ch ++;
+            } // while ch
+            implReset();
+        } // Constructor
+
+        /** Resets the state of the decoder
+         */
+        protected void implReset() {
+            inBracket  = false;
+            bracketLen = 0;
+            pending    = "";
+            pendingPos = 0;
+        } // implReset
+
+        /** Gets a byte of the current bracket
+         *  @param pos position in the bracket, 0 = leading 2b
+         *  @return byte value, or 0 if the bracket is shorter
+         */
+        private int bracketByte(int pos) {
+            return pos < bracketLen && pos < MAX_HEAD ? head[pos] & 0xff : 0;
+        } // bracketByte
+
+        /** Evaluates a complete bracket, like the {@link org.teherba.putrans.conv.IBM6788Converter}
+         *  @return the characters for the bracket, maybe empty
+         */
+        private String evalBracket() {
+            String result = "";
+            switch (bracketByte(1)) {
+                case 0xa6: // accented character
+                    int ch4 = bracketByte(4);
+                    int ch5 = bracketByte(5);
+                    if (bracketLen > 9) { // decorated
+                        ch4 = bracketByte(5);
+                        ch5 = bracketByte(7);
+                    }
+                    char code = accents.get(ch5, ch4);
+                    if (code == AccentMap.UNKNOWN) {
+                        StringBuilder buffer = new StringBuilder(12);
+                        buffer.append("{code ");
+                        TextConverter.appendHex(buffer, ch4);
+                        buffer.append(',');
+                        TextConverter.appendHex(buffer, ch5);
+                        buffer.append('}');
+                        result = buffer.toString();
+                    } else if (code != AccentMap.IGNORE) {
+                        result = String.valueOf(code);
+                    }
+                    break;
+                case 0xa7: // title
+                case 0xd6: // file header
+                    result = CRLF;
+                    break;
+                default: // formatting
+                    break;
+            } // switch (1)
+            return result;
+        } // evalBracket
+
+        /** Decodes bytes to characters
+         *  @param in  bytes to be decoded
+         *  @param out where to put the characters
+         *  @return UNDERFLOW when all bytes were decoded, OVERFLOW when the output is full
+         */
+        protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+            while (true) {
+                while (pendingPos < pending.length()) {
+                    if (! out.hasRemaining()) {
+                        return CoderResult.OVERFLOW;
+                    }
+                    out.put(pending.charAt(pendingPos ++));
+                } // while pending
+                if (! in.hasRemaining()) {
+                    return CoderResult.UNDERFLOW;
+                }
+                if (! out.hasRemaining()) {
+                    return CoderResult.OVERFLOW;
+                }
+                if (! inBracket && in.hasArray() && out.hasArray()) { // fast path for a run of simple characters
+                    byte[] src = in .array();
+                    char[] dst = out.array();
+                    int sp = in .arrayOffset() + in .position();
+                    int sl = in .arrayOffset() + in .limit();
+                    int dp = out.arrayOffset() + out.position();
+                    int dl = out.arrayOffset() + out.limit();
+                    while (sp < sl && dp < dl) {
+                        char chx = chars[src[sp] & 0xff];
+                        if (chx == SPECIAL) {
+                            break;
+                        }
+                        dst[dp ++] = chx;
+                        sp ++;
+                    } // while simple
+                    in .position(sp - in .arrayOffset());
+                    out.position(dp - out.arrayOffset());
+                    if (! in.hasRemaining() || ! out.hasRemaining()) {
+                        continue;
+                    }
+                }
+                int ch = in.get() & 0xff;
+                if (inBracket) {
+                    if (bracketLen < MAX_HEAD) {
+                        head[bracketLen] = (byte) ch;
+                    }
+                    bracketLen ++;
+                    if (ch == 0x2b) { // trailing 2b
+                        inBracket  = false;
+                        pending    = evalBracket();
+                        pendingPos = 0;
+                        bracketLen = 0;
+                    }
+                } else if (chars[ch] != SPECIAL) {
+                    out.put(chars[ch]);
+                } else {
+                    switch (ch) {
+                        case 0x06:
+                        case 0x07:
+                        case 0x15:
+                            pending    = CRLF;
+                            pendingPos = 0;
+                            break;
+                        case 0x2b: // leading 2b
+                            inBracket  = true;
+                            head[0]    = (byte) ch;
+                            bracketLen = 1;
+                            break;
+                        default: // dropped
+                            break;
+                    } // switch ch
+                }
+            } // while true
+        } // decodeLoop
+    } // inner class Decoder
+
+} // IBM6788Charset
@@ -0,0 +1,86 @@
+/*  Provides the charset x-ibm6788 to java.nio
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  org.teherba.putrans.IBM6788Charset;
+import  java.nio.charset.Charset;
+import  java.nio.charset.spi.CharsetProvider;
+import  java.util.Collections;
+import  java.util.Iterator;
+import  java.util.concurrent.ConcurrentHashMap;
+
+/** Provides the {@link IBM6788Charset}s, such that any Java program
+ *  with putrans on the classpath can read 6788 files as plain text, for example with
+ *  <pre>
+ *  Files.newBufferedReader(path, Charset.forName("x-ibm6788"))
+ *  </pre>
+ *  The provider is registered in <em>META-INF/services/java.nio.charset.spi.CharsetProvider</em>.
+ *  @author Dr. Georg Fischer
+ */
+public class IBM6788CharsetProvider extends CharsetProvider {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** Other name of the charset with the default code page */
+    private static final String ALIAS = "ibm6788";
+
+    /** Charsets which were built so far, indexed by their lowercase names */
+    private static final ConcurrentHashMap<String, IBM6788Charset> charsets = new ConcurrentHashMap<String, IBM6788Charset>();
+
+    /** Charset with the default code page */
+    private static final IBM6788Charset DEFAULT = new IBM6788Charset(IBM6788Charset.NAME
+            , new String[] { ALIAS }, EbcdicMap.DEFAULT_CODEPAGE);
+
+    /** No-args Constructor, for the ServiceLoader
+     */
+    public IBM6788CharsetProvider() {
+        super();
+    } // Constructor
+
+    /** Gets the charsets with a fixed name
+     *  @return the charset with the default code page
+     */
+    public Iterator<Charset> charsets() {
+        return Collections.<Charset>singletonList(DEFAULT).iterator();
+    } // charsets
+
+    /** Gets a charset by its name.
+     *  The EBCDIC code page is not checked here, since this method
+     *  must not look up other charsets.
+     *  @param charsetName "x-ibm6788", "ibm6788" or "x-ibm6788-" followed by an EBCDIC code page
+     *  @return the charset, or null for other names
+     */
+    public Charset charsetForName(String charsetName) {
+        Charset result = null;
+        String name = charsetName.toLowerCase();
+        if (name.equals(IBM6788Charset.NAME) || name.equals(ALIAS)) {
+            result = DEFAULT;
+        } else if (name.startsWith(IBM6788Charset.NAME + "-") && name.length() > IBM6788Charset.NAME.length() + 1) {
+            result = charsets.get(name);
+            if (result == null) {
+                IBM6788Charset charset = new IBM6788Charset(name, null, name.substring(IBM6788Charset.NAME.length() + 1));
+                result = charsets.putIfAbsent(name, charset);
+                if (result == null) {
+                    result = charset;
+                }
+            }
+        }
+        return result;
+    } // charsetForName
+
+} // IBM6788CharsetProvider
@@ -0,0 +1,478 @@
+/*  Counters and histograms for conversion throughput and errors
+    @(#) $Id$
+    2026-10-17: addCounts for separately decoded chunks
+    2026-10-17: cumulative histograms with _bucket, _sum and _count; unregister
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  java.io.FilterInputStream;
+import  java.io.FilterOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.OutputStream;
+import  java.lang.management.ManagementFactory;
+import  java.util.Iterator;
+import  java.util.Map;
+import  java.util.TreeMap;
+import  java.util.concurrent.ConcurrentHashMap;
+import  java.util.concurrent.atomic.LongAdder;
+import  javax.management.InstanceAlreadyExistsException;
+import  javax.management.InstanceNotFoundException;
+import  javax.management.MBeanServer;
+import  javax.management.ObjectName;
+import  org.apache.logging.log4j.LogManager;
+
+/** Collects counters and histograms for all conversions in the JVM:
+ *  <ul>
+ *  <li>conversions, failures and bytes, per format pair,</li>
+ *  <li>latency, by input size and in total,</li>
+ *  <li>6788 brackets by their code, unknown codes, and invalid parser states.</li>
+ *  </ul>
+ *  All counters are {@link LongAdder}s, such that concurrent conversions
+ *  do not contend for them. The metrics are exposed as a JMX MBean
+ *  (see {@link #register} and {@link #unregister}), and in the Prometheus
+ *  text format by {@link #toString} (for example in the servlet's view "metrics").
+ *  @author Dr. Georg Fischer
+ */
+public class Metrics implements MetricsMBean {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** Name under which the MBean is registered */
+    public static final String OBJECT_NAME = "org.teherba.putrans:type=Metrics";
+
+    /** Upper bounds of the input size classes in bytes; the last class is unbounded */
+    private static final long[] SIZE_LIMITS = new long[]
+            { 1L << 10, 4L << 10, 16L << 10, 64L << 10, 256L << 10, 1L << 20, 4L << 20, Long.MAX_VALUE };
+    /** Upper bounds of the latency classes in milliseconds; the last class is unbounded */
+    private static final long[] LATENCY_LIMITS = new long[]
+            { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, Long.MAX_VALUE };
+
+    /** the only instance */
+    private static final Metrics instance = new Metrics();
+
+    /** number of conversions */
+    private final LongAdder conversions;
+    /** number of failed conversions */
+    private final LongAdder failures;
+    /** number of results from the cache */
+    private final LongAdder cacheHits;
+    /** input bytes */
+    private final LongAdder bytesIn;
+    /** output bytes */
+    private final LongAdder bytesOut;
+    /** unknown 6788 character codes */
+    private final LongAdder unknownCodes;
+    /** invalid parser states */
+    private final LongAdder invalidStates;
+    /** 6788 brackets, indexed by their code (2nd byte) */
+    private final LongAdder[] brackets;
+    /** conversions by input size class */
+    private final LongAdder[] sizeCount;
+    /** total duration in nanoseconds by input size class */
+    private final LongAdder[] sizeNanos;
+    /** conversions by latency class */
+    private final LongAdder[] latency;
+    /** counters per format pair "source-&gt;result": conversions, failures, bytes in, bytes out */
+    private final ConcurrentHashMap<String, LongAdder[]> formats;
+
+    /** Constructor
+     */
+    private Metrics() {
+        conversions   = new LongAdder();
+        failures      = new LongAdder();
+        cacheHits     = new LongAdder();
+        bytesIn       = new LongAdder();
+        bytesOut      = new LongAdder();
+        unknownCodes  = new LongAdder();
+        invalidStates = new LongAdder();
+        brackets      = newAdders(256);
+        sizeCount     = newAdders(SIZE_LIMITS.length);
+        sizeNanos     = newAdders(SIZE_LIMITS.length);
+        latency       = newAdders(LATENCY_LIMITS.length);
+        formats       = new ConcurrentHashMap<String, LongAdder[]>(16);
+    } // Constructor
+
+    /** Creates an array of counters
+     *  @param len number of counters
+     *  @return new counters
+     */
+    private static LongAdder[] newAdders(int len) {
+        LongAdder[] result = new LongAdder[len];
+        int ind = 0;
+        while (ind < len) {
+            result[ind ++] = new LongAdder();
+        } // while ind
+        return result;
+    } // newAdders
+
+    /** Gets the metrics of this JVM
+     *  @return the only instance
+     */
+    public static Metrics getInstance() {
+        return instance;
+    } // getInstance
+
+    /** Registers the metrics in the platform MBean server, if that was not yet done
+     */
+    public static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (! server.isRegistered(name)) {
+                server.registerMBean(instance, name);
+            }
+        } catch (InstanceAlreadyExistsException exc) { // registered concurrently
+        } catch (Exception exc) {
+            LogManager.getLogger(Metrics.class.getName()).error(exc.getMessage(), exc);
+        }
+    } // register
+
+    /** Removes the metrics from the platform MBean server, for example when a web application is stopped
+     */
+    public static void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (InstanceNotFoundException exc) { // unregistered concurrently
+        } catch (Exception exc) {
+            LogManager.getLogger(Metrics.class.getName()).error(exc.getMessage(), exc);
+        }
+    } // unregister
+
+    /** Finds the class of a value
+     *  @param limits upper bounds of the classes
+     *  @param value value to be classified
+     *  @return index of the first class which contains the value
+     */
+    private static int classify(long[] limits, long value) {
+        int result = 0;
+        while (value > limits[result]) {
+            result ++;
+        } // while result
+        return result;
+    } // classify
+
+    /** Records a conversion
+     *  @param sourceFormat code for the input format, or null if it is not valid
+     *  @param resultFormat code for the output format, or null if it is not valid
+     *  @param inLen number of input bytes (or characters)
+     *  @param outLen number of output bytes
+     *  @param nanos duration of the conversion
+     *  @param ok whether the conversion was successful
+     */
+    public void recordConversion(String sourceFormat, String resultFormat
+            , long inLen, long outLen, long nanos, boolean ok) {
+        conversions.increment();
+        bytesIn .add(inLen);
+        bytesOut.add(outLen);
+        LongAdder[] counters = null;
+        if (sourceFormat != null && resultFormat != null) { // only valid formats, such that the labels are bounded
+            String pair = sourceFormat + "->" + resultFormat;
+            counters = formats.get(pair);
+            if (counters == null) {
+                formats.putIfAbsent(pair, newAdders(4));
+                counters = formats.get(pair);
+            }
+            counters[0].increment();
+            counters[2].add(inLen);
+            counters[3].add(outLen);
+        }
+        if (! ok) {
+            failures.increment();
+            if (counters != null) {
+                counters[1].increment();
+            }
+        }
+        int isize = classify(SIZE_LIMITS, inLen);
+        sizeCount[isize].increment();
+        sizeNanos[isize].add(nanos);
+        latency[classify(LATENCY_LIMITS, nanos / 1000000L)].increment();
+    } // recordConversion
+
+    /** Counts a result which was taken from the cache
+     */
+    public void countCacheHit() {
+        cacheHits.increment();
+    } // countCacheHit
+
+    /** Counts a 6788 bracket
+     *  @param code 2nd byte of the bracket
+     */
+    public void countBracket(int code) {
+        brackets[code & 0xff].increment();
+    } // countBracket
+
+    /** Adds the counts of a part of a document which was decoded separately
+     *  @param bracketCounts number of brackets for each code 0..255
+     *  @param unknownCount number of unknown character codes
+     *  @param invalidCount number of invalid parser states
+     */
+    public void addCounts(int[] bracketCounts, int unknownCount, int invalidCount) {
+        int code = 0;
+        while (code < bracketCounts.length) {
+            if (bracketCounts[code] > 0) {
+                brackets[code].add(bracketCounts[code]);
+            }
+            code ++;
+        } // while code
+        unknownCodes .add(unknownCount);
+        invalidStates.add(invalidCount);
+    } // addCounts
+
+    /** Counts an unknown 6788 character code
+     */
+    public void countUnknownCode() {
+        unknownCodes.increment();
+    } // countUnknownCode
+
+    /** Counts an invalid parser state
+     */
+    public void countInvalidState() {
+        invalidStates.increment();
+    } // countInvalidState
+
+    /** Counts the bytes which are read from a stream
+     */
+    public static class CountingInputStream extends FilterInputStream {
+        /** number of bytes read so far */
+        private long count;
+        /** number of bytes read up to the mark */
+        private long marked;
+
+        /** Constructor
+         *  @param in the stream to be counted
+         */
+        public CountingInputStream(InputStream in) {
+            super(in);
+            count  = 0;
+            marked = 0;
+        } // Constructor
+
+        /** Gets the number of bytes read
+         *  @return bytes read so far
+         */
+        public long getCount() {
+            return count;
+        } // getCount
+
+        public int read() throws IOException {
+            int result = in.read();
+            if (result >= 0) {
+                count ++;
+            }
+            return result;
+        } // read()
+
+        public int read(byte[] buffer, int offset, int len) throws IOException {
+            int result = in.read(buffer, offset, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        } // read(byte[])
+
+        public long skip(long len) throws IOException {
+            long result = in.skip(len);
+            count += result;
+            return result;
+        } // skip
+
+        public void mark(int limit) {
+            in.mark(limit);
+            marked = count;
+        } // mark
+
+        public void reset() throws IOException {
+            in.reset();
+            count = marked;
+        } // reset
+    } // inner class CountingInputStream
+
+    /** Counts the bytes which are written to a stream
+     */
+    public static class CountingOutputStream extends FilterOutputStream {
+        /** number of bytes written so far */
+        private long count;
+
+        /** Constructor
+         *  @param out the stream to be counted
+         */
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+            count = 0;
+        } // Constructor
+
+        /** Gets the number of bytes written
+         *  @return bytes written so far
+         */
+        public long getCount() {
+            return count;
+        } // getCount
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            count ++;
+        } // write(int)
+
+        public void write(byte[] buffer, int offset, int len) throws IOException {
+            out.write(buffer, offset, len);
+            count += len;
+        } // write(byte[])
+    } // inner class CountingOutputStream
+
+    //----------------
+    // MBean interface
+    //----------------
+
+    public long getConversions() {
+        return conversions.sum();
+    } // getConversions
+
+    public long getFailures() {
+        return failures.sum();
+    } // getFailures
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    } // getCacheHits
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    } // getBytesIn
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    } // getBytesOut
+
+    public long getUnknownCodes() {
+        return unknownCodes.sum();
+    } // getUnknownCodes
+
+    public long getInvalidStates() {
+        return invalidStates.sum();
+    } // getInvalidStates
+
+    public String getReport() {
+        return toString();
+    } // getReport
+
+    public void reset() {
+        conversions  .reset();
+        failures     .reset();
+        cacheHits    .reset();
+        bytesIn      .reset();
+        bytesOut     .reset();
+        unknownCodes .reset();
+        invalidStates.reset();
+        resetAll(brackets);
+        resetAll(sizeCount);
+        resetAll(sizeNanos);
+        resetAll(latency);
+        formats.clear();
+    } // reset
+
+    /** Resets an array of counters
+     *  @param adders the counters
+     */
+    private static void resetAll(LongAdder[] adders) {
+        int ind = 0;
+        while (ind < adders.length) {
+            adders[ind ++].reset();
+        } // while ind
+    } // resetAll
+
+    /** Formats a class bound
+     *  @param limit upper bound
+     *  @return the number, or "+Inf" for the unbounded class
+     */
+    private static String bound(long limit) {
+        return limit == Long.MAX_VALUE ? "+Inf" : String.valueOf(limit);
+    } // bound
+
+    /** Appends a histogram in the Prometheus text format:
+     *  cumulative buckets, the last one with le="+Inf", the sum and the count
+     *  @param result where to append
+     *  @param name name of the histogram
+     *  @param limits upper bounds of the classes
+     *  @param counts number of values in each class
+     *  @param sum sum of all values
+     */
+    private static void appendHistogram(StringBuilder result, String name, long[] limits, LongAdder[] counts, long sum) {
+        result.append("# TYPE ").append(name).append(" histogram\n");
+        long total = 0;
+        int ind = 0;
+        while (ind < limits.length) {
+            total += counts[ind].sum();
+            result.append(name).append("_bucket{le=\"").append(bound(limits[ind])).append("\"} ")
+                    .append(total).append('\n');
+            ind ++;
+        } // while ind
+        result.append(name).append("_sum "  ).append(sum  ).append('\n');
+        result.append(name).append("_count ").append(total).append('\n');
+    } // appendHistogram
+
+    /** Lists all counters and histograms in the Prometheus text format,
+     *  one "name{labels} value" per line.
+     *  @return plain text
+     */
+    public String toString() {
+        StringBuilder result = new StringBuilder(4096);
+        result.append("putrans_conversions_total "   ).append(conversions  .sum()).append('\n');
+        result.append("putrans_failures_total "      ).append(failures     .sum()).append('\n');
+        result.append("putrans_cache_hits_total "    ).append(cacheHits    .sum()).append('\n');
+        result.append("putrans_bytes_in_total "      ).append(bytesIn      .sum()).append('\n');
+        result.append("putrans_bytes_out_total "     ).append(bytesOut     .sum()).append('\n');
+        result.append("putrans_unknown_codes_total " ).append(unknownCodes .sum()).append('\n');
+        result.append("putrans_invalid_states_total ").append(invalidStates.sum()).append('\n');
+        Iterator<Map.Entry<String, LongAdder[]>> iter = (new TreeMap<String, LongAdder[]>(formats)).entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, LongAdder[]> entry = iter.next();
+            String label = "{formats=\"" + entry.getKey() + "\"} ";
+            LongAdder[] counters = entry.getValue();
+            result.append("putrans_format_conversions_total").append(label).append(counters[0].sum()).append('\n');
+            result.append("putrans_format_failures_total"   ).append(label).append(counters[1].sum()).append('\n');
+            result.append("putrans_format_bytes_in_total"   ).append(label).append(counters[2].sum()).append('\n');
+            result.append("putrans_format_bytes_out_total"  ).append(label).append(counters[3].sum()).append('\n');
+        } // while iter
+        long totalNanos = 0;
+        int ind = 0;
+        while (ind < SIZE_LIMITS.length) { // per size class, not cumulative
+            String label = "{size_class=\"" + bound(SIZE_LIMITS[ind]) + "\"} ";
+            result.append("putrans_conversions_by_size").append(label).append(sizeCount[ind].sum()).append('\n');
+            result.append("putrans_millis_by_size"     ).append(label).append(sizeNanos[ind].sum() / 1000000L).append('\n');
+            totalNanos += sizeNanos[ind].sum();
+            ind ++;
+        } // while size
+        appendHistogram(result, "putrans_input_bytes"   , SIZE_LIMITS   , sizeCount, bytesIn.sum());
+        appendHistogram(result, "putrans_latency_millis", LATENCY_LIMITS, latency  , totalNanos / 1000000L);
+        ind = 0;
+        while (ind < brackets.length) {
+            long count = brackets[ind].sum();
+            if (count > 0) {
+                result.append("putrans_6788_brackets_total{code=\"").append(Integer.toHexString(ind)).append("\"} ")
+                        .append(count).append('\n');
+            }
+            ind ++;
+        } // while bracket
+        return result.toString();
+    } // toString
+
+} // Metrics
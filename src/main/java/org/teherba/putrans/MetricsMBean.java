@@ -0,0 +1,72 @@
+/*  Management interface for the conversion metrics
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+
+/** JMX view of {@link Metrics}, registered as
+ *  <em>org.teherba.putrans:type=Metrics</em>
+ *  @author Dr. Georg Fischer
+ */
+public interface MetricsMBean {
+
+    /** Gets the number of conversions
+     *  @return successful and failed conversions
+     */
+    public long getConversions();
+
+    /** Gets the number of failed conversions
+     *  @return conversions which returned false or threw an exception
+     */
+    public long getFailures();
+
+    /** Gets the number of results which were taken from the cache
+     *  @return cache hits
+     */
+    public long getCacheHits();
+
+    /** Gets the number of input bytes
+     *  @return bytes read by the generators
+     */
+    public long getBytesIn();
+
+    /** Gets the number of output bytes
+     *  @return bytes written by the serializers
+     */
+    public long getBytesOut();
+
+    /** Gets the number of 6788 character codes which could not be mapped
+     *  @return number of emitted "{code ...}" placeholders
+     */
+    public long getUnknownCodes();
+
+    /** Gets the number of invalid parser states
+     *  @return number of "invalid state" errors
+     */
+    public long getInvalidStates();
+
+    /** Gets all counters and histograms
+     *  @return lines in the text format of {@link Metrics#toString}
+     */
+    public String getReport();
+
+    /** Resets all counters and histograms
+     */
+    public void reset();
+
+} // MetricsMBean
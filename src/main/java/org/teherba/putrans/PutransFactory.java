@@ -1,11 +1,16 @@
 /*  Selects the applicable converter
     @(#) $Id: PutransFactory.java 966 2012-08-29 07:06:07Z gfis $
+    2026-10-17: isFormat; all classes are tried at most once for an unknown code
+    2026-10-17: detectFormat
+    2026-10-17: getStamp
+    2026-10-17: newTransformer for each conversion
+    2026-10-17: lazy instantiation, format codes indexed from META-INF/putrans.formats
     2017-07-22, Georg Fischer: copied from xtrans.PutransFactory
 
     Usage:
         java -cp dist/putrans.jar org.teherba.putrans.PutransFactory
-    Output files:
-        src/main/java/org/teherba/putrans/package.html
+    Output:
+        the data lines for etc/META-INF/putrans.formats
 */
 /*
  * Copyright 2017 Dr. Georg Fischer <punctum at punctum dot kom>
@@ -25,18 +30,38 @@
 package org.teherba.putrans;
 import  org.teherba.xtrans.BaseTransformer;
 import  org.teherba.xtrans.XtransFactory;
+import  java.io.BufferedReader;
 import  java.io.File;
-import  java.io.PrintWriter;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.InputStreamReader;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.FileChannel;
 import  java.util.ArrayList;
+import  java.util.Arrays;
+import  java.util.HashMap;
+import  java.util.HashSet;
 import  java.util.Iterator;
-import  java.util.Properties;
-import  java.util.StringTokenizer;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
 /** Selects a specific converter, and iterates over the descriptions
  *  of all converters and their codes.
  *  Furthermore, it can create a transformation pipeline.
+ *  <p>
+ *  The converter classes and their format codes are read from the
+ *  resource {@link #DESCRIPTOR}. A converter is instantiated only
+ *  when one of its formats is requested for the first time,
+ *  or when all converters are listed, or once for the first unknown code.
+ *  <p>
+ *  The instances returned by {@link #getTransformer} are shared definitions,
+ *  which describe a format (codes, description, file extension).
+ *  Since a transformer keeps the state of a conversion in its fields,
+ *  each conversion must use its own instance from {@link #newTransformer}.
+ *  <p>
+ *  The pseudo format {@link #AUTO_FORMAT} stands for the format which
+ *  {@link #detectFormat} recognizes from the first bytes of the input.
  *  @author Dr. Georg Fischer
  */
 public class PutransFactory extends XtransFactory {
@@ -45,59 +70,357 @@ public class PutransFactory extends XtransFactory {
     /** log4j logger (category) */
     private Logger log;
 
+    /** Resource which lists the converter classes and their format codes */
+    public static final String DESCRIPTOR = "META-INF/putrans.formats";
+
+    /** Pseudo format code for the detection of the input format */
+    public static final String AUTO_FORMAT = "auto";
+    /** Maximum number of leading bytes which are inspected by {@link #detectFormat} */
+    public static final int SNIFF_LEN = 512;
+    /** Length of the header of a 6788 document, from "2b d6" to "d6 2b" */
+    private static final int HEADER_6788 = 0x48;
+
+    /** Converter classes which are used when the descriptor cannot be read */
+    private static final String[] DEFAULT_CLASSES = new String[]
+            { "putrans.TextConverter"
+            , "putrans.conv.IBM6788Converter"
+            , "xtrans.general.HexDumpTransformer"
+            , "xtrans.general.SeparatedTransformer"
+            , "xtrans.XMLTransformer"
+            };
+
+    /** Names of the converter classes (without "org.teherba."), in the order of the descriptor */
+    private ArrayList<String> classNames;
+    /** Class names indexed by format code */
+    private HashMap<String, String> formatIndex;
+    /** Converters which were instantiated so far, indexed by class name */
+    private HashMap<String, BaseTransformer> instances;
+    /** Classes which could not be instantiated */
+    private HashSet<String> unavailable;
+    /** Counts the changes of the registry */
+    private int stamp;
+    /** Whether all classes were instantiated, and their actual format codes are in the index */
+    private boolean complete;
+
+    /** Names of the commandline options of putrans and xtrans, which are never format codes */
+    private static final HashSet<String> OPTION_NAMES = new HashSet<String>(Arrays.asList(new String[]
+            { "archive", "batch", "cache", "codepage", "enc", "enc1", "enc2", "f", "feed"
+            , "fused", "glob", "image", "nsp", "scan", "tee", "threads"
+            }));
+
     /** No-args Constructor. Used for generation and serialization.
-     *  Constructs all enabled converters. Their constructors should
-     *  not contain any heavy-weight initialization code, since they are
-     *  all instantiated here, even if only two of them are really used.
+     *  Reads the list of converters, but does not instantiate them.
      */
     public PutransFactory() {
         super();
         log        = LogManager.getLogger(PutransFactory.class.getName());
         realPath   = "";
         saxFactory = getSAXFactory();
+        transformers = new ArrayList<BaseTransformer>(64);
+        classNames   = new ArrayList<String>(16);
+        formatIndex  = new HashMap<String, String>(64);
+        instances    = new HashMap<String, BaseTransformer>(16);
+        unavailable  = new HashSet<String>(16);
+        stamp        = 0;
+        complete     = false;
         try {
-            transformers = new ArrayList<BaseTransformer>(64);
-            // the order here defines the order in documentation.jsp,
-            // should be: "... group by package order by package, name"
-
-            this.enable("putrans.TextConverter");
-            this.enable("putrans.conv.IBM6788Converter");
-            this.enable("xtrans.general.HexDumpTransformer");
-            this.enable("xtrans.general.SeparatedTransformer");
-            this.enable("xtrans.XMLTransformer");
+            InputStream in = PutransFactory.class.getClassLoader().getResourceAsStream(DESCRIPTOR);
+            if (in != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0 && ! line.startsWith("#")) {
+                            String[] fields = line.split("\\s+");
+                            this.enable(fields[0], fields.length > 1 ? fields[1] : "");
+                        }
+                    } // while reading
+                } finally {
+                    reader.close();
+                }
+            } else {
+                log.error("resource " + DESCRIPTOR + " not found");
+            }
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
         }
+        if (classNames.size() == 0) { // the order here defines the order in documentation.jsp
+            int ind = 0;
+            while (ind < DEFAULT_CLASSES.length) {
+                this.enable(DEFAULT_CLASSES[ind]);
+                ind ++;
+            } // while ind
+        }
     } // Constructor
 
-    /** Attempts to instantiate the class for some transformer = format
+    /** Registers the class for some transformer = format.
+     *  The class will be instantiated when it is needed.
      *  @param transformerName name of the class for the transformer,
      *  without the prefix "org.teherba.".
      *  In {@link XtransFactory}, this method contains the package "xtrans.",
      *  but here, the names to be specified start at 1 level higher
      */
     protected void enable(String transformerName) {
-        try {
-            BaseTransformer transformer = (BaseTransformer) Class.forName("org.teherba."
-                    + transformerName).newInstance();
-            if (transformer != null) {
-                transformer.initialize();
-                // System.err.println(transformerName + " enabled");
-                transformers.add(transformer);
-            } // != null
-        } catch (Exception exc) {
-            log.debug(exc.getMessage(), exc);
-            // ignore any error silently - this format will not be known
+        enable(transformerName, "");
+    } // enable
+
+    /** Registers the class for some transformer = format,
+     *  and indexes its format codes
+     *  @param transformerName name of the class for the transformer,
+     *  without the prefix "org.teherba."
+     *  @param codes comma-separated list of format codes, maybe empty
+     */
+    protected void enable(String transformerName, String codes) {
+        if (! classNames.contains(transformerName)) {
+            classNames.add(transformerName);
+            stamp ++;
         }
+        String[] parts = codes.split(",");
+        int ind = 0;
+        while (ind < parts.length) {
+            if (parts[ind].length() > 0 && ! formatIndex.containsKey(parts[ind])) {
+                formatIndex.put(parts[ind], transformerName);
+                stamp ++;
+            }
+            ind ++;
+        } // while ind
     } // enable
 
+    /** Gets the instance of a transformer class, and instantiates it if necessary
+     *  @param transformerName name of the class for the transformer,
+     *  without the prefix "org.teherba."
+     *  @return the transformer, or null if the class is not available
+     */
+    private BaseTransformer getInstance(String transformerName) {
+        BaseTransformer result = instances.get(transformerName);
+        if (result == null && ! unavailable.contains(transformerName)) {
+            try {
+                result = (BaseTransformer) Class.forName("org.teherba."
+                        + transformerName).newInstance();
+                result.initialize();
+                // System.err.println(transformerName + " enabled");
+                instances.put(transformerName, result);
+                transformers.add(result);
+            } catch (Throwable exc) {
+                log.debug(exc.getMessage(), exc);
+                // ignore any error silently - this format will not be known
+                unavailable.add(transformerName);
+                stamp ++;
+                result = null;
+            }
+        }
+        return result;
+    } // getInstance
+
+    /** Gets the transformer for a format. Only this transformer is instantiated.
+     *  When a format is not found in the index for the first time, all classes are
+     *  instantiated once, and the index is rebuilt from their actual format codes
+     *  (in case the descriptor is outdated). Later misses are answered by the index alone.
+     *  @param format code for the format, for example "ibm6788"
+     *  @return the transformer, or null if the format is not known
+     */
+    public synchronized BaseTransformer getTransformer(String format) {
+        BaseTransformer result = null;
+        String transformerName = formatIndex.get(format);
+        if (transformerName != null) {
+            result = getInstance(transformerName);
+            if (result != null && ! result.isApplicable(format)) { // descriptor is outdated
+                result = null;
+            }
+        }
+        if (result == null && ! complete) {
+            complete = true;
+            enableAll();
+            formatIndex.clear();
+            Iterator<String> iter = classNames.iterator();
+            while (iter.hasNext()) {
+                transformerName = iter.next();
+                BaseTransformer transformer = instances.get(transformerName);
+                if (transformer != null) {
+                    enable(transformerName, transformer.getFormatCodes());
+                }
+            } // while iter
+            transformerName = formatIndex.get(format);
+            if (transformerName != null) {
+                result = instances.get(transformerName);
+            }
+        }
+        return result;
+    } // getTransformer
+
+    /** Determines whether a commandline argument is a format code.
+     *  The names of known options are rejected without a lookup,
+     *  such that they do not cause the instantiation of all classes.
+     *  @param arg commandline argument, for example "-ibm6788" or "-tee"
+     *  @return whether it is "-" followed by the code of an available format
+     */
+    public boolean isFormat(String arg) {
+        return arg.length() > 1 && arg.startsWith("-") && ! OPTION_NAMES.contains(arg.substring(1))
+                && getTransformer(arg.substring(1)) != null;
+    } // isFormat
+
+    /** Gets a new transformer for one conversion.
+     *  It is independent of other conversions which may run concurrently.
+     *  @param format code for the format, for example "ibm6788"
+     *  @return a new, initialized transformer, or null if the format is not known
+     */
+    public BaseTransformer newTransformer(String format) {
+        BaseTransformer result = null;
+        BaseTransformer definition = getTransformer(format);
+        if (definition != null) {
+            try {
+                result = definition.getClass().getDeclaredConstructor().newInstance();
+                result.initialize();
+            } catch (Exception exc) {
+                log.error(exc.getMessage(), exc);
+                result = null;
+            }
+        }
+        return result;
+    } // newTransformer
+
+    /** Instantiates all transformers, and sorts them in the order of the descriptor
+     */
+    private void enableAll() {
+        ArrayList<BaseTransformer> all = new ArrayList<BaseTransformer>(classNames.size());
+        Iterator<String> iter = classNames.iterator();
+        while (iter.hasNext()) {
+            BaseTransformer transformer = getInstance(iter.next());
+            if (transformer != null) {
+                all.add(transformer);
+            }
+        } // while iter
+        transformers = all;
+    } // enableAll
+
+    /** Gets an iterator over all transformers; all of them are instantiated now
+     *  @return iterator in the order of the descriptor
+     */
+    public synchronized Iterator<BaseTransformer> getIterator() {
+        enableAll();
+        return transformers.iterator();
+    } // getIterator
+
+    /** Gets the state of the registry. The value changes whenever
+     *  a class is registered, or turns out to be unavailable, such that
+     *  a listing of all formats can be cached until then.
+     *  @return number of changes so far
+     */
+    public synchronized int getStamp() {
+        return stamp;
+    } // getStamp
+
+    /** Gets the number of all transformers; all of them are instantiated now
+     *  @return number of available transformers
+     */
+    public synchronized int size() {
+        enableAll();
+        return transformers.size();
+    } // size
+
+    /** Recognizes the format of some leading bytes of a file.
+     *  A 6788 document starts with the header bracket "2b d6 ... d6 2b",
+     *  or (without header) with the title bracket "2b a7".
+     *  Text contains no NUL and only few other control characters.
+     *  @param buffer leading bytes of the file
+     *  @param len number of valid bytes in <em>buffer</em>
+     *  @return "ibm6788", "text", or null if the format is not recognized
+     */
+    public static String detectFormat(byte[] buffer, int len) {
+        String result = null;
+        if (len >= 2 && buffer[0] == 0x2b && (buffer[1] & 0xff) == 0xa7) {
+            result = "ibm6788";
+        } else if (len >= HEADER_6788 && buffer[0] == 0x2b && (buffer[1] & 0xff) == 0xd6
+                && (buffer[HEADER_6788 - 2] & 0xff) == 0xd6 && buffer[HEADER_6788 - 1] == 0x2b) {
+            result = "ibm6788";
+        } else {
+            int controls = 0;
+            int ipos = 0;
+            while (ipos < len) {
+                int bval = buffer[ipos] & 0xff;
+                if (bval == 0) {
+                    controls = len; // binary
+                } else if (bval < 0x20 && bval != '\t' && bval != '\n' && bval != '\r'
+                        && bval != '\f' && bval != 0x1a) { // 0x1a = DOS end of file
+                    controls ++;
+                }
+                ipos ++;
+            } // while ipos
+            if (controls * 16 <= len) {
+                result = "text";
+            }
+        }
+        return result;
+    } // detectFormat(byte[])
+
+    /** Recognizes the format of a stream from its leading bytes.
+     *  The position of the stream is not changed: a {@link FileInputStream}
+     *  is read at its current position by its channel, and any other stream
+     *  must support mark/reset, for example a {@link java.io.BufferedInputStream}.
+     *  @param in the input stream
+     *  @return "ibm6788", "text", or null if the format is not recognized
+     *  @throws IOException if the stream cannot be read
+     */
+    public static String detectFormat(InputStream in) throws IOException {
+        byte[] buffer = new byte[SNIFF_LEN];
+        int len = 0;
+        if (in instanceof FileInputStream) { // peek without moving the position, such that the file can still be mapped
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            ByteBuffer peek = ByteBuffer.wrap(buffer);
+            long position = channel.position();
+            int count = 0;
+            while (peek.hasRemaining() && count >= 0) {
+                count = channel.read(peek, position + peek.position());
+            } // while count
+            len = peek.position();
+        } else if (in.markSupported()) {
+            in.mark(SNIFF_LEN);
+            try {
+                int count = 0;
+                while (len < SNIFF_LEN && count >= 0) {
+                    count = in.read(buffer, len, SNIFF_LEN - len);
+                    if (count > 0) {
+                        len += count;
+                    }
+                } // while count
+            } finally {
+                in.reset();
+            }
+        } else {
+            throw new IllegalArgumentException("the stream does not support mark/reset");
+        }
+        return detectFormat(buffer, len);
+    } // detectFormat(InputStream)
+
+    /** Recognizes the format of a file from its leading bytes
+     *  @param file the input file
+     *  @return "ibm6788", "text", or null if the format is not recognized
+     *  @throws IOException if the file cannot be read
+     */
+    public static String detectFormat(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return detectFormat(in);
+        } finally {
+            in.close();
+        }
+    } // detectFormat(File)
+
     /** Main program
      *  @param args commandline arguments (none)
      */
     public static void main(String[] args) {
         PutransFactory factory = new PutransFactory();
-        Iterator iter = factory.getIterator();
         try {
+            Iterator<String> iter = factory.classNames.iterator();
+            while (iter.hasNext()) {
+                String transformerName = iter.next();
+                BaseTransformer transformer = factory.getInstance(transformerName);
+                if (transformer != null) {
+                    System.out.println(String.format("%-39s %s", transformerName, transformer.getFormatCodes()));
+                }
+            } // while iter
         } catch (Exception exc) {
             factory.log.error(exc.getMessage(), exc);
         } // try
@@ -0,0 +1,305 @@
+/*  Cache of conversion results, addressed by the content of the input
+    @(#) $Id$
+    2026-10-17: key includes Converter.OUTPUT_VERSION
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans;
+import  java.io.File;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.nio.charset.StandardCharsets;
+import  java.nio.file.Files;
+import  java.nio.file.StandardCopyOption;
+import  java.security.MessageDigest;
+import  java.security.NoSuchAlgorithmException;
+import  java.util.Arrays;
+import  java.util.Comparator;
+import  java.util.Iterator;
+import  java.util.LinkedHashMap;
+import  java.util.Map;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Stores the results of conversions, addressed by a key which is
+ *  the SHA-256 hash of the input bytes, the source and result format
+ *  and the options. The cache has two tiers:
+ *  <ul>
+ *  <li>an LRU map in memory,</li>
+ *  <li>optionally, one file per result in a directory.</li>
+ *  </ul>
+ *  Both tiers are bounded by the total size of their results;
+ *  the least recently used results are evicted first.
+ *  The disk tier survives restarts, such that nightly re-runs
+ *  find the results of the previous night.
+ *  <p>
+ *  Only inputs up to {@link #getMaxEntry} bytes are cached, since
+ *  the input must be hashed before it is converted.
+ *  All methods are thread-safe.
+ *  @author Dr. Georg Fischer
+ */
+public class ResultCache {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Default size of the memory tier in bytes */
+    public static final long DEFAULT_MEMORY   = 64L << 20;
+    /** Default size of the disk tier in bytes */
+    public static final long DEFAULT_DISK     = 1L  << 30;
+    /** Default maximum size of an input which is cached */
+    public static final int  DEFAULT_MAX_ENTRY = 8  << 20;
+    /** Extension of the result files in the disk tier */
+    private static final String EXTENSION = ".res";
+
+    /** memory tier: results in the order of their last access */
+    private LinkedHashMap<String, byte[]> memory;
+    /** total size of the results in the memory tier */
+    private long memorySize;
+    /** maximum total size of the memory tier */
+    private long memoryLimit;
+    /** directory of the disk tier, or null */
+    private File dir;
+    /** total size of the files in the disk tier */
+    private long diskSize;
+    /** maximum total size of the disk tier */
+    private long diskLimit;
+    /** maximum size of an input which is cached */
+    private int  maxEntry;
+
+    /** Constructor with default sizes
+     *  @param dir directory for the disk tier, or null for the memory tier only
+     */
+    public ResultCache(File dir) {
+        this(dir, DEFAULT_MEMORY, DEFAULT_DISK, DEFAULT_MAX_ENTRY);
+    } // Constructor 1
+
+    /** Constructor
+     *  @param dir directory for the disk tier, or null for the memory tier only
+     *  @param memoryLimit maximum total size of the results in memory
+     *  @param diskLimit maximum total size of the result files
+     *  @param maxEntry maximum size of an input which is cached
+     */
+    public ResultCache(File dir, long memoryLimit, long diskLimit, int maxEntry) {
+        log = LogManager.getLogger(ResultCache.class.getName());
+        this.memory      = new LinkedHashMap<String, byte[]>(256, 0.75f, true); // access order
+        this.memorySize  = 0;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit   = diskLimit;
+        this.maxEntry    = maxEntry;
+        this.diskSize    = 0;
+        this.dir         = dir;
+        if (dir != null) {
+            dir.mkdirs();
+            File[] files = dir.listFiles();
+            if (files == null) {
+                log.error("cache directory " + dir.getPath() + " is not accessible");
+                this.dir = null;
+            } else {
+                int ifile = 0;
+                while (ifile < files.length) {
+                    if (files[ifile].getName().endsWith(EXTENSION)) {
+                        diskSize += files[ifile].length();
+                    }
+                    ifile ++;
+                } // while ifile
+            }
+        }
+    } // Constructor 4
+
+    /** Gets the maximum size of an input which is cached
+     *  @return number of bytes
+     */
+    public int getMaxEntry() {
+        return maxEntry;
+    } // getMaxEntry
+
+    /** Computes the key for a conversion. It includes {@link Converter#OUTPUT_VERSION},
+     *  such that results of an older converter are not used after an update.
+     *  @param input bytes of the input
+     *  @param len number of valid bytes in <em>input</em>
+     *  @param sourceFormat code for the input format
+     *  @param resultFormat code for the output format
+     *  @param options option string for both transformers
+     *  @return SHA-256 hash as 64 lowercase hex digits
+     */
+    public static String getKey(byte[] input, int len, String sourceFormat, String resultFormat, String options) {
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exc) { // every JRE has SHA-256
+            throw new IllegalStateException(exc);
+        }
+        digest.update((Converter.OUTPUT_VERSION + "\u0000" + sourceFormat + "\u0000" + resultFormat + "\u0000" + options + "\u0000")
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update(input, 0, len);
+        byte[] hash = digest.digest();
+        StringBuilder result = new StringBuilder(hash.length * 2);
+        int ind = 0;
+        while (ind < hash.length) {
+            result.append(Character.forDigit((hash[ind] >> 4) & 0x0f, 16));
+            result.append(Character.forDigit( hash[ind]       & 0x0f, 16));
+            ind ++;
+        } // while ind
+        return result.toString();
+    } // getKey
+
+    /** Reads a stream completely if it is not too long for the cache.
+     *  Otherwise the stream is reset to its start.
+     *  @param in stream which supports mark/reset, for example a {@link java.io.BufferedInputStream}
+     *  @return all bytes of the stream, or null if the stream is longer than {@link #getMaxEntry}
+     *  @throws IOException if the stream cannot be read
+     */
+    public byte[] readInput(InputStream in) throws IOException {
+        byte[] buffer = new byte[Math.min(maxEntry + 1, 65536)];
+        int len   = 0;
+        int count = 0;
+        in.mark(maxEntry + 1);
+        while (len <= maxEntry && count >= 0) {
+            if (len == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(maxEntry + 1, buffer.length * 2));
+            }
+            count = in.read(buffer, len, buffer.length - len);
+            if (count > 0) {
+                len += count;
+            }
+        } // while reading
+        byte[] result = null;
+        if (len > maxEntry) { // too long
+            in.reset();
+        } else {
+            result = Arrays.copyOf(buffer, len);
+        }
+        return result;
+    } // readInput
+
+    /** Gets the file for a key in the disk tier
+     *  @param key hash from {@link #getKey}
+     *  @return file in the directory of the disk tier
+     */
+    private File getFile(String key) {
+        return new File(dir, key + EXTENSION);
+    } // getFile
+
+    /** Gets a result
+     *  @param key hash from {@link #getKey}
+     *  @return the result, or null if it is not cached
+     */
+    public byte[] get(String key) {
+        byte[] result = null;
+        synchronized (this) {
+            result = memory.get(key);
+        }
+        if (result == null && dir != null) {
+            File file = getFile(key);
+            try {
+                result = Files.readAllBytes(file.toPath());
+                file.setLastModified(System.currentTimeMillis()); // for the LRU order on disk
+                putMemory(key, result);
+            } catch (IOException exc) { // not cached, or evicted meanwhile
+                result = null;
+            }
+        }
+        return result;
+    } // get
+
+    /** Stores a result in both tiers
+     *  @param key hash from {@link #getKey}
+     *  @param result output of the conversion
+     */
+    public void put(String key, byte[] result) {
+        putMemory(key, result);
+        if (dir != null) {
+            File file = getFile(key);
+            if (! file.exists()) {
+                try { // write a temporary file and rename it, such that readers never see a partial result
+                    File temp = File.createTempFile("res-", ".tmp", dir);
+                    FileOutputStream out = new FileOutputStream(temp);
+                    try {
+                        out.write(result);
+                    } finally {
+                        out.close();
+                    }
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    boolean evict = false;
+                    synchronized (this) {
+                        diskSize += result.length;
+                        evict = diskSize > diskLimit;
+                    }
+                    if (evict) {
+                        evictDisk();
+                    }
+                } catch (IOException exc) {
+                    log.error("cannot store " + file.getPath() + ": " + exc.getMessage());
+                }
+            }
+        }
+    } // put
+
+    /** Stores a result in the memory tier, and evicts the least recently used results
+     *  @param key hash from {@link #getKey}
+     *  @param result output of the conversion
+     */
+    private synchronized void putMemory(String key, byte[] result) {
+        if (result.length <= memoryLimit) {
+            byte[] old = memory.put(key, result);
+            if (old != null) {
+                memorySize -= old.length;
+            }
+            memorySize += result.length;
+            Iterator<Map.Entry<String, byte[]>> iter = memory.entrySet().iterator();
+            while (memorySize > memoryLimit && iter.hasNext()) { // oldest first
+                memorySize -= iter.next().getValue().length;
+                iter.remove();
+            } // while too large
+        }
+    } // putMemory
+
+    /** Deletes the least recently used files of the disk tier,
+     *  until it is smaller than 90 % of its limit
+     */
+    private synchronized void evictDisk() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                public int compare(File file1, File file2) {
+                    return Long.compare(file1.lastModified(), file2.lastModified());
+                }
+            });
+            long total = 0;
+            int ifile = 0;
+            while (ifile < files.length) {
+                if (files[ifile].getName().endsWith(EXTENSION)) {
+                    total += files[ifile].length();
+                }
+                ifile ++;
+            } // while ifile
+            ifile = 0;
+            while (total > diskLimit / 10 * 9 && ifile < files.length) {
+                File file = files[ifile ++];
+                long len = file.length();
+                if (file.getName().endsWith(EXTENSION) && file.delete()) {
+                    total -= len;
+                }
+            } // while too large
+            diskSize = total;
+        }
+    } // evictDisk
+
+} // ResultCache
@@ -1,485 +1,1056 @@
-/*  Emulation of putrans.c functional interface
-    @(#) $Id: TextConverter.java 566 2010-10-19 16:32:04Z gfis $
-    2017-07-25: works for IBM6788
-    2017-07-22: Georg Fischer
-*/
-/*
- * Copyright 2017 Dr. Georg Fischer <punctum at punctum dot kom>
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.teherba.putrans;
-import  org.teherba.xtrans.ByteRecord;
-import  org.teherba.xtrans.ByteTransformer;
-import  org.xml.sax.Attributes;
-import  org.xml.sax.helpers.AttributesImpl;
-import  org.xml.sax.SAXException;
+/*  Emulation of putrans.c functional interface
+    @(#) $Id: TextConverter.java 566 2010-10-19 16:32:04Z gfis $
+    2026-10-17: text is read and written as ISO-8859-1 without -enc1, -enc2
+    2026-10-17: generate and finish return false after errors
+    2026-10-17: fast path for the output of stateless encodings only
+    2026-10-17: push API begin, feed, finish
+    2026-10-17: processMapped, replay of a RecordingSink
+    2026-10-17: put_* interface routed to a TextSink instead of SAX, optionally
+    2026-10-17: genOffset
+    2026-10-17: count invalid states in Metrics
+    2026-10-17: bulk decoding and encoding with the configured charsets
+    2026-10-17: put_* interface without allocation per event
+    2026-10-17: appendHex, appendDecimal
+    2026-10-17: memory-mapped input for large files
+    2017-07-25: works for IBM6788
+    2017-07-22: Georg Fischer
+*/
+/*
+ * Copyright 2017 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teherba.putrans;
+import  org.teherba.putrans.sink.RecordingSink;
+import  org.teherba.putrans.sink.TextSink;
+import  org.teherba.xtrans.ByteTransformer;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.nio.ByteBuffer;
+import  java.nio.CharBuffer;
+import  java.nio.MappedByteBuffer;
+import  java.nio.channels.FileChannel;
+import  java.nio.charset.Charset;
+import  java.nio.charset.CharsetDecoder;
+import  java.nio.charset.CharsetEncoder;
+import  java.nio.charset.CoderResult;
+import  java.nio.charset.CodingErrorAction;
+import  java.util.Arrays;
+import  java.util.regex.Pattern;
+import  org.xml.sax.Attributes;
+import  org.xml.sax.helpers.AttributesImpl;
+import  org.xml.sax.SAXException;
 import  org.apache.logging.log4j.Logger;
-import  org.apache.logging.log4j.LogManager;
-
-/** This class replaces the functional interface for
- *  text processing systems as it was used by the Pascal and C
- *  implementations of Putrans.
- *
- *  @author Dr. Georg Fischer
- */
-public class TextConverter extends ByteTransformer {
-    public final static String CVSID = "@(#) $Id: TextConverter.java 566 2010-10-19 16:32:04Z gfis $";
-
-    /** log4j logger (category) */
-    private Logger log;
-
-    /** Upper bound for input buffer */
-    protected static final int MAX_BUF = 4096;
-
-    /** Root element tag */
-    protected static final String ROOT_TAG        = "html";
-    /** Body element tag */
-    protected static final String BODY_TAG        = "body";
-    /** br element tag */
-    protected static final String BR_TAG          = "br";
-    /** Head element tag */
-    protected static final String HEAD_TAG        = "head";
-    /** p element tag */
-    protected static final String P_TAG           = "p";
-    /** pre element tag */
-    protected static final String PRE_TAG         = "pre";
-
-    /** Attribute name for leading spaces */
-    protected static final String SPACE_ATTR      = "sp";
-
-    /** byte which indicates the end of string */
-    protected static final char EOS = 0;
-
-    /** Element which denotes a line break, for readability/reconstruction only */
-    protected static final String NEWLINE_TAG     = "n";
-    /** Element tag for hard hyphen */
-    protected static final String HARD_HYPHEN_TAG = "hhy";
-    /** Element tag for soft hyphen */
-    protected static final String SOFT_HYPHEN_TAG = "shy";
-
-    /** number of logical line (terminated by EOS) */
-    protected int lineNo;
-
-    /** tag for a text line */
-    protected String lineTag;
-
-    /** buffer for values in input stream */
-    protected StringBuffer content;
-
-    /* 2-byte pair from ruler line */
-    protected int rulerPair;
-
-    /** Buffer for a portion of the input file */
-    // protected byte[] byteBuffer;
-
-    /** Record for the reader's buffer */
-    protected ByteRecord genRecord;
-
-    /** values of {@link #state} */
-    private static final int IN_BRACKET     = 1;
-    private static final int IN_TEXT        = 2;
-
-    /** state of finite automaton */
-    protected  int  state;
-
-    /** No-args Constructor.
-     */
-    public TextConverter() {
-        super();
-        log = LogManager.getLogger(TextConverter.class.getName());
-        setFormatCodes("text,plain");
-        setDescription("Plain Text");
-        setFileExtensions("txt");
-    } // Constructor
-
-    /** Initializes the (quasi-constant) global structures and variables.
-     *  This method is called by the {@link org.teherba.xtrans.XtransFactory} once for the
-     *  selected generator and serializer.
-     */
-    public void initialize() {
-        super.initialize();
-        content = new StringBuffer(2048);
-        lineNo  = 0;
-        state   = 0;
-        ptx     = new Ptx();
-    } // initialize
-
-    /** Emits document text, and writes its characters
-     */
-    protected void fireContent() {
-        if (content.length() > 0) {
-            fireCharacters(content.toString());
-            content.setLength(0);
-        }
-    } // fireContent
-
-    /** Processes a portion of the input file
-     *  @param start offset where to start/resume scanning
-     *  @param trap  offset behind last character to be processed
-     *  @return offset behind last character which was processed
-     */
-    protected int processInput(int start, int trap) {
-        char ch; // current character to be processed
-        boolean readOff; // whether current character should be consumed
-        int ibuf = start;
-        while (ibuf < trap) { // process all characters
-            readOff = true;
-            ch = genRecord.get1(ibuf); // (char) (byteBuffer[ibuf] & 0xff);
-            switch (state) {
-
-                case IN_TEXT:
-                    switch (ch) {
-                        case '\n':
-                            content.append(ch);
-                            fireContent();
-                            break;
-                        default:
-                            content.append(ch);
-                            break;
-                    } // switch ch
-                    break; // IN_TEXT
-
-                default:
-                    log.error("invalid state " + state);
-                    break;
-
-            } // switch state
-            if (readOff) {
-                ibuf ++;
-            }
-        } // while processing
-        return ibuf; // new 'start'
-    } // processInput
-
-    /** Transforms from the specified format to XML
-     *  @return whether the transformation was successful
-     */
-    public boolean generate() {
-        boolean result = true;
-        int len; // length read from 'charReader'
-        genRecord = new ByteRecord(MAX_BUF);
-        lineNo = 0;
-        content = new StringBuffer(MAX_BUF);
-        state = IN_TEXT;
-
-        putEntityReplacements();
-        try {
-            fireStartDocument();
-            fireStartRoot(ROOT_TAG);
-        //    fireLineBreak();
-            fireStartElement(BODY_TAG);
-        //    fireLineBreak();
-            fireStartElement(PRE_TAG);
-        //    fireLineBreak();
-            while ((len = genRecord.read(byteReader)) >= 0) {
-                len = processInput(0, len);
-            } // while reading
-            fireContent();
-            fireEndElement(PRE_TAG);
-        //    fireLineBreak();
-            fireEndElement(BODY_TAG);
-        //    fireLineBreak();
-            fireEndElement(ROOT_TAG);
-        //    fireLineBreak();
-            fireEndDocument();
-        } catch (Exception exc) {
-            log.error(exc.getMessage(), exc);
-        }
-        return  result;
-    } // generate
-
-    /*===========================*/
-    /* Text processing interface */
-    /*===========================*/
-
-    // parameter 'status' of 'put_bold', 'put_italic', put_underline' etc.
-    protected static final int ptx_off       = 0;
-    protected static final int ptx_on        = 1;
-    // Parameter 'status of 'put_line', 'put_space', 'put_hyphen'
-    protected static final int ptx_soft      = 1;
-    protected static final int ptx_hard      = 2;
-    protected static final int ptx_soft_eol  = 3;
-    protected static final int ptx_paragraph = 4;
-    protected static final int ptx_normal    = 5;
-    protected static final int ptx_break     = 6; // similiar to hard
-    // Parameter 'status of 'put_align'
-    protected static final int ptx_left      = 0; // start aligned (default)
-    protected static final int ptx_right     = 1; // end aligned
-    protected static final int ptx_centred   = 2; //
-    protected static final int ptx_justified = 3; // blocked, left and right aligned
-
-
-    /** The parameter block for the functional text processing interface
-     */
-    protected class Ptx {
-        public int align;
-        public int bold;
-        public int underline;
-        public Ptx() {
-            align     = 0;
-            bold      = 0;
-            underline = 0;
-        }
-    } // inner class Ptx
-
-    /** Instance of the parameter block */
-    protected Ptx ptx;
-
-    /** Starts or ends bold text
-     *  @param status off or on
-     */
-    protected void put_bold(int status) {
-        fireContent();
-        switch (status) {
-            case 0:
-                if (ptx.bold >  0) {
-                    fireEndElement("strong");
-                }
-                break;
-            default:
-                if (ptx.bold == 0) {
-                    fireStartElement("strong");
-                }
-                break;
-        } // switch status
-        ptx.bold = status;
-    } // put_bold
-
-    /** Puts a special character code
-     *  @param code the Unicode character to be output
-     *  @param codePage - for compatibility, ignored
-     */
-    protected void put_char_code(char code, int codePage) {
-        content.append(code);
-    } // put_char_code
-
-    /** Emits a newline
-     *  @param status one of the codes ptx_soft, ptx_hard and so on.
-     */
-    protected void put_line(int status) {
-        switch (status) {
-            case ptx_soft:
-                break;
-            default:
-                content.append("\r\n");
-            /*
-                fireContent();
-                fireStartElement("br");
-            */
-                break;
-        } // switch status
-    } // put_line
-
-    /** Emits a new page
-     *  @param status one of the codes ptx_soft, ptx_hard
-     */
-    protected void put_page(int status) {
-        switch (status) {
-            case ptx_soft:
-            default:
-                content.append("\r\n");
-                fireContent();
-                AttributesImpl attrs = new AttributesImpl();
-                attrs.addAttribute("", "style", "style", "CDATA", "page-break-before: always");
-                fireStartElement("span", attrs);
-                fireEndElement  ("span");
-                break;
-        } // switch status
-    } // put_page
-
-    /** Emits a soft or hard space
-     *  @param status one of the codes ptx_soft, ptx_hard.
-     */
-    protected void put_space(int status) {
-        switch (status) {
-            case ptx_soft:
-                content.append(" ");
-                break;
-            default:
-                content.append("\u00a0");
-                break;
-        } // switch status
-    } // put_line
-
-    /** Emits a space
-     */
-    protected void put_tab() {
-        content.append("\t");
-    } // put_tab
-
-    /** Starts or ends underlined text
-     *  @param status off or on with some variant:
-     *  <pre>
-     *  0 = off,
-     *  1 = continuous single on (default),
-     *  2 = continuous double,
-     *  3 = wordwise   single,
-     *  4 = wordwise   double  (same as continuous in RTF)
-     *  </pre>
-     */
-    protected void put_underline(int status) {
-        fireContent();
-        switch (status) {
-            case 0:
-                if (ptx.underline >  0) {
-                    fireEndElement("u");
-                }
-                break;
-            default:
-                if (ptx.underline == 0) {
-                    if (status == 1) {
-                        fireStartElement("u");
-                    } else {
-                        AttributesImpl attrs = new AttributesImpl();
-                        attrs.addAttribute("", "s", "s", "CDATA", Integer.toString(status));
-                        fireStartElement("u", attrs);
-                    }
-                }
-                break;
-        } // switch status
-        ptx.underline = status;
-    } // put_underline
-
-    /*===========================*/
-    /* SAX handler for XML input */
-    /*===========================*/
-
-    /** Upper bound for input buffer */
-    protected static final int MAX_SAX = 4096;
-    /** buffer for output line */
-    protected ByteRecord saxRecord;
-
-    /** currently opened element */
-    protected String elem;
-
-    /** Terminate and write a logical line
-     */
-    public void flushLine() {
-        try {
-            saxRecord.write(byteWriter, saxRecord.getPosition());
-            saxRecord.setPosition(0);
-        } catch (Exception exc) {
-            log.error(exc.getMessage(), exc);
-        }
-    } // flushLine
-
-    /** Receive notification of the beginning of the document.
-     */
-    public void startDocument() {
-        saxRecord = new ByteRecord(MAX_SAX); // a rather long line
-        elem = "";
-    } // startDocument
-
-    /** Receive notification of the end of the document.
-     */
-    public void endDocument()
-            throws SAXException {
-        try {
-            flushLine();
-        } catch (Exception exc) {
-            throw new SAXException(exc.getMessage());
-        }
-    } // endDocument
-
-    /** Receive notification of the start of an element.
-     *  Looks for the element which contains raw lines.
-     *  @param uri The Namespace URI, or the empty string if the element has no Namespace URI
-     *  or if Namespace processing is not being performed.
-     *  @param localName the local name (without prefix),
-     *  or the empty string if namespace processing is not being performed.
-     *  @param qName the qualified name (with prefix),
-     *  or the empty string if qualified names are not available.
-     *  @param attrs the attributes attached to the element.
-     *  If there are no attributes, it shall be an empty Attributes object.
-     *  @throws SAXException for SAX errors
-     */
-    public void startElement(String uri, String localName, String qName, Attributes attrs)
-            throws SAXException {
-        if (namespace.length() > 0 && qName.startsWith(namespace)) {
-            qName = qName.substring(namespace.length());
-        }
-        elem = qName;
-        try {
-            if (false) {
-            } else if (qName.equals(ROOT_TAG        )) {
-                // ignore
-            } else if (qName.equals(BR_TAG          ) ||
-                       qName.equals(P_TAG           )) {
-                saxRecord.setString(2, "\r\n");
-            } else {
-            }
-        } catch (Exception exc) {
-            throw new SAXException(exc.getMessage());
-        }
-    } // startElement
-
-    /** Receive notification of the end of an element.
-     *  Looks for the element which contains raw lines.
-     *  Terminates the line.
-     *  @param uri the Namespace URI, or the empty string if the element has no Namespace URI
-     *  or if Namespace processing is not being performed.
-     *  @param localName the local name (without prefix),
-     *  or the empty string if Namespace processing is not being performed.
-     *  @param qName the qualified name (with prefix),
-     *  or the empty string if qualified names are not available.
-     *  @throws SAXException for SAX errors
-     */
-    public void endElement(String uri, String localName, String qName)
-            throws SAXException {
-        if (namespace.length() > 0 && qName.startsWith(namespace)) {
-            qName = qName.substring(namespace.length());
-        }
-        elem = "";
-        try {
-            if (false) {
-            } else if (qName.equals(ROOT_TAG        )) {
-            } else {
-                // all other elements are empty - ignore their end tags
-            }
-        } catch (Exception exc) {
-            throw new SAXException(exc.getMessage());
-        }
-    } // endElement
-
-    /** Receive notification of character data inside an element.
-     *  @param ch the characters.
-     *  @param start the start position in the character array.
-     *  @param len the number of characters to use from the character array.
-     *  @throws SAXException for SAX errors
-     */
-    public void characters(char[] ch, int start, int len)
-            throws SAXException {
-        try {
-            if (true) { // inside HEAD_TAG, TEXT_TAG and PROP_TEXT_TAG
-                int pos = 0;
-                while (pos < len) {
-                    char chx = ch[start ++];
-                    if (false) {
-                    } else {
-                        saxRecord.set1((byte) chx);
-                        if (saxRecord.getPosition() >= MAX_SAX) {
-                            flushLine();
-                        }
-                    }
-                    pos ++;
-                } // while pos
-            } // else ignore characters in unknown elements
-        } catch (Exception exc) {
-            System.err.println(exc.getMessage());
-            throw new SAXException(exc.getMessage());
-        }
-    } // characters
-
-} // TextConverter
+import  org.apache.logging.log4j.LogManager;
+
+/** This class replaces the functional interface for
+ *  text processing systems as it was used by the Pascal and C
+ *  implementations of Putrans.
+ *
+ *  @author Dr. Georg Fischer
+ */
+public class TextConverter extends ByteTransformer {
+    public final static String CVSID = "@(#) $Id: TextConverter.java 566 2010-10-19 16:32:04Z gfis $";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** Upper bound for input buffer */
+    protected static final int MAX_BUF = 4096;
+
+    /** Minimum size of an input file which is memory-mapped instead of being read into {@link #genBuffer} */
+    protected static final long MIN_MAP = 65536;
+
+    /** Root element tag */
+    protected static final String ROOT_TAG        = "html";
+    /** Body element tag */
+    protected static final String BODY_TAG        = "body";
+    /** br element tag */
+    protected static final String BR_TAG          = "br";
+    /** Head element tag */
+    protected static final String HEAD_TAG        = "head";
+    /** p element tag */
+    protected static final String P_TAG           = "p";
+    /** pre element tag */
+    protected static final String PRE_TAG         = "pre";
+
+    /** Attribute name for leading spaces */
+    protected static final String SPACE_ATTR      = "sp";
+
+    /** byte which indicates the end of string */
+    protected static final char EOS = 0;
+
+    /** Element which denotes a line break, for readability/reconstruction only */
+    protected static final String NEWLINE_TAG     = "n";
+    /** Element tag for hard hyphen */
+    protected static final String HARD_HYPHEN_TAG = "hhy";
+    /** Element tag for soft hyphen */
+    protected static final String SOFT_HYPHEN_TAG = "shy";
+    /** Element tag for bold text */
+    protected static final String STRONG_TAG      = "strong";
+    /** Element tag for underlined text */
+    protected static final String UNDERLINE_TAG   = "u";
+    /** Element tag for a page break */
+    protected static final String SPAN_TAG        = "span";
+
+    /** number of logical line (terminated by EOS) */
+    protected int lineNo;
+
+    /** tag for a text line */
+    protected String lineTag;
+
+    /** buffer for values in input stream */
+    protected StringBuilder content;
+
+    /** Reusable copy of {@link #content} which is passed to the ContentHandler */
+    private char[] contentChars;
+
+    /** Receives the put_* interface instead of the ContentHandler, or null for SAX events */
+    protected TextSink sink;
+    /** Line separator of {@link #emitLineBreak} */
+    private static final char[] LINE_BREAK = { '\r', '\n' };
+
+    /** Qualified names (with namespace prefix) of the elements emitted by the put_* interface */
+    private String strongQName;
+    private String underlineQName;
+    private String spanQName;
+
+    /** Reusable attribute lists for the elements emitted by the put_* interface */
+    private AttributesImpl noAttrs;
+    private AttributesImpl pageAttrs;
+    private AttributesImpl underlineAttrs;
+
+    /** Values of the attribute of {@link #UNDERLINE_TAG}, indexed by status */
+    private static final String[] UNDERLINE_STATUS = { "0", "1", "2", "3", "4" };
+
+    /* 2-byte pair from ruler line */
+    protected int rulerPair;
+
+    /** Buffer for a portion of the input file, or the whole memory-mapped input file;
+     *  {@link #processInput} addresses it with absolute offsets
+     */
+    protected ByteBuffer genBuffer;
+    /** Position of the first byte of {@link #genBuffer} in the input file */
+    protected long genOffset;
+
+    /** Decoder for the source encoding; without the option <em>-enc1</em>,
+     *  the bytes are taken as {@link #DEFAULT_ENCODING}, as before, such that Latin-1 text passes unchanged */
+    private CharsetDecoder decoder;
+
+    /** Reusable buffer for the characters decoded from {@link #genBuffer} */
+    private CharBuffer decoded;
+
+    /** Encoding which is used when none is configured */
+    protected static final String DEFAULT_ENCODING = "ISO-8859-1";
+
+    /** Gets a charset, or the default charset if the name is not set or not supported
+     *  @param name name of the encoding, for example "UTF-8"
+     *  @return the charset
+     */
+    protected Charset getCharset(String name) {
+        Charset result = Charset.forName(DEFAULT_ENCODING);
+        if (name != null && name.length() > 0) {
+            try {
+                result = Charset.forName(name);
+            } catch (Exception exc) {
+                log.error("unsupported encoding " + name);
+            }
+        }
+        return result;
+    } // getCharset
+
+    /** values of {@link #state} */
+    private static final int IN_BRACKET     = 1;
+    private static final int IN_TEXT        = 2;
+
+    /** state of finite automaton */
+    protected  int  state;
+
+    /** Lowercase hexadecimal digits */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Appends a byte as 2 lowercase hexadecimal digits, like <em>String.format("%02x", ...)</em>
+     *  @param buffer where to append
+     *  @param value byte value, only the lower 8 bits are used
+     */
+    protected static void appendHex(StringBuilder buffer, int value) {
+        buffer.append(HEX_DIGITS[(value >> 4) & 0x0f]);
+        buffer.append(HEX_DIGITS[ value       & 0x0f]);
+    } // appendHex
+
+    /** Appends a number right-aligned in a field, like <em>String.format("%5d", ...)</em>
+     *  @param buffer where to append
+     *  @param value number to be appended
+     *  @param width minimum number of characters, filled with leading spaces
+     */
+    protected static void appendDecimal(StringBuilder buffer, long value, int width) {
+        int digits = 1;
+        long rest  = value;
+        if (rest < 0) {
+            digits ++; // for the sign
+            rest = - rest;
+        }
+        while (rest >= 10) {
+            digits ++;
+            rest /= 10;
+        } // while rest
+        while (digits < width) {
+            buffer.append(' ');
+            digits ++;
+        } // while digits
+        buffer.append(value);
+    } // appendDecimal
+
+    /** No-args Constructor.
+     */
+    public TextConverter() {
+        super();
+        log = LogManager.getLogger(TextConverter.class.getName());
+        setFormatCodes("text,plain");
+        setDescription("Plain Text");
+        setFileExtensions("txt");
+    } // Constructor
+
+    /** Initializes the (quasi-constant) global structures and variables.
+     *  This method is called by the {@link org.teherba.xtrans.XtransFactory} once for the
+     *  selected generator and serializer.
+     */
+    public void initialize() {
+        super.initialize();
+        content = new StringBuilder(2048);
+        contentChars = new char[2048];
+        lineNo  = 0;
+        state   = 0;
+        ptx     = new Ptx();
+        noAttrs        = new AttributesImpl();
+        pageAttrs      = new AttributesImpl();
+        pageAttrs     .addAttribute("", "style", "style", "CDATA", "page-break-before: always");
+        underlineAttrs = new AttributesImpl();
+        underlineAttrs.addAttribute("", "s"    , "s"    , "CDATA", UNDERLINE_STATUS[1]);
+    } // initialize
+
+    /** Sets the sink which receives the put_* interface instead of the ContentHandler.
+     *  The sink bypasses SAX and the serializer.
+     *  @param sink the sink, or null for SAX events
+     */
+    public void setSink(TextSink sink) {
+        this.sink = sink;
+    } // setSink
+
+    /** Gets the sink which receives the put_* interface
+     *  @return the sink, or null for SAX events
+     */
+    public TextSink getSink() {
+        return sink;
+    } // getSink
+
+    /** Whether an error occurred in the current conversion */
+    private boolean failed;
+
+    /** Records an error of the current conversion, such that {@link #generate} and {@link #finish} return false
+     *  @param exc the exception which occurred
+     */
+    protected void fail(Exception exc) {
+        failed = true;
+        log.error(exc.getMessage(), exc);
+    } // fail
+
+    /** Emits document text, and writes its characters.
+     *  The characters are passed to the ContentHandler (or to the sink) in a reused array.
+     */
+    protected void fireContent() {
+        int len = content.length();
+        if (len > 0) {
+            if (len > contentChars.length) {
+                contentChars = new char[Math.max(len, contentChars.length * 2)];
+            }
+            content.getChars(0, len, contentChars, 0);
+            content.setLength(0);
+            try {
+                if (sink != null) {
+                    sink.characters(contentChars, 0, len);
+                } else {
+                    getContentHandler().characters(contentChars, 0, len);
+                }
+            } catch (Exception exc) {
+                fail(exc);
+            }
+        }
+    } // fireContent
+
+    /** Emits the start of an element of the put_* interface
+     *  @param tag local name of the element
+     *  @param qName qualified name of the element, precomputed in {@link #begin}
+     *  @param attrs reusable attribute list
+     */
+    protected void fireStartElement(String tag, String qName, Attributes attrs) {
+        try {
+            if (sink != null) {
+                sink.startElement(tag, attrs);
+            } else {
+                getContentHandler().startElement("", tag, qName, attrs);
+            }
+        } catch (Exception exc) {
+            fail(exc);
+        }
+    } // fireStartElement
+
+    /** Emits the end of an element of the put_* interface
+     *  @param tag local name of the element
+     *  @param qName qualified name of the element, precomputed in {@link #begin}
+     */
+    protected void fireEndElement(String tag, String qName) {
+        try {
+            if (sink != null) {
+                sink.endElement(tag);
+            } else {
+                getContentHandler().endElement("", tag, qName);
+            }
+        } catch (Exception exc) {
+            fail(exc);
+        }
+    } // fireEndElement
+
+    /** Emits a comment, to the sink or as SAX event
+     *  @param text content of the comment
+     */
+    protected void emitComment(String text) {
+        if (sink != null) {
+            try {
+                sink.comment(text);
+            } catch (Exception exc) {
+                fail(exc);
+            }
+        } else {
+            fireComment(text);
+        }
+    } // emitComment
+
+    /** Emits a line break, to the sink or as SAX event
+     */
+    protected void emitLineBreak() {
+        if (sink != null) {
+            try {
+                sink.characters(LINE_BREAK, 0, LINE_BREAK.length);
+            } catch (Exception exc) {
+                fail(exc);
+            }
+        } else {
+            fireLineBreak();
+        }
+    } // emitLineBreak
+
+    /** Emits the start of the document, and the enclosing elements
+     *  @throws Exception for SAX or IO errors
+     */
+    private void emitStart() throws Exception {
+        if (sink != null) {
+            sink.startDocument();
+            sink.startElement(ROOT_TAG, noAttrs);
+            sink.startElement(BODY_TAG, noAttrs);
+            sink.startElement(PRE_TAG , noAttrs);
+        } else {
+            fireStartDocument();
+            fireStartRoot(ROOT_TAG);
+        //    fireLineBreak();
+            fireStartElement(BODY_TAG);
+        //    fireLineBreak();
+            fireStartElement(PRE_TAG);
+        //    fireLineBreak();
+        }
+    } // emitStart
+
+    /** Emits the ends of the enclosing elements, and the end of the document
+     *  @throws Exception for SAX or IO errors
+     */
+    private void emitEnd() throws Exception {
+        if (sink != null) {
+            sink.endElement(PRE_TAG );
+            sink.endElement(BODY_TAG);
+            sink.endElement(ROOT_TAG);
+            sink.endDocument();
+        } else {
+            fireEndElement(PRE_TAG);
+        //    fireLineBreak();
+            fireEndElement(BODY_TAG);
+        //    fireLineBreak();
+            fireEndElement(ROOT_TAG);
+        //    fireLineBreak();
+            fireEndDocument();
+        }
+    } // emitEnd
+
+    /** Processes a portion of the input file
+     *  @param start offset where to start/resume scanning
+     *  @param trap  offset behind last character to be processed
+     *  @return offset behind last character which was processed
+     */
+    protected int processInput(int start, int trap) {
+        return decodeInput(start, trap, false);
+    } // processInput
+
+    /** Processes the bytes which remained behind the last portion of the input file,
+     *  for example an incomplete multi-byte sequence.
+     *  @param start offset of the first remaining byte
+     *  @param trap  offset behind the last byte
+     */
+    protected void processRest(int start, int trap) {
+        decodeInput(start, trap, true);
+    } // processRest
+
+    /** Decodes a portion of the input file with the source encoding,
+     *  and processes the resulting characters
+     *  @param start offset where to start/resume decoding
+     *  @param trap  offset behind last byte to be decoded
+     *  @param endOfInput whether there are no more bytes behind <em>trap</em>
+     *  @return offset behind last byte which was decoded
+     */
+    private int decodeInput(int start, int trap, boolean endOfInput) {
+        genBuffer.limit(trap);
+        genBuffer.position(start);
+        boolean busy = true;
+        while (busy) {
+            CoderResult result = decoder.decode(genBuffer, decoded, endOfInput);
+            if (endOfInput && ! result.isOverflow()) {
+                result = decoder.flush(decoded);
+            }
+            processChars(decoded.array(), decoded.position());
+            decoded.clear();
+            busy = result.isOverflow();
+        } // while busy
+        int ibuf = genBuffer.position();
+        genBuffer.clear();
+        return ibuf;
+    } // decodeInput
+
+    /** Processes decoded characters
+     *  @param chars buffer with the characters
+     *  @param trap  offset behind last character to be processed
+     */
+    private void processChars(char[] chars, int trap) {
+        char ch; // current character to be processed
+        boolean readOff; // whether current character should be consumed
+        int ibuf = 0;
+        while (ibuf < trap) { // process all characters
+            readOff = true;
+            ch = chars[ibuf];
+            switch (state) {
+
+                case IN_TEXT:
+                    switch (ch) {
+                        case '\n':
+                            content.append(ch);
+                            fireContent();
+                            break;
+                        default:
+                            content.append(ch);
+                            break;
+                    } // switch ch
+                    break; // IN_TEXT
+
+                default:
+                    Metrics.getInstance().countInvalidState();
+                    log.error("invalid state " + state);
+                    break;
+
+            } // switch state
+            if (readOff) {
+                ibuf ++;
+            }
+        } // while processing
+    } // processChars
+
+    /** Maps the rest of the input file into memory if the
+     *  byte reader is a local file which is large enough.
+     *  Small files and other sources (servlet uploads, stdin)
+     *  are left to the buffered path.
+     *  @return the mapped region, or null if the input should be read in portions
+     */
+    protected MappedByteBuffer mapInput() {
+        MappedByteBuffer result = null;
+        if (byteReader instanceof FileInputStream) {
+            try {
+                FileChannel channel = ((FileInputStream) byteReader).getChannel();
+                long start = channel.position();
+                long size  = channel.size() - start;
+                if (size >= MIN_MAP && size <= Integer.MAX_VALUE) {
+                    result = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                    channel.position(start + size); // the reader is consumed
+                }
+            } catch (IOException exc) { // not mappable - fall back to the buffered path
+                log.debug(exc.getMessage(), exc);
+                result = null;
+            }
+        } // FileInputStream
+        return result;
+    } // mapInput
+
+    /** Processes the whole memory-mapped input file.
+     *  Subclasses may decode large files in parallel chunks.
+     *  @param mapped the input file, also in {@link #genBuffer}
+     */
+    protected void processMapped(ByteBuffer mapped) {
+        int trap = mapped.limit();
+        processRest(processInput(0, trap), trap);
+    } // processMapped
+
+    /** Forwards the events of a recording to the sink or to the ContentHandler
+     */
+    private class Forwarder implements TextSink {
+        public void startDocument() {
+        } // startDocument
+
+        public void endDocument() {
+        } // endDocument
+
+        public void startElement(String tag, Attributes attrs) {
+            fireStartElement(tag, namespace + tag, attrs);
+        } // startElement
+
+        public void endElement(String tag) {
+            fireEndElement(tag, namespace + tag);
+        } // endElement
+
+        public void characters(char[] ch, int start, int len) throws IOException {
+            try {
+                if (sink != null) {
+                    sink.characters(ch, start, len);
+                } else {
+                    getContentHandler().characters(ch, start, len);
+                }
+            } catch (SAXException exc) {
+                throw new IOException(exc.getMessage(), exc);
+            }
+        } // characters
+
+        public void comment(String text) {
+            emitComment(text);
+        } // comment
+    } // inner class Forwarder
+
+    /** Emits the events of a recording, to the sink or as SAX events
+     *  @param recording events which were recorded by another converter
+     */
+    protected void replay(RecordingSink recording) {
+        fireContent();
+        try {
+            recording.replay(new Forwarder());
+        } catch (IOException exc) {
+            fail(exc);
+        }
+    } // replay
+
+    /** Buffer for a portion of the input, reused by {@link #generate} and {@link #feed} */
+    private byte[] portion;
+    /** Number of bytes at the start of {@link #portion} which were not processed yet */
+    private int rest;
+
+    /** Starts a conversion: emits the start of the document and
+     *  initializes the state of the parser.
+     *  Then the input is given to {@link #feed} in any number of pieces,
+     *  and the conversion is terminated by {@link #finish}:
+     *  <pre>
+     *  converter.begin();
+     *  while (...) {
+     *      converter.feed(buffer); // whatever arrived
+     *  }
+     *  converter.finish();
+     *  </pre>
+     *  The state of the parser (an incomplete bracket, a pending decoration,
+     *  an incomplete multi-byte sequence) is kept in the converter between the calls.
+     *  None of the calls reads or waits for input, and no thread is
+     *  bound to a conversion, such that many of them can be driven by
+     *  non-blocking IO (for example a servlet <em>ReadListener</em>) or an event loop.
+     *  A converter instance must not be fed by more than one thread at a time.
+     */
+    public void begin() {
+        lineNo = 0;
+        content.setLength(0);
+        state = IN_TEXT;
+        decoder = getCharset(getOption("enc1", "").length() > 0 ? getSourceEncoding() : null).newDecoder()
+                .onMalformedInput     (CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        if (decoded == null) {
+            decoded = CharBuffer.allocate(MAX_BUF);
+        }
+        strongQName    = namespace + STRONG_TAG;
+        underlineQName = namespace + UNDERLINE_TAG;
+        spanQName      = namespace + SPAN_TAG;
+
+        putEntityReplacements();
+        if (portion == null) {
+            portion = new byte[MAX_BUF];
+        }
+        rest      = 0;
+        genOffset = 0;
+        failed    = false;
+        genBuffer = ByteBuffer.wrap(portion);
+        try {
+            emitStart();
+        } catch (Exception exc) {
+            fail(exc);
+        }
+    } // begin
+
+    /** Processes the next piece of the input, which may end anywhere,
+     *  for example in the middle of a bracket.
+     *  @param input bytes from its position up to its limit; they are all consumed
+     */
+    public void feed(ByteBuffer input) {
+        while (input.hasRemaining()) {
+            int len = Math.min(input.remaining(), MAX_BUF - rest);
+            input.get(portion, rest, len);
+            processPortion(len);
+        } // while remaining
+    } // feed
+
+    /** Processes the bytes in {@link #portion}
+     *  @param len number of bytes which were appended behind the unprocessed rest
+     */
+    private void processPortion(int len) {
+        int trap = rest + len;
+        int done = processInput(0, trap);
+        rest = trap - done;
+        System.arraycopy(portion, done, portion, 0, rest);
+        genOffset += done;
+    } // processPortion
+
+    /** Terminates a conversion: processes the bytes which remained
+     *  from the last call of {@link #feed}, and emits the end of the document
+     *  @return whether the transformation was successful
+     */
+    public boolean finish() {
+        processRest(0, rest);
+        rest = 0;
+        return end();
+    } // finish
+
+    /** Emits the end of the document
+     *  @return whether the transformation was successful
+     */
+    private boolean end() {
+        genBuffer = null;
+        fireContent();
+        try {
+            emitEnd();
+        } catch (Exception exc) {
+            fail(exc);
+        }
+        return ! failed;
+    } // end
+
+    /** Transforms from the specified format to XML
+     *  @return whether the transformation was successful
+     */
+    public boolean generate() {
+        boolean result = true;
+        int len; // length read from 'byteReader'
+        begin();
+        try {
+            MappedByteBuffer mapped = mapInput();
+            if (mapped != null) { // whole file at once
+                genBuffer = mapped;
+                processMapped(mapped);
+                result = end();
+            } else { // in portions, read directly behind the unprocessed rest
+                while ((len = byteReader.read(portion, rest, MAX_BUF - rest)) >= 0) {
+                    processPortion(len);
+                } // while reading
+                result = finish();
+            }
+        } catch (Exception exc) {
+            fail(exc);
+            result = false;
+        }
+        return  result;
+    } // generate
+
+    /*===========================*/
+    /* Text processing interface */
+    /*===========================*/
+
+    // parameter 'status' of 'put_bold', 'put_italic', put_underline' etc.
+    protected static final int ptx_off       = 0;
+    protected static final int ptx_on        = 1;
+    // Parameter 'status of 'put_line', 'put_space', 'put_hyphen'
+    protected static final int ptx_soft      = 1;
+    protected static final int ptx_hard      = 2;
+    protected static final int ptx_soft_eol  = 3;
+    protected static final int ptx_paragraph = 4;
+    protected static final int ptx_normal    = 5;
+    protected static final int ptx_break     = 6; // similiar to hard
+    // Parameter 'status of 'put_align'
+    protected static final int ptx_left      = 0; // start aligned (default)
+    protected static final int ptx_right     = 1; // end aligned
+    protected static final int ptx_centred   = 2; //
+    protected static final int ptx_justified = 3; // blocked, left and right aligned
+
+
+    /** The parameter block for the functional text processing interface
+     */
+    protected class Ptx {
+        public int align;
+        public int bold;
+        public int underline;
+        public Ptx() {
+            align     = 0;
+            bold      = 0;
+            underline = 0;
+        }
+    } // inner class Ptx
+
+    /** Instance of the parameter block */
+    protected Ptx ptx;
+
+    /** Starts or ends bold text
+     *  @param status off or on
+     */
+    protected void put_bold(int status) {
+        fireContent();
+        switch (status) {
+            case 0:
+                if (ptx.bold >  0) {
+                    fireEndElement  (STRONG_TAG, strongQName);
+                }
+                break;
+            default:
+                if (ptx.bold == 0) {
+                    fireStartElement(STRONG_TAG, strongQName, noAttrs);
+                }
+                break;
+        } // switch status
+        ptx.bold = status;
+    } // put_bold
+
+    /** Puts a special character code
+     *  @param code the Unicode character to be output
+     *  @param codePage - for compatibility, ignored
+     */
+    protected void put_char_code(char code, int codePage) {
+        content.append(code);
+    } // put_char_code
+
+    /** Emits a newline
+     *  @param status one of the codes ptx_soft, ptx_hard and so on.
+     */
+    protected void put_line(int status) {
+        switch (status) {
+            case ptx_soft:
+                break;
+            default:
+                content.append("\r\n");
+            /*
+                fireContent();
+                fireStartElement("br");
+            */
+                break;
+        } // switch status
+    } // put_line
+
+    /** Emits a new page
+     *  @param status one of the codes ptx_soft, ptx_hard
+     */
+    protected void put_page(int status) {
+        switch (status) {
+            case ptx_soft:
+            default:
+                content.append("\r\n");
+                fireContent();
+                fireStartElement(SPAN_TAG, spanQName, pageAttrs);
+                fireEndElement  (SPAN_TAG, spanQName);
+                break;
+        } // switch status
+    } // put_page
+
+    /** Emits a soft or hard space
+     *  @param status one of the codes ptx_soft, ptx_hard.
+     */
+    protected void put_space(int status) {
+        switch (status) {
+            case ptx_soft:
+                content.append(' ');
+                break;
+            default:
+                content.append('\u00a0');
+                break;
+        } // switch status
+    } // put_line
+
+    /** Emits a space
+     */
+    protected void put_tab() {
+        content.append('\t');
+    } // put_tab
+
+    /** Starts or ends underlined text
+     *  @param status off or on with some variant:
+     *  <pre>
+     *  0 = off,
+     *  1 = continuous single on (default),
+     *  2 = continuous double,
+     *  3 = wordwise   single,
+     *  4 = wordwise   double  (same as continuous in RTF)
+     *  </pre>
+     */
+    protected void put_underline(int status) {
+        fireContent();
+        switch (status) {
+            case 0:
+                if (ptx.underline >  0) {
+                    fireEndElement  (UNDERLINE_TAG, underlineQName);
+                }
+                break;
+            default:
+                if (ptx.underline == 0) {
+                    if (status == 1) {
+                        fireStartElement(UNDERLINE_TAG, underlineQName, noAttrs);
+                    } else {
+                        underlineAttrs.setValue(0, status < UNDERLINE_STATUS.length
+                                ? UNDERLINE_STATUS[status]
+                                : Integer.toString(status));
+                        fireStartElement(UNDERLINE_TAG, underlineQName, underlineAttrs);
+                    }
+                }
+                break;
+        } // switch status
+        ptx.underline = status;
+    } // put_underline
+
+    /*===========================*/
+    /* SAX handler for XML input */
+    /*===========================*/
+
+    /** Upper bound for output buffer */
+    protected static final int MAX_SAX = 4096;
+    /** Size of the buffer for encoded output, which is written in blocks of this size */
+    protected static final int MAX_ENCODED = 65536;
+
+    /** buffer for encoded output */
+    private ByteBuffer saxBuffer;
+    /** Encoder for the result encoding */
+    private CharsetEncoder encoder;
+    /** Characters below this limit are mapped to the same single bytes by the result encoding:
+     *  0x80 for stateless encodings which are compatible with US-ASCII, 0x100 for ISO-8859-1, 0 otherwise
+     */
+    private int singleLimit;
+    /** Whether the result encoding is UTF-8 */
+    private boolean utf8;
+    /** Buffer for non-ASCII characters to be encoded; it may keep a high surrogate for the next call */
+    private CharBuffer encodeChars;
+    /** Names of the encodings which map ASCII without shift states, such that
+     *  ASCII characters can be written behind the encoder's output as raw bytes
+     */
+    private static final Pattern STATELESS = Pattern.compile("UTF-8|US-ASCII|ISO-8859-\\d+|windows-125\\d");
+    /** Line separator which is output for BR_TAG and P_TAG */
+    private static final char[] CRLF = { '\r', '\n' };
+
+    /** currently opened element */
+    protected String elem;
+
+    /** Writes the encoded output
+     */
+    public void flushLine() {
+        try {
+            byteWriter.write(saxBuffer.array(), 0, saxBuffer.position());
+            saxBuffer.clear();
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+    } // flushLine
+
+    /** Receive notification of the beginning of the document.
+     */
+    public void startDocument() {
+        if (saxBuffer == null) {
+            saxBuffer   = ByteBuffer.allocate(MAX_ENCODED);
+            encodeChars = CharBuffer.allocate(MAX_SAX);
+        }
+        saxBuffer  .clear();
+        encodeChars.clear();
+        Charset charset = getCharset(getOption("enc2", "").length() > 0 ? getResultEncoding() : null);
+        encoder = charset.newEncoder()
+                .onMalformedInput     (CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        byte[] ascii = new byte[0x80];
+        int ind = 0;
+        while (ind < ascii.length) {
+            ascii[ind] = (byte) ind;
+            ind ++;
+        } // while ind
+        utf8 = charset.name().equals("UTF-8");
+        singleLimit = charset.name().equals("ISO-8859-1") ? 0x100
+                : ! STATELESS.matcher(charset.name()).matches() ? 0 // ISO-2022 etc. need the shift sequences of the encoder
+                : Arrays.equals(new String(ascii, Charset.forName("US-ASCII")).getBytes(charset), ascii) ? 0x80
+                : 0;
+        elem = "";
+    } // startDocument
+
+    /** Receive notification of the end of the document.
+     */
+    public void endDocument()
+            throws SAXException {
+        try {
+            encodeChars.flip();
+            while (encoder.encode(encodeChars, saxBuffer, true).isOverflow()) {
+                flushLine();
+            } // while overflow
+            while (encoder.flush(saxBuffer).isOverflow()) {
+                flushLine();
+            } // while overflow
+            encodeChars.clear();
+            flushLine();
+        } catch (Exception exc) {
+            throw new SAXException(exc.getMessage());
+        }
+    } // endDocument
+
+    /** Determines whether a character can be output without the encoder
+     *  @param chx the character
+     *  @return true for characters which are mapped to the same single byte,
+     *  and for all characters below U+0800 in UTF-8
+     */
+    private boolean isFast(char chx) {
+        return chx < singleLimit || (chx < 0x800 && utf8);
+    } // isFast
+
+    /** Encodes characters with the result encoding into {@link #saxBuffer}
+     *  @param ch the characters.
+     *  @param start the start position in the character array.
+     *  @param trap position behind the last character to be encoded.
+     */
+    private void encode(char[] ch, int start, int trap) {
+        int pos = start;
+        while (pos < trap) {
+            int len = Math.min(trap - pos, encodeChars.remaining());
+            encodeChars.put(ch, pos, len);
+            pos += len;
+            encodeChars.flip();
+            while (encoder.encode(encodeChars, saxBuffer, false).isOverflow()) {
+                flushLine();
+            } // while overflow
+            encodeChars.compact(); // an incomplete surrogate pair remains
+        } // while pos
+    } // encode
+
+    /** Receive notification of the start of an element.
+     *  Looks for the element which contains raw lines.
+     *  @param uri The Namespace URI, or the empty string if the element has no Namespace URI
+     *  or if Namespace processing is not being performed.
+     *  @param localName the local name (without prefix),
+     *  or the empty string if namespace processing is not being performed.
+     *  @param qName the qualified name (with prefix),
+     *  or the empty string if qualified names are not available.
+     *  @param attrs the attributes attached to the element.
+     *  If there are no attributes, it shall be an empty Attributes object.
+     *  @throws SAXException for SAX errors
+     */
+    public void startElement(String uri, String localName, String qName, Attributes attrs)
+            throws SAXException {
+        if (namespace.length() > 0 && qName.startsWith(namespace)) {
+            qName = qName.substring(namespace.length());
+        }
+        elem = qName;
+        try {
+            if (false) {
+            } else if (qName.equals(ROOT_TAG        )) {
+                // ignore
+            } else if (qName.equals(BR_TAG          ) ||
+                       qName.equals(P_TAG           )) {
+                characters(CRLF, 0, CRLF.length);
+            } else {
+            }
+        } catch (Exception exc) {
+            throw new SAXException(exc.getMessage());
+        }
+    } // startElement
+
+    /** Receive notification of the end of an element.
+     *  Looks for the element which contains raw lines.
+     *  Terminates the line.
+     *  @param uri the Namespace URI, or the empty string if the element has no Namespace URI
+     *  or if Namespace processing is not being performed.
+     *  @param localName the local name (without prefix),
+     *  or the empty string if Namespace processing is not being performed.
+     *  @param qName the qualified name (with prefix),
+     *  or the empty string if qualified names are not available.
+     *  @throws SAXException for SAX errors
+     */
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+        if (namespace.length() > 0 && qName.startsWith(namespace)) {
+            qName = qName.substring(namespace.length());
+        }
+        elem = "";
+        try {
+            if (false) {
+            } else if (qName.equals(ROOT_TAG        )) {
+            } else {
+                // all other elements are empty - ignore their end tags
+            }
+        } catch (Exception exc) {
+            throw new SAXException(exc.getMessage());
+        }
+    } // endElement
+
+    /** Receive notification of character data inside an element.
+     *  @param ch the characters.
+     *  @param start the start position in the character array.
+     *  @param len the number of characters to use from the character array.
+     *  @throws SAXException for SAX errors
+     */
+    public void characters(char[] ch, int start, int len)
+            throws SAXException {
+        try {
+            if (true) { // inside HEAD_TAG, TEXT_TAG and PROP_TEXT_TAG
+                int pos  = start;
+                int trap = start + len;
+                byte[] buffer = saxBuffer.array();
+                int limit = buffer.length - 1; // room for 2 bytes
+                while (pos < trap) {
+                    if (encodeChars.position() == 0) { // fast path for a run of single-byte (and UTF-8 2-byte) characters
+                        int bpos = saxBuffer.position();
+                        while (pos < trap && bpos < limit) {
+                            char chx = ch[pos];
+                            if (chx < singleLimit) {
+                                buffer[bpos ++] = (byte) chx;
+                            } else if (chx < 0x800 && utf8) {
+                                buffer[bpos ++] = (byte) (0xc0 | (chx >> 6));
+                                buffer[bpos ++] = (byte) (0x80 | (chx & 0x3f));
+                            } else {
+                                break;
+                            }
+                            pos ++;
+                        } // while fast
+                        saxBuffer.position(bpos);
+                        if (bpos >= limit) {
+                            flushLine();
+                        }
+                    }
+                    if (pos < trap && (encodeChars.position() > 0 || ! isFast(ch[pos]))) { // a run for the encoder
+                        int end = pos + 1;
+                        while (end < trap && ! isFast(ch[end])) {
+                            end ++;
+                        } // while not fast
+                        encode(ch, pos, end);
+                        pos = end;
+                    }
+                } // while pos
+            } // else ignore characters in unknown elements
+        } catch (Exception exc) {
+            System.err.println(exc.getMessage());
+            throw new SAXException(exc.getMessage());
+        }
+    } // characters
+
+} // TextConverter
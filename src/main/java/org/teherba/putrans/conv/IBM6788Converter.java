@@ -1,717 +1,1269 @@
-/*  IBM 6788 typewriter, also known as Wheelwriter 5000
-    äöüÄÖÜß - Caution: always store this file as UTF-8!
-    @(#) $Id: IBM6788Converter.java 566 2010-10-19 16:32:04Z gfis $
-    2017-07-22: copied from xtrans.office.text.HitTransformer
-    2017-05-28: javadoc 1.8
-    2008-03-25, Georg Fischer
-*/
-/*
- * Copyright 2017 Dr. Georg Fischer <punctum at punctum dot kom>
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.teherba.putrans.conv;
-import  org.teherba.putrans.TextConverter;
-import  org.teherba.putrans.EbcdicMap;
-import  org.teherba.xtrans.ByteRecord;
-import  javax.xml.bind.DatatypeConverter;
-import  org.xml.sax.Attributes;
-import  org.xml.sax.SAXException;
+/*  IBM 6788 typewriter, also known as Wheelwriter 5000
+    äöüÄÖÜß - Caution: always store this file as UTF-8!
+    @(#) $Id: IBM6788Converter.java 566 2010-10-19 16:32:04Z gfis $
+    2026-10-17: chunks are decoded in a bounded window on a pool of their own
+    2026-10-17: chunk decoders count into the metrics only when they are replayed
+    2026-10-17: spill file is always removed; size > 64 KB is reported; append-mode files are held
+    2026-10-17: code page is selected in begin()
+    2026-10-17: large files are decoded in parallel chunks, option -threads
+    2026-10-17: comments and line breaks via emitComment, emitLineBreak for the sinks
+    2026-10-17: hooks noteBracket, noteUnknownCode, noteControl for the CorpusAnalyzer
+    2026-10-17: metrics for brackets, unknown codes and invalid states
+    2026-10-17: EBCDIC code page from the registry, option -codepage
+    2026-10-17: streaming serializer, header size patched at the end
+    2026-10-17: brackets in a reusable byte array or in place, without String.format
+    2026-10-17: accents from AccentMap
+    2026-10-17: d6 header is decoded from the bracket
+    2017-07-22: copied from xtrans.office.text.HitTransformer
+    2017-05-28: javadoc 1.8
+    2008-03-25, Georg Fischer
+*/
+/*
+ * Copyright 2017 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teherba.putrans.conv;
+import  org.teherba.putrans.AccentMap;
+import  org.teherba.putrans.Metrics;
+import  org.teherba.putrans.TextConverter;
+import  org.teherba.putrans.EbcdicMap;
+import  org.teherba.putrans.sink.RecordingSink;
+import  org.teherba.xtrans.ByteRecord;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.OutputStream;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.FileChannel;
+import  java.util.ArrayList;
+import  java.util.List;
+import  java.util.concurrent.Callable;
+import  java.util.concurrent.ExecutorService;
+import  java.util.concurrent.Executors;
+import  java.util.concurrent.Future;
+import  javax.xml.bind.DatatypeConverter;
+import  org.xml.sax.Attributes;
+import  org.xml.sax.SAXException;
 import  org.apache.logging.log4j.Logger;
-import  org.apache.logging.log4j.LogManager;
-
-/** Transformer for the text files of the IBM 6788 typewriter
- *  on 3.5" DS/DD floppy disks, also known as Wheelwriter 5000
- *  (in cooperation with Lexmark).
- *  Text is in EBCDIC, with escape sequences [2b nn ... nn 2b].
- *  The files are all named DOCUMnnn.TXT, nnn = 001, 002 ...
- *  <p>
- *  <ul>
- *  <li>4 sets of margins for pitch 10, 12, PS, 15</li>
- *  <li>4 sets of tab settings dito</li>
- *  <li>Line spacing 1, 1.5, 2, 3</li>
- *  </ul>
- *
- *  Example dump of a 6788 file:
-<pre>
-    dump -e ../client.../Originale/d03/DOCUM048
-
-              " 2"     fsize 80  word0 word1 word2 word3
-+   0
-     0: 2b d6 40 f2 7e ae  d 80  48    60    f0  3 60      O 2= . ..-.0.-.
-    10: f0  3 6c    90    f0     4c  2 d0  2              0.%. .0.<.}.....
-    20:                                                   ................ ====
-    40:                   d6 2b  2b d4 60       10 1d  1  ......O  M-.....
-    50: 60 d4 2b 40 40 40 40 40  40 40 40 40 40 40 40 40  -M
-    60: 40 40 40 40 40 40 40 40  40 40 40 40 22 e3 20 40               T
-    70: 20 40 22 c5 20 40 20 40  22 e2 20 40 20 40 22 e3     E     S     T
-    80: 28  6 2b d4 60    20     1d  1    d4 2b 28  6 2b     M-. ....M
-    90: d4 60    20    1d  1     d4 2b 40 40 40 40 40 40  M-. ....M
-    a0: 40 40 40 40 40 40 40 40  40 40 40 40 40 40 40 40
-    b0: 40 40 40 40 40 40 84 85  99 28  6 2b d4 60    20        der   M-.
-    c0:    1d  1    d4 2b 28 28  28 28 28 28 28 28  6 2b  ....M
-    d0: d4 60    20    1d  1     d4 2b 40 40 40 40 40 40  M-. ....M
-    e0: 40 40 40 40 40 40 40 40  c9 40 c2 40 d4 40 60 40          I B M -
-    f0: c2 89 93 84 a2 83 88 89  99 94 a2 83 88 99 85 89  Bildschirmschrei
-
-   100: 82 94 81 a2 83 88 89 95  85 28 28 28 28 28 28 28  bmaschine
-   110: 28 28 28 28 28 28 28 28  28 28 28 28 28 28 28 28
-   120: 28 28 28  6 2b d4 60     20    1d  1    d4 2b 60       M-. ....M -
-   130: 60 60 60 60 60 60 60 60  60 60 60 60 60 60 60 60  ---------------- ====
-   170: 60 60 28  6 2b d4 60     20    1d  1    d4 2b 28  --   M-. ....M
-   180: 28 28 28 28 28 28 28  6  2b d4 60    20    1d  1           M-. ...
-   190:    d4 2b 28  6 2b d4 60     20    1d  1    d4 2b  .M    M-. ....M
-   1a0: d4 89 a3 40 84 85 99 40  e3 81 a2 a3 85 40 21 d4  Mit der Taste  M
-   1b0: 21 85 21 95 21 dc 40 92  81 95 95 40 86 96 93 87   e n . kann folg
-   1c0: 85 95 84 85 a2 40 87 85  a6 43 88 93 a3 40 a6 85  endes gew.hlt we
-   1d0: 99 84 85 95 40 7a  6 2b  d4 60    20    1d  1     rden :  M-. ....
-   1e0: d4 2b 28 28 28 28 28 28  28 28 28 28 28 28 28 28  M
-   1f0: 28 28 28 28 28  6 2b d4  60    20    1d  1    d4         M-. ....M
-...
-   db0: d4 2b 84 85 a2 40 e2 97  85 89 83 88 85 99 a2 40  M des Speichers
-   dc0: a6 43 88 93 85 95  6 2b  d4 60    20    1d  1     w.hlen  M-. ....
-   dd0: d4 2b  6 2b d4 60    20     1d  1    d4 2b  6 2b  M   M-. ....M
-   de0: d4 60    20    1d  1     d4 2b  6 2b d4 60    20  M-. ....M   M-.
-   df0:    1d  1    d4 2b                                 ....M ..........
-+   7
-   e00:                                                   ................</pre>
- *  @author Dr. Georg Fischer
- */
-public class IBM6788Converter extends TextConverter {
-    public final static String CVSID = "@(#) $Id: IBM6788Converter.java 566 2010-10-19 16:32:04Z gfis $";
-
-    /** log4j logger (category) */
-    private Logger log;
-
-    /** debugging switch */
-    private int debug = 1;
-
-    /** EBCDIC maps */
-    private EbcdicMap emap;
-
-    /** values of {@link #state} */
-    private static final int IN_BRACKET     = 1;
-    private static final int IN_TEXT        = 2;
-    private static final int IN_DECOR       = 3;
-
-    /** No-args Constructor.
-     */
-    public IBM6788Converter() {
-        super();
-        setFormatCodes("ibm6788,6788,wheelwriter");
-        setDescription("IBM 6788 / Wheelwriter");
-        setFileExtensions("txt");
-    } // Constructor
-
-    /** Escape bracket [2b nn ... nn 2b] */
-    private StringBuffer bracket;
-
-    private void dump2BBracket() {
-        StringBuffer text = new StringBuffer(512);
-        text.append("\r\n");
-        String sep = "[";
-        int ind = 0;
-        while (ind < bracket.length()) {
-            text.append(sep);
-            sep = " ";
-            text.append(String.format("%02x", (int) bracket.charAt(ind)));
-            ind ++;
-            if (ind % 16 == 0) {
-                text.append("\r\n");
-            }
-        } // while ind
-        text.append("]");
-        fireComment(text.toString());
-    } // dump2BBracket
-
-    /** Evaluates the d6 file header.
-     *  Assume that a d6 bracket only occurs at the start of the file.
-     *  This first d6 header bracket is always 48 bytes long.
-     *  It has the file's number ("nn=")
-     *  followed by an LSB word for the file length (-0x48).
-     *  At offset +8, there starts a
-     *  variable list of words (for margins, tab stops?) which
-     *  can be zero, and which are terminated by zeroes.
-     *  <pre>
-     * [2b d6 40 f1 7e c9 08 80 48 00 84 00 54 03 84 00
-     *  54 03 74 01 64 02 00 00 00 00 00 00 00 00 00 00
-     *  00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
-     *  00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
-     *  00 00 00 00 00 00 d6 2b]
-     *  </pre>
-     */
-    private void evalD6FileHeader() {
-        StringBuffer header = new StringBuffer(512);
-        header.append(" head.6788: ");
-        header.append(genRecord.getEBCDICString(2, 3));
-        long fsize = genRecord.getLSB(2);
-        header.append(", size=");
-        header.append(String.format("%5d", fsize + 0x48));
-        int ch7    = genRecord.get1();
-        header.append(", 0x");
-        header.append(String.format("%02x", ch7));
-        int ind = 0;
-        long [] words = new long[0x20];
-        while (ind < 0x1e) { // decode
-            words[ind] = genRecord.getLSB(ind * 2 + 8, 2);
-            ind ++;
-        } // while decode
-        int ffw = ind; // first free in 'words'
-        while (ffw > 0 && words[ffw - 1] == 0) { // ignore trailing zeroes
-            ffw --;
-        } // ignore trailing zeroes
-        header.append(", words=");
-        ind = 0;
-        while (ind < ffw) { // decode
-            header.append(String.format(" %4d", words[ind]));
-            ind ++;
-        } // while decode
-        header.append("\r\n");
-        fireComment(header.toString());
-    } // evalD6FileHeader
-
-    /** Emits an unknown character code pair
-     *  @param ch4 1st character
-     *  @param ch5 2nd character
-     */
-    private void unknownCode(int ch4, int ch5) {
-        content.append(String.format("{code %02x,%02x}", ch4, ch5));
-     } // unknownCode
-
-    /** Evaluates an a6 bracket.
-     *  Accents (2nd byte) are overprinted on EBCDIC characters (1st byte).
-     *  With 08, some microstepping is achieved?
-     *
-     *  <pre>
-     *  [2b a6 09 00 xx yy 09 a6 2b]        undecorated
-     *  [2b a6 0b 00 22 d6 22 be 0b a6 2b]  Oacute, bold and underlined
-     *    0  1  2  3  4  5  6  7  8  9 10 11
-     *  </pre>
-     */
-    private void evalA6Code() {
-        int ch4 = bracket.charAt(4); // EBCDIC accent
-        int ch5 = bracket.charAt(5); // EBCDIC character to be accented
-        if (bracket.length() > 9) { // when decorated, repeat the code form processInput (not exact)
-            ch4 = bracket.charAt(5);
-            ch5 = bracket.charAt(7);
-            state = IN_DECOR;
-            switch ((int) bracket.charAt(4)) {
-                case 0x20:
-                    put_underline (ptx_on);
-                    break;
-                case 0x21:
-                    put_bold      (ptx_on);
-                    break;
-                case 0x22:
-                    put_bold      (ptx_on);
-                    put_underline (ptx_on);
-                    break;
-                default:
-                    state = IN_TEXT; // unknown decoration
-                    break;
-            } // switch (4)
-        } // decorated
-
-        switch (ch5) {
-            case 0x08: // ignore, micro stepping ???
-                if (ch4 >= 0x20 && ch4 <= 0x2f) {
-                } else {
-                     unknownCode(ch4, ch5);
-                }
-                break;
-            case 0x5f: // circumflex over EBCDIC
-                switch(ch4) {
-                    case 0x81: put_char_code('â', 437); break; // acircum
-                    case 0xc1: put_char_code('Â', 437); break; // Acircum
-                    case 0x85: put_char_code('ê', 437); break; // ecircum
-                    case 0xc5: put_char_code('Ê', 437); break; // Ecircum
-                    case 0x89: put_char_code('î', 437); break; // icircum
-                    case 0xc9: put_char_code('Î', 437); break; // Icircum
-                    case 0x96: put_char_code('ô', 437); break; // ocircum
-                    case 0xd6: put_char_code('Ô', 437); break; // Ocircum
-                    case 0xa4: put_char_code('û', 437); break; // ucircum
-                    case 0xe4: put_char_code('Û', 437); break; // Ucircum
-                    default:   unknownCode(ch4, ch5);   break;
-                }
-                break;
-            case 0x61: // "/" over EBCDIC
-                switch(ch4) {
-                    case 0x96: put_char_code('ø', 437); break; // o/
-                    case 0xd6: put_char_code('Ø', 437); break; // O/
-                    default:   unknownCode(ch4, ch5);   break;
-                }
-                break;
-            case 0x79: // grave over EBCDIC
-                switch(ch4) {
-                    case 0x81: put_char_code('à', 437); break; // agrave
-                    case 0xc1: put_char_code('À', 437); break; // Agrave
-                    case 0x85: put_char_code('è', 437); break; // egrave
-                    case 0xc5: put_char_code('È', 437); break; // Egrave
-                    case 0x89: put_char_code('ì', 437); break; // igrave
-                    case 0xc9: put_char_code('Ì', 437); break; // Ugrave
-                    case 0x96: put_char_code('ò', 437); break; // ograve
-                    case 0xd6: put_char_code('Ò', 437); break; // Ograve
-                    case 0xa4: put_char_code('ù', 437); break; // ugrave
-                    case 0xe4: put_char_code('Ù', 437); break; // Ugrave
-                    default:   unknownCode(ch4, ch5);   break;
-                }
-                break;
-            // 91 would be degree/ring
-            case 0x9d: // cedilla under EBCDIC
-                switch(ch4) {
-                    case 0x83: put_char_code('ç', 437); break; // cedil
-                    case 0xc3: put_char_code('Ç', 437); break; // Cedil
-                    default:   unknownCode(ch4, ch5);   break;
-                }
-                break;
-            // bc would be macron (overline)
-            case 0xbd: // diaresis over EBCDIC
-                switch(ch4) {
-                    case 0x81: put_char_code('ä', 437); break; // ae
-                    case 0xc1: put_char_code('Ä', 437); break; // Ae
-                    case 0x85: put_char_code('ë', 437); break; // ediaresis
-                    case 0xc5: put_char_code('Ë', 437); break; // Ediaresis
-                    case 0x89: put_char_code('ï', 437); break; // idiaresis
-                    case 0xc9: put_char_code('Ï', 437); break; // Idiaresis
-                    case 0x96: put_char_code('ö', 437); break; // oe
-                    case 0xd6: put_char_code('Ö', 437); break; // Oe
-                    case 0xa4: put_char_code('ü', 437); break; // ue
-                    case 0xe4: put_char_code('Ü', 437); break; // Ue
-                    default:   unknownCode(ch4, ch5);   break;
-                }
-                break;
-            case 0xbe: // acute over EBCDIC
-                switch(ch4) {
-                    case 0x81: put_char_code('á', 437); break; // aacute
-                    case 0xc1: put_char_code('Á', 437); break; // Aacute
-                    case 0x85: put_char_code('é', 437); break; // eacute
-                    case 0xc5: put_char_code('É', 437); break; // Eacute
-                    case 0x89: put_char_code('í', 437); break; // iacute
-                    case 0xc9: put_char_code('Í', 437); break; // Iacute
-                    case 0x96: put_char_code('ó', 437); break; // oacute
-                    case 0xd6: put_char_code('Ó', 437); break; // Oacute
-                    case 0xa4: put_char_code('ú', 437); break; // uacute
-                    case 0xe4: put_char_code('Ú', 437); break; // Uacute
-                    default:   unknownCode(ch4, ch5);   break;
-                }
-                break;
-            } // switch(ch5)
-        } // evalA6Code
-
-    /** Evaluates a a7 bracket (title ?) at the beginning of the file.
-     *  The next byte is the length ("19" below) of the whole bracket,
-     *  and that length is repeated at the end.
-     *  In between, there are EBCDIC characters.
-     *  <pre>
-     *  [2b a7 19 40 c1 d9 d8 e4 c9 e3 c5 c3 4b 40 c1 e2
-     *   e3 e4 d9 c9 c1 e2 19 a7 2b]
-     *  </pre>
-     */
-    private void evalA7Title() {
-        StringBuffer text = new StringBuffer(512);
-        text.append(" title.6788");
-        int len = bracket.charAt(2);
-        text.append(String.format("[%d]: ", len));
-        int ind = 3;
-        while (ind < len - 3) {
-            text.append(emap.ebc_asc[bracket.charAt(ind)]);
-            ind ++;
-        } // while ind
-        text.append("\r\n");
-        fireComment(text.toString());
-    } // evalA7Title
-
-    /** Evaluates an escape sequence and emits the appropriate formatting.
-     *  Currently recognized are:
-     *  <pre>
-     *  [2b a6 09 00 xx yy 09 a6 2b]        overprinting
-     *  [2b a7 15 40 7f d9 85 89 a2 85 82 85 99 89 83 88
-     *   a3 7f 15 a7 2b]                    title text in quotes? 7f = \"
-     *  [2b c2 e0 01 c2 2b]                 tab, 2nd word is varying c2=B
-     *  [2b c3 80 01 c3 2b]                 decimal tab? c3=C
-     *  [2b d4 84 00 20 00 33 13 00 d4 2b]  put_line(ptx.soft)
-     *  [2b d5 6c 00 00 00 d5 2b]           ???
-     *  [2b d6 ...                          file header with margin and tab settings ???
-     *  </pre>
-     */
-    private void evalBracket () {
-        int code = bracket.charAt(1);
-        switch (code) {
-            case 0xa6:
-                evalA6Code(); // special character codes
-                break;
-            case 0xa7:
-                evalA7Title();
-                dump2BBracket();
-                fireLineBreak();
-                break;
-            case 0xc2: // left ???
-            case 0xc3: // right or decimal ???
-                // put_tab();
-                break;
-            case 0xd4:
-                put_line(ptx_soft);
-                break;
-            case 0xd6:
-                evalD6FileHeader(); // assume that it occurs only once at the beginning of the file
-                dump2BBracket();
-                fireLineBreak();
-                break;
-            default:
-                dump2BBracket();
-                break;
-        } // switch (1)
-        bracket.setLength(0);
-    } // evalBracket
-
-    /** Position (count) of current printable character */
-    protected int curPos;
-    /** Whether bold is active */
-    private int bold_state;
-    /** Whether underline is active */
-    private int ul_state;
-
-    /** Initializes the (quasi-constant) global structures and variables.
-     *  This method is called by the {@link org.teherba.xtrans.XtransFactory} once for the
-     *  selected generator and serializer.
-     */
-    public void initialize() {
-        super.initialize();
-        log        = LogManager.getLogger(IBM6788Converter.class.getName());
-        emap       = new EbcdicMap();
-        bracket    = new StringBuffer(512);
-    } // initialize
-
-
-    /** Processes a portion of the input file
-     *  @param start offset where to start/resume scanning
-     *  @param trap  offset behind last character to be processed
-     *  @return offset behind last character which was processed
-     */
-    protected int processInput(int start, int trap) {
-        char ch; // current character to be processed
-        boolean readOff; // whether current character should be consumed
-        int ibuf = start;
-        while (ibuf < trap) { // process all characters
-            readOff = true;
-            ch = genRecord.get1(ibuf); // (char) (byteBuffer[ibuf] & 0xff);
-            switch (state) {
-
-                case IN_TEXT:
-                    switch (ch) {
-                        case 0x00:
-                            /* ignore nil */
-                            break;
-                        case 0x06:
-                            put_line      (ptx_paragraph);
-                            break;
-                        case 0x07:
-                            put_page      (ptx_hard);
-                            break;
-                        case 0x15:
-                            put_line      (ptx_hard);
-                            break;
-                        case 0x20:
-                            put_underline (ptx_on);
-                            break;
-                        case 0x21:
-                            put_bold      (ptx_on);
-                            break;
-                        case 0x22:
-                            put_bold      (ptx_on);
-                            put_underline (ptx_on);
-                            break;
-                        case 0x28:
-                            put_space     (ptx_hard);
-                            break;
-                        case 0x29:
-                        case 0x2a:
-                            // ???
-                            break;
-                        case 0x2b: // start of bracket
-                            fireContent();
-                            bracket.setLength(0);
-                            bracket.append(ch);
-                            state = IN_BRACKET;
-                            break;
-                        case 0x2c: // ???
-                        case 0x2d:
-                        case 0x2e: // oth/DOCUM002.txt
-                        case 0x2f:
-                            // for block adjustment ???, together with 2b a6 bracket; bra/DOCUM009.TXT
-                            // put_space     (ptx_soft);
-                            break;
-                        case 0x30:
-                            // put_align(ptx_centred); start centred ???
-                            break;
-                        case 0x31:
-                            // put_align(ptx_left); end   centred ???
-                            break;
-                        case 0x33:
-                            // tra/DOCUM007.txt ???, no line break
-                            break;
-                        case 0x34:
-                            // next is comma for decimal alignment ???; others/DOCUM006.txt
-                            break;
-                        case 0x37:
-                            put_space     (ptx_soft); // ???
-                            break;
-                        default:
-                            ch = emap.ebc_asc[ch];
-                            content.append(ch);
-                            if (ptx.bold > 0 || ptx.underline > 0) {
-                                state = IN_DECOR;
-                            }
-                            break;
-                    } // switch ch
-                    break; // IN_TEXT
-
-                case IN_BRACKET: // during a 2b bracket
-                    bracket.append(ch);
-                    if (ch == 0x2b) { // trailing - end of bracket
-                        state = IN_TEXT; // may be modified in evalBracket for decoration
-                        content.setLength(0);
-                        if (debug > 0) {
-                            // dump2BBracket();
-                        }
-                        evalBracket();
-                    } // trailing
-                    break; // IN_BRACKET
-
-                case IN_DECOR: // when bold or underline was on
-                    state = IN_TEXT;
-                    switch (ch) {
-                        case 0x20:
-                            if (ptx.bold > 0) {
-                                put_bold      (ptx_off);
-                                put_underline (ptx_on);
-                            }
-                            break;
-                        case 0x21:
-                            if (ptx.underline > 0) {
-                                put_bold      (ptx_on);
-                                put_underline (ptx_off);
-                            }
-                            break;
-                        case 0x22:
-                            put_bold      (ptx_on);
-                            put_underline (ptx_on);
-                            break;
-                        default: // switch all decoration off
-                            put_bold     (ptx_off);
-                            put_underline(ptx_off);
-                            readOff = false;
-                            break;
-                    } // switch ch
-                    break; // IN_BRACKET
-
-                default:
-                    log.error("invalid state " + state);
-                    break;
-
-            } // switch state
-            if (readOff) {
-                ibuf ++;
-            }
-        } // while processing
-        return ibuf; // new 'start'
-    } // processInput
-
-    /*===========================*/
-    /* SAX handler for XML input */
-    /*===========================*/
-
-    /** Append a bracket to the saxRecord,
-     *  fill it with zeroes if necessary, and append the tail
-     *  @param bracket array of bytes 2b xx ...
-     *  @param number of 2-byte LSB words to be appended
-     */
-    private void putBracket(byte[] bracket, int[] words) {
-        int ind = 0;
-        while (ind < bracket.length) {
-            saxRecord.set1(bracket[ind]);
-            ind ++;
-        } // while ind bracket
-        ind = 0;
-        while (ind < words.length) {
-            saxRecord.setLSB(2, words[ind]);
-            ind ++;
-        } // while ind bracket
-        saxRecord.set1(bracket[1]);
-        saxRecord.set1(bracket[0]);
-    } // putBracket
-
-    /** Append a bracket to the saxRecord
-     *  @param bracket array of bytes 2b xx ... xx 2b
-     */
-    private void putBracket(byte[] bracket) {
-        int ind = 0;
-        while (ind < bracket.length) {
-            saxRecord.set1(bracket[ind]);
-            ind ++;
-        } // while ind
-    } // putBracket
-
-    /** Upper bound for input buffer */
-    protected static final int MAX_SAX = 65536 * 2;
-
-    /** bracket for line start */
-    private byte[] margins;
-
-    /** Receive notification of the beginning of the document.
-     */
-    public void startDocument() {
-        saxRecord = new ByteRecord(MAX_SAX); // a rather long line
-        elem = "";
-        // write a temporary header, insert file length in endDocument
-/*
-<!-- head.6788:  2=, size= 3574, 0x80, words=   72   96 1008   96 1008  108  144  240  588  720
---><!--
-[2b d6 40 f2 7e ae 0d 80 48 00 60 00 f0 03 60 00
- f0 03 6c 00 90 00 f0 00 4c 02 d0 02 00 00 00 00
- 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
- 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
- 00 00 00 00 00 00 d6 2b]-->
- */
-        putBracket(DatatypeConverter.parseHexBinary(
-                "2b d6 40 f2 7e ae 0d 80"
-                .replaceAll(" ", ""))
-                ,  new int [] { 72, 96, 1008, 96
-                , 1008, 108, 144, 240, 588, 720, 0, 0
-                , 0,0,0,0,0,0,0
-                , 0,0,0,0,0,0,0
-                , 0,0,0,0,0     } );
-        margins = DatatypeConverter.parseHexBinary(
-                "2b d4 60 00 20 00 1d 01 00 d4 2b"
-                .replaceAll(" ", ""));
-        putBracket(margins);
-    } // startDocument
-
-    /** Receive notification of the end of the document.
-     */
-    public void endDocument()
-            throws SAXException {
-        try {
-            int fsize = saxRecord.getPosition();
-            saxRecord.setLSB(5, 2, fsize - 0x48); // replace the size in the header
-            saxRecord.setPosition(fsize);
-            flushLine();
-        } catch (Exception exc) {
-            throw new SAXException(exc.getMessage());
-        }
-    } // endDocument
-
-    /** Receive notification of the start of an element.
-     *  Looks for the element which contains raw lines.
-     *  @param uri The Namespace URI, or the empty string if the element has no Namespace URI
-     *  or if Namespace processing is not being performed.
-     *  @param localName the local name (without prefix),
-     *  or the empty string if namespace processing is not being performed.
-     *  @param qName the qualified name (with prefix),
-     *  or the empty string if qualified names are not available.
-     *  @param attrs the attributes attached to the element.
-     *  If there are no attributes, it shall be an empty Attributes object.
-     *  @throws SAXException for SAX errors
-     */
-    public void startElement(String uri, String localName, String qName, Attributes attrs)
-            throws SAXException {
-        if (namespace.length() > 0 && qName.startsWith(namespace)) {
-            qName = qName.substring(namespace.length());
-        }
-        elem = qName;
-        try {
-            if (false) {
-            } else if (qName.equals(ROOT_TAG        )) {
-                // ignore
-            } else if (qName.equals(BR_TAG          ) ||
-                       qName.equals(P_TAG           )) {
-                saxRecord.setString(2, "\r\n");
-            } else {
-            }
-        } catch (Exception exc) {
-            throw new SAXException(exc.getMessage());
-        }
-    } // startElement
-
-    /** Receive notification of the end of an element.
-     *  Looks for the element which contains raw lines.
-     *  Terminates the line.
-     *  @param uri the Namespace URI, or the empty string if the element has no Namespace URI
-     *  or if Namespace processing is not being performed.
-     *  @param localName the local name (without prefix),
-     *  or the empty string if Namespace processing is not being performed.
-     *  @param qName the qualified name (with prefix),
-     *  or the empty string if qualified names are not available.
-     *  @throws SAXException for SAX errors
-     */
-    public void endElement(String uri, String localName, String qName)
-            throws SAXException {
-        if (namespace.length() > 0 && qName.startsWith(namespace)) {
-            qName = qName.substring(namespace.length());
-        }
-        elem = "";
-        try {
-            if (false) {
-            } else if (qName.equals(ROOT_TAG        )) {
-            } else {
-                // all other elements are empty - ignore their end tags
-            }
-        } catch (Exception exc) {
-            throw new SAXException(exc.getMessage());
-        }
-    } // endElement
-
-    /** Receive notification of character data inside an element.
-     *  @param ch the characters.
-     *  @param start the start position in the character array.
-     *  @param len the number of characters to use from the character array.
-     *  @throws SAXException for SAX errors
-     */
-    public void characters(char[] ch, int start, int len)
-            throws SAXException {
-        char chx = ' ';
-        try {
-            if (true) {
-                int pos = 0;
-                while (pos < len) {
-                    chx = ch[start ++];
-                    switch (chx) {
-                        case 0x0d: // ignore CR
-                            break;
-                        case 0x0a: // newline
-                            saxRecord.set1(0x06);
-                            putBracket(margins);
-                            break;
-                        default:
-                            saxRecord.set1((byte) emap.asc_ebc[chx]);
-                            /* assume that the saxRecord is big enough for the whole file
-                            if (saxRecord.currentPos >= MAX_SAX) {
-                               flushLine();
-                            }
-                            */
-                            break;
-                    } // switch chx
-                    pos ++;
-                } // while pos
-            } // else ignore characters in unknown elements
-        } catch (Exception exc) {
-            System.err.println("IBM6788Converter.characters"
-                    + ", pos = " + saxRecord.getPosition()
-                    + ", chx=" + String.format("%02x", (int) chx)
-                    + ", message=" + exc.getMessage());
-            throw new SAXException(exc.getMessage());
-        }
-    } // characters
-
-} // IBM6788Converter
+import  org.apache.logging.log4j.LogManager;
+
+/** Transformer for the text files of the IBM 6788 typewriter
+ *  on 3.5" DS/DD floppy disks, also known as Wheelwriter 5000
+ *  (in cooperation with Lexmark).
+ *  Text is in EBCDIC, with escape sequences [2b nn ... nn 2b].
+ *  The EBCDIC code page can be chosen with the option
+ *  <em>-codepage</em>, for example "CP273" for German texts;
+ *  the default is {@link EbcdicMap#DEFAULT_CODEPAGE}.
+ *  The files are all named DOCUMnnn.TXT, nnn = 001, 002 ...
+ *  <p>
+ *  <ul>
+ *  <li>4 sets of margins for pitch 10, 12, PS, 15</li>
+ *  <li>4 sets of tab settings dito</li>
+ *  <li>Line spacing 1, 1.5, 2, 3</li>
+ *  </ul>
+ *
+ *  Example dump of a 6788 file:
+<pre>
+    dump -e ../client.../Originale/d03/DOCUM048
+
+              " 2"     fsize 80  word0 word1 word2 word3
++   0
+     0: 2b d6 40 f2 7e ae  d 80  48    60    f0  3 60      O 2= . ..-.0.-.
+    10: f0  3 6c    90    f0     4c  2 d0  2              0.%. .0.<.}.....
+    20:                                                   ................ ====
+    40:                   d6 2b  2b d4 60       10 1d  1  ......O  M-.....
+    50: 60 d4 2b 40 40 40 40 40  40 40 40 40 40 40 40 40  -M
+    60: 40 40 40 40 40 40 40 40  40 40 40 40 22 e3 20 40               T
+    70: 20 40 22 c5 20 40 20 40  22 e2 20 40 20 40 22 e3     E     S     T
+    80: 28  6 2b d4 60    20     1d  1    d4 2b 28  6 2b     M-. ....M
+    90: d4 60    20    1d  1     d4 2b 40 40 40 40 40 40  M-. ....M
+    a0: 40 40 40 40 40 40 40 40  40 40 40 40 40 40 40 40
+    b0: 40 40 40 40 40 40 84 85  99 28  6 2b d4 60    20        der   M-.
+    c0:    1d  1    d4 2b 28 28  28 28 28 28 28 28  6 2b  ....M
+    d0: d4 60    20    1d  1     d4 2b 40 40 40 40 40 40  M-. ....M
+    e0: 40 40 40 40 40 40 40 40  c9 40 c2 40 d4 40 60 40          I B M -
+    f0: c2 89 93 84 a2 83 88 89  99 94 a2 83 88 99 85 89  Bildschirmschrei
+
+   100: 82 94 81 a2 83 88 89 95  85 28 28 28 28 28 28 28  bmaschine
+   110: 28 28 28 28 28 28 28 28  28 28 28 28 28 28 28 28
+   120: 28 28 28  6 2b d4 60     20    1d  1    d4 2b 60       M-. ....M -
+   130: 60 60 60 60 60 60 60 60  60 60 60 60 60 60 60 60  ---------------- ====
+   170: 60 60 28  6 2b d4 60     20    1d  1    d4 2b 28  --   M-. ....M
+   180: 28 28 28 28 28 28 28  6  2b d4 60    20    1d  1           M-. ...
+   190:    d4 2b 28  6 2b d4 60     20    1d  1    d4 2b  .M    M-. ....M
+   1a0: d4 89 a3 40 84 85 99 40  e3 81 a2 a3 85 40 21 d4  Mit der Taste  M
+   1b0: 21 85 21 95 21 dc 40 92  81 95 95 40 86 96 93 87   e n . kann folg
+   1c0: 85 95 84 85 a2 40 87 85  a6 43 88 93 a3 40 a6 85  endes gew.hlt we
+   1d0: 99 84 85 95 40 7a  6 2b  d4 60    20    1d  1     rden :  M-. ....
+   1e0: d4 2b 28 28 28 28 28 28  28 28 28 28 28 28 28 28  M
+   1f0: 28 28 28 28 28  6 2b d4  60    20    1d  1    d4         M-. ....M
+...
+   db0: d4 2b 84 85 a2 40 e2 97  85 89 83 88 85 99 a2 40  M des Speichers
+   dc0: a6 43 88 93 85 95  6 2b  d4 60    20    1d  1     w.hlen  M-. ....
+   dd0: d4 2b  6 2b d4 60    20     1d  1    d4 2b  6 2b  M   M-. ....M
+   de0: d4 60    20    1d  1     d4 2b  6 2b d4 60    20  M-. ....M   M-.
+   df0:    1d  1    d4 2b                                 ....M ..........
++   7
+   e00:                                                   ................</pre>
+ *  @author Dr. Georg Fischer
+ */
+public class IBM6788Converter extends TextConverter {
+    public final static String CVSID = "@(#) $Id: IBM6788Converter.java 566 2010-10-19 16:32:04Z gfis $";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** debugging switch */
+    private int debug = 1;
+
+    /** Name of the option for the EBCDIC code page */
+    public static final String CODEPAGE_OPTION = "codepage";
+
+    /** EBCDIC maps for the current conversion, shared with other instances */
+    private EbcdicMap emap;
+
+    /** composition of accents and base characters, shared by all instances */
+    private static final AccentMap accents = AccentMap.getInstance();
+    /** counters for brackets, unknown codes and invalid states */
+    private static final Metrics metrics = Metrics.getInstance();
+    /** brackets by code, counted by a chunk decoder, or null if they are counted in {@link #metrics} directly */
+    private int[] chunkBrackets;
+    /** unknown codes, counted by a chunk decoder */
+    private int chunkUnknownCodes;
+    /** invalid states, counted by a chunk decoder */
+    private int chunkInvalidStates;
+
+    /** values of {@link #state} */
+    private static final int IN_BRACKET     = 1;
+    private static final int IN_TEXT        = 2;
+    private static final int IN_DECOR       = 3;
+
+    /** No-args Constructor.
+     */
+    public IBM6788Converter() {
+        super();
+        setFormatCodes("ibm6788,6788,wheelwriter");
+        setDescription("IBM 6788 / Wheelwriter");
+        setFileExtensions("txt");
+    } // Constructor
+
+    /** Escape bracket [2b nn ... nn 2b] which spans portions of the input */
+    private byte[] bracket;
+    /** Number of bytes in the current bracket, including both 2b */
+    private int bracketLen;
+    /** Whether the current bracket is addressed in place in {@link #genBuffer}, or was copied to {@link #bracket} */
+    private boolean bracketInPlace;
+    /** Offset of the current bracket's leading 2b in {@link #genBuffer} if it is addressed in place */
+    private int bracketStart;
+    /** Position of the current bracket's leading 2b in the input file */
+    private long bracketOffset;
+
+    /** Reusable buffer for comments */
+    private StringBuilder comment;
+
+    /** Emits a comment with a hex dump of the current bracket
+     */
+    private void dump2BBracket() {
+        comment.setLength(0);
+        comment.append("\r\n");
+        char sep = '[';
+        int ind = 0;
+        while (ind < bracketLen) {
+            comment.append(sep);
+            sep = ' ';
+            appendHex(comment, bracketByte(ind));
+            ind ++;
+            if (ind % 16 == 0) {
+                comment.append("\r\n");
+            }
+        } // while ind
+        comment.append(']');
+        emitComment(comment.toString());
+    } // dump2BBracket
+
+    /** Evaluates the d6 file header.
+     *  Assume that a d6 bracket only occurs at the start of the file.
+     *  This first d6 header bracket is always 48 bytes long.
+     *  It has the file's number ("nn=")
+     *  followed by an LSB word for the file length (-0x48).
+     *  At offset +8, there starts a
+     *  variable list of words (for margins, tab stops?) which
+     *  can be zero, and which are terminated by zeroes.
+     *  <pre>
+     * [2b d6 40 f1 7e c9 08 80 48 00 84 00 54 03 84 00
+     *  54 03 74 01 64 02 00 00 00 00 00 00 00 00 00 00
+     *  00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
+     *  00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
+     *  00 00 00 00 00 00 d6 2b]
+     *  </pre>
+     */
+    private void evalD6FileHeader() {
+        comment.setLength(0);
+        comment.append(" head.6788: ");
+        int ind = 2;
+        while (ind < 5) { // file number
+            comment.append(emap.toAscii(bracketByte(ind)));
+            ind ++;
+        } // while number
+        long fsize = bracketLSB(5);
+        comment.append(", size=");
+        appendDecimal(comment, fsize + 0x48, 5);
+        int ch7    = bracketByte(7);
+        comment.append(", 0x");
+        appendHex(comment, ch7);
+        int ffw = 0x1e; // number of words, behind the last non-zero word
+        while (ffw > 0 && bracketLSB((ffw - 1) * 2 + 8) == 0) { // ignore trailing zeroes
+            ffw --;
+        } // ignore trailing zeroes
+        comment.append(", words=");
+        ind = 0;
+        while (ind < ffw) { // decode
+            comment.append(' ');
+            appendDecimal(comment, bracketLSB(ind * 2 + 8), 4);
+            ind ++;
+        } // while decode
+        comment.append("\r\n");
+        emitComment(comment.toString());
+    } // evalD6FileHeader
+
+    /** Gets a byte from the current bracket
+     *  @param pos position in the bracket, 0 = leading 2b
+     *  @return byte value, or 0 if the bracket is shorter
+     */
+    private int bracketByte(int pos) {
+        int result = 0;
+        if (pos < bracketLen) {
+            result = (bracketInPlace ? genBuffer.get(bracketStart + pos) : bracket[pos]) & 0xff;
+        }
+        return result;
+    } // bracketByte
+
+    /** Gets a 2-byte LSB word from the current bracket
+     *  @param pos position of the low byte in the bracket
+     *  @return value of the word
+     */
+    private long bracketLSB(int pos) {
+        return bracketByte(pos) | (bracketByte(pos + 1) << 8);
+    } // bracketLSB
+
+    /** Emits an unknown character code pair
+     *  @param ch4 1st character
+     *  @param ch5 2nd character
+     */
+    private void unknownCode(int ch4, int ch5) {
+        if (chunkBrackets == null) {
+            metrics.countUnknownCode();
+        } else {
+            chunkUnknownCodes ++;
+        }
+        noteUnknownCode(ch4, ch5, bracketOffset);
+        content.append("{code ");
+        appendHex(content, ch4);
+        content.append(',');
+        appendHex(content, ch5);
+        content.append('}');
+     } // unknownCode
+
+    /** Evaluates an a6 bracket.
+     *  Accents (2nd byte) are overprinted on EBCDIC characters (1st byte).
+     *  With 08, some microstepping is achieved?
+     *  The pairs are composed by {@link AccentMap}.
+     *
+     *  <pre>
+     *  [2b a6 09 00 xx yy 09 a6 2b]        undecorated
+     *  [2b a6 0b 00 22 d6 22 be 0b a6 2b]  Oacute, bold and underlined
+     *    0  1  2  3  4  5  6  7  8  9 10 11
+     *  </pre>
+     */
+    private void evalA6Code() {
+        int ch4 = bracketByte(4); // EBCDIC character to be accented
+        int ch5 = bracketByte(5); // accent
+        if (bracketLen > 9) { // when decorated, repeat the code form processInput (not exact)
+            ch4 = bracketByte(5);
+            ch5 = bracketByte(7);
+            state = IN_DECOR;
+            switch (bracketByte(4)) {
+                case 0x20:
+                    put_underline (ptx_on);
+                    break;
+                case 0x21:
+                    put_bold      (ptx_on);
+                    break;
+                case 0x22:
+                    put_bold      (ptx_on);
+                    put_underline (ptx_on);
+                    break;
+                default:
+                    state = IN_TEXT; // unknown decoration
+                    break;
+            } // switch (4)
+        } // decorated
+
+        char code = accents.get(ch5, ch4);
+        if (code == AccentMap.UNKNOWN) {
+            unknownCode(ch4, ch5);
+        } else if (code != AccentMap.IGNORE) {
+            put_char_code(code, 437);
+        }
+    } // evalA6Code
+
+    /** Evaluates a a7 bracket (title ?) at the beginning of the file.
+     *  The next byte is the length ("19" below) of the whole bracket,
+     *  and that length is repeated at the end.
+     *  In between, there are EBCDIC characters.
+     *  <pre>
+     *  [2b a7 19 40 c1 d9 d8 e4 c9 e3 c5 c3 4b 40 c1 e2
+     *   e3 e4 d9 c9 c1 e2 19 a7 2b]
+     *  </pre>
+     */
+    private void evalA7Title() {
+        comment.setLength(0);
+        comment.append(" title.6788");
+        int len = bracketByte(2);
+        comment.append('[');
+        comment.append(len);
+        comment.append("]: ");
+        int ind = 3;
+        while (ind < len - 3 && ind < bracketLen) {
+            comment.append(emap.toAscii(bracketByte(ind)));
+            ind ++;
+        } // while ind
+        comment.append("\r\n");
+        emitComment(comment.toString());
+    } // evalA7Title
+
+    /** Evaluates an escape sequence and emits the appropriate formatting.
+     *  Currently recognized are:
+     *  <pre>
+     *  [2b a6 09 00 xx yy 09 a6 2b]        overprinting
+     *  [2b a7 15 40 7f d9 85 89 a2 85 82 85 99 89 83 88
+     *   a3 7f 15 a7 2b]                    title text in quotes? 7f = \"
+     *  [2b c2 e0 01 c2 2b]                 tab, 2nd word is varying c2=B
+     *  [2b c3 80 01 c3 2b]                 decimal tab? c3=C
+     *  [2b d4 84 00 20 00 33 13 00 d4 2b]  put_line(ptx.soft)
+     *  [2b d5 6c 00 00 00 d5 2b]           ???
+     *  [2b d6 ...                          file header with margin and tab settings ???
+     *  </pre>
+     */
+    private void evalBracket () {
+        int code = bracketByte(1);
+        if (chunkBrackets == null) {
+            metrics.countBracket(code);
+        } else {
+            chunkBrackets[code] ++;
+        }
+        noteBracket(code, bracketLen, bracketOffset);
+        switch (code) {
+            case 0xa6:
+                evalA6Code(); // special character codes
+                break;
+            case 0xa7:
+                evalA7Title();
+                dump2BBracket();
+                emitLineBreak();
+                break;
+            case 0xc2: // left ???
+            case 0xc3: // right or decimal ???
+                // put_tab();
+                break;
+            case 0xd4:
+                put_line(ptx_soft);
+                break;
+            case 0xd6:
+                evalD6FileHeader(); // assume that it occurs only once at the beginning of the file
+                dump2BBracket();
+                emitLineBreak();
+                break;
+            default:
+                dump2BBracket();
+                break;
+        } // switch (1)
+        bracketLen = 0;
+    } // evalBracket
+
+    /** Notes a bracket which was scanned.
+     *  This method does nothing; it is overwritten by analyzers.
+     *  @param code 2nd byte of the bracket
+     *  @param len number of bytes in the bracket, including both 2b
+     *  @param offset position of the leading 2b in the input file
+     */
+    protected void noteBracket(int code, int len, long offset) {
+    } // noteBracket
+
+    /** Notes an a6 pair which is not known in the {@link AccentMap}.
+     *  This method does nothing; it is overwritten by analyzers.
+     *  @param ch4 EBCDIC character
+     *  @param ch5 accent
+     *  @param offset position of the bracket's leading 2b in the input file
+     */
+    protected void noteUnknownCode(int ch4, int ch5, long offset) {
+    } // noteUnknownCode
+
+    /** Notes a control byte whose meaning is not yet known (29-2f, 30, 31, 33, 34).
+     *  This method does nothing; it is overwritten by analyzers.
+     *  @param ch the control byte
+     *  @param offset position of the byte in the input file
+     */
+    protected void noteControl(int ch, long offset) {
+    } // noteControl
+
+    /** Position (count) of current printable character */
+    protected int curPos;
+    /** Whether bold is active */
+    private int bold_state;
+    /** Whether underline is active */
+    private int ul_state;
+
+    /** Extends the current bracket by a range of the input.
+     *  While the bracket is addressed in place, only its length is increased,
+     *  otherwise the bytes are copied into {@link #bracket}.
+     *  @param start offset in {@link #genBuffer} of the first byte
+     *  @param trap  offset behind the last byte
+     */
+    private void appendBracket(int start, int trap) {
+        int len = trap - start;
+        if (! bracketInPlace) {
+            if (bracketLen + len > bracket.length) { // rare, e.g. for a corrupt file
+                byte[] larger = new byte[Math.max(bracket.length * 2, bracketLen + len)];
+                System.arraycopy(bracket, 0, larger, 0, bracketLen);
+                bracket = larger;
+            }
+            int ind = 0;
+            while (ind < len) {
+                bracket[bracketLen + ind] = genBuffer.get(start + ind);
+                ind ++;
+            } // while ind
+        }
+        bracketLen += len;
+    } // appendBracket
+
+    /** Initializes the (quasi-constant) global structures and variables.
+     *  This method is called by the {@link org.teherba.xtrans.XtransFactory} once for the
+     *  selected generator and serializer.
+     */
+    public void initialize() {
+        super.initialize();
+        log        = LogManager.getLogger(IBM6788Converter.class.getName());
+        emap       = EbcdicMap.getInstance(EbcdicMap.DEFAULT_CODEPAGE);
+        bracket    = new byte[512];
+        bracketLen = 0;
+        comment    = new StringBuilder(512);
+    } // initialize
+
+
+    /** Selects the EBCDIC maps for the code page given by the options
+     */
+    private void selectCodepage() {
+        emap = EbcdicMap.getInstance(getOption(CODEPAGE_OPTION, EbcdicMap.DEFAULT_CODEPAGE));
+    } // selectCodepage
+
+    /** Starts a conversion with the selected code page,
+     *  for {@link #generate} and for the push API
+     */
+    public void begin() {
+        selectCodepage();
+        super.begin();
+    } // begin
+
+    /*==========================*/
+    /* Parallel chunked decoding */
+    /*==========================*/
+
+    /** Files of at least this size are decoded in parallel chunks */
+    protected static final int PARALLEL_MIN = 1 << 20;
+    /** Minimum size of a chunk */
+    protected static final int CHUNK_MIN    = 1 << 18;
+    /** Maximum size of a chunk, which limits the size of the recordings in memory */
+    protected static final int CHUNK_MAX    = 1 << 22;
+    /** Option for the number of threads: 0 = number of cores (default), 1 = sequential */
+    public static final String THREADS_OPTION = "threads";
+
+    /** A chunk of the input file, and the events which were decoded from it */
+    private class Chunk implements Callable<Chunk> {
+        /** offset of the first byte */
+        public int start;
+        /** offset behind the last byte */
+        public int trap;
+        /** whether this is the last chunk of the file */
+        public boolean last;
+        /** bold and underline status which were assumed at the start */
+        public int startBold;
+        public int startUnderline;
+        /** bold and underline status at the end */
+        public int endBold;
+        public int endUnderline;
+        /** state of the tokenizer at the end */
+        public int endState;
+        /** decoded events */
+        public RecordingSink recording;
+        /** brackets by code, unknown codes and invalid states in this chunk */
+        public int[] brackets;
+        public int unknownCodes;
+        public int invalidStates;
+
+        /** Constructor
+         *  @param start offset of the first byte
+         *  @param trap  offset behind the last byte
+         *  @param last whether this is the last chunk of the file
+         *  @param bold bold status at the start
+         *  @param underline underline status at the start
+         */
+        public Chunk(int start, int trap, boolean last, int bold, int underline) {
+            this.start          = start;
+            this.trap           = trap;
+            this.last           = last;
+            this.startBold      = bold;
+            this.startUnderline = underline;
+        } // Constructor
+
+        /** Decodes the chunk with a separate converter.
+         *  The counts for the {@link Metrics} are kept in the chunk, such that
+         *  a chunk which is decoded again is not counted twice.
+         *  @return this chunk
+         */
+        public Chunk call() {
+            IBM6788Converter decoder = new IBM6788Converter();
+            decoder.initialize();
+            decoder.emap          = emap;
+            decoder.genBuffer     = genBuffer.duplicate(); // own position and limit
+            decoder.genOffset     = 0;
+            decoder.state         = IN_TEXT;
+            decoder.ptx.bold      = startBold;
+            decoder.ptx.underline = startUnderline;
+            decoder.chunkBrackets = new int[256];
+            recording = new RecordingSink(trap - start);
+            decoder.setSink(recording);
+            decoder.processInput(start, trap);
+            if (! last && decoder.state == IN_DECOR) {
+                // the next chunk starts with 06 or 2b, which switches the decoration off
+                decoder.put_bold     (ptx_off);
+                decoder.put_underline(ptx_off);
+                decoder.state = IN_TEXT;
+            }
+            decoder.fireContent();
+            endBold      = decoder.ptx.bold;
+            endUnderline = decoder.ptx.underline;
+            endState     = decoder.state;
+            brackets      = decoder.chunkBrackets;
+            unknownCodes  = decoder.chunkUnknownCodes;
+            invalidStates = decoder.chunkInvalidStates;
+            return this;
+        } // call
+    } // inner class Chunk
+
+    /** Finds the offsets where the input file can be split into chunks:
+     *  a paragraph byte 06, or the start of a d4 bracket (margins), outside of all brackets.
+     *  Since every 2b starts or ends a bracket, only their parity must be followed.
+     *  @param mapped the input file
+     *  @param count desired number of chunks
+     *  @return offsets of the chunks, starting with 0 and ending with the size of the file
+     */
+    protected static int[] findSplits(ByteBuffer mapped, int count) {
+        int trap = mapped.limit();
+        int[] splits = new int[count + 1];
+        int nsplit = 0;
+        splits[nsplit ++] = 0;
+        long next = (long) trap / count; // next desired offset
+        boolean inBracket = false;
+        int pos = 0;
+        while (pos < trap && nsplit < count) {
+            byte ch = mapped.get(pos);
+            if (ch == 0x2b) {
+                if (! inBracket && pos >= next && pos + 1 < trap && mapped.get(pos + 1) == (byte) 0xd4) {
+                    splits[nsplit ++] = pos;
+                    next = (long) trap * nsplit / count;
+                }
+                inBracket = ! inBracket;
+            } else if (ch == 0x06 && ! inBracket && pos >= next) {
+                splits[nsplit ++] = pos;
+                next = (long) trap * nsplit / count;
+            }
+            pos ++;
+        } // while pos
+        splits[nsplit ++] = trap;
+        int[] result = new int[nsplit];
+        System.arraycopy(splits, 0, result, 0, nsplit);
+        return result;
+    } // findSplits
+
+    /** Processes the whole memory-mapped input file.
+     *  Large files are split into chunks (see {@link #findSplits}) of at most {@link #CHUNK_MAX} bytes,
+     *  which are decoded on a pool of its own, each into a {@link RecordingSink}, assuming that bold and underline
+     *  are off at the start. The recordings are replayed in their order.
+     *  If a chunk ends with bold or underline on, the next chunk is decoded again
+     *  with that status before it is replayed.
+     *  The counts of a chunk are added to the {@link Metrics} when it is replayed.
+     *  At most one chunk per thread is decoded ahead of the replay, and the next chunk
+     *  is started only when one was replayed, such that only a few recordings are held in memory.
+     *  Subclasses, which may overwrite the hooks, always decode sequentially.
+     *  @param mapped the input file, also in {@link #genBuffer}
+     */
+    protected void processMapped(ByteBuffer mapped) {
+        int threads = 0;
+        try {
+            threads = Integer.parseInt(getOption(THREADS_OPTION, "0"));
+        } catch (NumberFormatException exc) {
+            log.error("invalid option -" + THREADS_OPTION);
+        }
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        int count = Math.min(Math.max(threads, (int) ((mapped.limit() + (long) CHUNK_MAX - 1) / CHUNK_MAX))
+                , mapped.limit() / CHUNK_MIN);
+        int[] splits = null;
+        if (threads > 1 && count > 1 && mapped.limit() >= PARALLEL_MIN && getClass() == IBM6788Converter.class) {
+            splits = findSplits(mapped, count);
+        }
+        if (splits == null || splits.length <= 2) { // sequential
+            super.processMapped(mapped);
+        } else {
+            fireContent();
+            int nchunk = splits.length - 1;
+            List<Chunk> tasks = new ArrayList<Chunk>(nchunk);
+            int ichunk = 0;
+            while (ichunk < nchunk) {
+                tasks.add(new Chunk(splits[ichunk], splits[ichunk + 1], ichunk == nchunk - 1
+                        , ichunk == 0 ? ptx.bold : ptx_off, ichunk == 0 ? ptx.underline : ptx_off));
+                ichunk ++;
+            } // while ichunk
+            int window = Math.min(threads, nchunk);
+            ExecutorService pool = Executors.newFixedThreadPool(window);
+            try {
+                List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>(nchunk);
+                while (futures.size() < window) { // fill the window
+                    futures.add(pool.submit(tasks.get(futures.size())));
+                } // while submitting
+                ichunk = 0;
+                while (ichunk < nchunk) { // stitch in order
+                    Chunk chunk = null;
+                    try {
+                        chunk = futures.get(ichunk).get();
+                    } catch (Exception exc) { // decode it here, with the error in the log
+                        log.error(exc.getMessage(), exc);
+                        chunk = tasks.get(ichunk);
+                        chunk.call();
+                    }
+                    if (chunk.startBold != ptx.bold || chunk.startUnderline != ptx.underline) { // reconcile
+                        chunk = new Chunk(chunk.start, chunk.trap, chunk.last, ptx.bold, ptx.underline);
+                        chunk.call();
+                    }
+                    replay(chunk.recording);
+                    metrics.addCounts(chunk.brackets, chunk.unknownCodes, chunk.invalidStates);
+                    tasks  .set(ichunk, null); // free the recordings early
+                    futures.set(ichunk, null);
+                    ptx.bold      = chunk.endBold;
+                    ptx.underline = chunk.endUnderline;
+                    state         = chunk.endState;
+                    if (futures.size() < nchunk) { // move the window
+                        futures.add(pool.submit(tasks.get(futures.size())));
+                    }
+                    ichunk ++;
+                } // while stitching
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    } // processMapped
+
+    /** Processes a portion of the input file
+     *  @param start offset where to start/resume scanning
+     *  @param trap  offset behind last character to be processed
+     *  @return offset behind last character which was processed
+     */
+    protected int processInput(int start, int trap) {
+        char ch; // current character to be processed
+        boolean readOff; // whether current character should be consumed
+        int ibuf = start;
+        while (ibuf < trap) { // process all characters
+            readOff = true;
+            ch = (char) (genBuffer.get(ibuf) & 0xff);
+            switch (state) {
+
+                case IN_TEXT:
+                    switch (ch) {
+                        case 0x00:
+                            /* ignore nil */
+                            break;
+                        case 0x06:
+                            put_line      (ptx_paragraph);
+                            break;
+                        case 0x07:
+                            put_page      (ptx_hard);
+                            break;
+                        case 0x15:
+                            put_line      (ptx_hard);
+                            break;
+                        case 0x20:
+                            put_underline (ptx_on);
+                            break;
+                        case 0x21:
+                            put_bold      (ptx_on);
+                            break;
+                        case 0x22:
+                            put_bold      (ptx_on);
+                            put_underline (ptx_on);
+                            break;
+                        case 0x28:
+                            put_space     (ptx_hard);
+                            break;
+                        case 0x29:
+                        case 0x2a:
+                            // ???
+                            noteControl(ch, genOffset + ibuf);
+                            break;
+                        case 0x2b: // start of bracket
+                            fireContent();
+                            bracketOffset  = genOffset + ibuf;
+                            bracketStart   = ibuf;
+                            bracketLen     = 1;
+                            bracketInPlace = true;
+                            state = IN_BRACKET;
+                            break;
+                        case 0x2c: // ???
+                        case 0x2d:
+                        case 0x2e: // oth/DOCUM002.txt
+                        case 0x2f:
+                            // for block adjustment ???, together with 2b a6 bracket; bra/DOCUM009.TXT
+                            // put_space     (ptx_soft);
+                            noteControl(ch, genOffset + ibuf);
+                            break;
+                        case 0x30:
+                            // put_align(ptx_centred); start centred ???
+                            noteControl(ch, genOffset + ibuf);
+                            break;
+                        case 0x31:
+                            // put_align(ptx_left); end   centred ???
+                            noteControl(ch, genOffset + ibuf);
+                            break;
+                        case 0x33:
+                            // tra/DOCUM007.txt ???, no line break
+                            noteControl(ch, genOffset + ibuf);
+                            break;
+                        case 0x34:
+                            // next is comma for decimal alignment ???; others/DOCUM006.txt
+                            noteControl(ch, genOffset + ibuf);
+                            break;
+                        case 0x37:
+                            put_space     (ptx_soft); // ???
+                            break;
+                        default:
+                            ch = emap.toAscii(ch);
+                            content.append(ch);
+                            if (ptx.bold > 0 || ptx.underline > 0) {
+                                state = IN_DECOR;
+                            }
+                            break;
+                    } // switch ch
+                    break; // IN_TEXT
+
+                case IN_BRACKET: // during a 2b bracket
+                    int end = ibuf; // look for the trailing 2b
+                    while (end < trap && genBuffer.get(end) != 0x2b) {
+                        end ++;
+                    } // while end
+                    if (end < trap) { // trailing - end of bracket
+                        appendBracket(ibuf, end + 1);
+                        ibuf = end;
+                        state = IN_TEXT; // may be modified in evalBracket for decoration
+                        content.setLength(0);
+                        if (debug > 0) {
+                            // dump2BBracket();
+                        }
+                        evalBracket();
+                    } else { // bracket continues in the next portion
+                        appendBracket(ibuf, trap);
+                        ibuf = trap - 1;
+                    }
+                    break; // IN_BRACKET
+
+                case IN_DECOR: // when bold or underline was on
+                    state = IN_TEXT;
+                    switch (ch) {
+                        case 0x20:
+                            if (ptx.bold > 0) {
+                                put_bold      (ptx_off);
+                                put_underline (ptx_on);
+                            }
+                            break;
+                        case 0x21:
+                            if (ptx.underline > 0) {
+                                put_bold      (ptx_on);
+                                put_underline (ptx_off);
+                            }
+                            break;
+                        case 0x22:
+                            put_bold      (ptx_on);
+                            put_underline (ptx_on);
+                            break;
+                        default: // switch all decoration off
+                            put_bold     (ptx_off);
+                            put_underline(ptx_off);
+                            readOff = false;
+                            break;
+                    } // switch ch
+                    break; // IN_BRACKET
+
+                default:
+                    if (chunkBrackets == null) {
+                        metrics.countInvalidState();
+                    } else {
+                        chunkInvalidStates ++;
+                    }
+                    log.error("invalid state " + state);
+                    break;
+
+            } // switch state
+            if (readOff) {
+                ibuf ++;
+            }
+        } // while processing
+        if (state == IN_BRACKET && bracketInPlace) { // the next portion will overwrite the buffer
+            int from = bracketStart;
+            int len  = bracketLen;
+            bracketInPlace = false;
+            bracketLen     = 0;
+            appendBracket(from, from + len);
+        }
+        return ibuf; // new 'start'
+    } // processInput
+
+    /*===========================*/
+    /* SAX handler for XML input */
+    /*===========================*/
+
+    /** Append a bracket to the saxRecord,
+     *  fill it with zeroes if necessary, and append the tail
+     *  @param bracket array of bytes 2b xx ...
+     *  @param number of 2-byte LSB words to be appended
+     */
+    private void putBracket(byte[] bracket, int[] words) {
+        int ind = 0;
+        while (ind < bracket.length) {
+            saxRecord.set1(bracket[ind]);
+            ind ++;
+        } // while ind bracket
+        ind = 0;
+        while (ind < words.length) {
+            saxRecord.setLSB(2, words[ind]);
+            ind ++;
+        } // while ind bracket
+        saxRecord.set1(bracket[1]);
+        saxRecord.set1(bracket[0]);
+    } // putBracket
+
+    /** Append a bracket to the saxRecord
+     *  @param bracket array of bytes 2b xx ... xx 2b
+     */
+    private void putBracket(byte[] bracket) {
+        int ind = 0;
+        while (ind < bracket.length) {
+            saxRecord.set1(bracket[ind]);
+            ind ++;
+        } // while ind
+    } // putBracket
+
+    /** Length of the d6 file header bracket */
+    protected static final int HEADER_LEN = 0x48;
+    /** Offset of the 2-byte LSB file size (-0x48) in the header */
+    protected static final int SIZE_POS   = 5;
+    /** The saxRecord is flushed when it has less free bytes than this, for example for the margins */
+    protected static final int SAX_SLACK  = 0x20;
+    /** Upper bound for the output held in memory on non-seekable streams, before it is spilled to a file */
+    protected static final int MAX_HELD   = 65536;
+
+    /** buffer for the output */
+    private ByteRecord saxRecord;
+
+    /** bracket for line start */
+    private byte[] margins;
+
+    /** Channel of the output file if the header can be patched in place, or null */
+    private FileChannel outChannel;
+    /** Position of the header in {@link #outChannel} */
+    private long headerPos;
+    /** Output which is held back until the header is patched, if {@link #outChannel} is null */
+    private HeldOutput held;
+    /** Reusable instance for {@link #held} */
+    private HeldOutput heldOutput;
+    /** Number of bytes written so far */
+    private long written;
+
+    /** Output stream for non-seekable outputs, for example a servlet response.
+     *  Up to {@link #MAX_HELD} bytes are held in memory,
+     *  and the remainder (except the header) is spilled to a temporary file.
+     */
+    private class HeldOutput extends OutputStream {
+        /** bytes held in memory, starting with the header */
+        private byte[] memory;
+        /** number of bytes in {@link #memory} */
+        private int memLen;
+        /** temporary file, or null as long as all bytes fit into {@link #memory} */
+        private File spillFile;
+        /** stream to {@link #spillFile} */
+        private OutputStream spill;
+        /** Reusable buffer for {@link #write(int)} when the memory must grow or is spilled */
+        private final byte[] single = new byte[1];
+
+        /** Constructor
+         */
+        public HeldOutput() {
+            memory    = new byte[MAX_SAX];
+            reset();
+        } // Constructor
+
+        /** Prepares for the next document, and removes the spill file of a previous one
+         */
+        public void reset() {
+            discard();
+            memLen    = 0;
+        } // reset
+
+        /** Closes and deletes the spill file, if any
+         */
+        public void discard() {
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (IOException exc) {
+                    log.debug(exc.getMessage(), exc);
+                }
+                spill = null;
+            }
+            if (spillFile != null) {
+                if (! spillFile.delete()) {
+                    log.warn("cannot delete " + spillFile.getPath());
+                }
+                spillFile = null;
+            }
+        } // discard
+
+        /** Writes one byte
+         *  @param b the byte
+         *  @throws IOException if the spill file cannot be written
+         */
+        public void write(int b) throws IOException {
+            if (spill == null && memLen < memory.length) {
+                memory[memLen ++] = (byte) b;
+            } else if (spill != null) {
+                spill.write(b);
+            } else { // grow or start to spill
+                single[0] = (byte) b;
+                write(single, 0, 1);
+            }
+        } // write(int)
+
+        /** Writes a range of bytes
+         *  @param buffer source
+         *  @param off offset of the first byte
+         *  @param len number of bytes
+         *  @throws IOException if the spill file cannot be written
+         */
+        public void write(byte[] buffer, int off, int len) throws IOException {
+            while (spill == null && memLen + len > memory.length && memory.length < MAX_HELD) { // grow
+                byte[] larger = new byte[Math.min(memory.length * 2, MAX_HELD)];
+                System.arraycopy(memory, 0, larger, 0, memLen);
+                memory = larger;
+            } // while growing
+            if (spill == null && memLen + len > memory.length) { // start to spill, but keep the header
+                spillFile = File.createTempFile("putrans", ".6788");
+                spill     = new FileOutputStream(spillFile);
+                spill.write(memory, HEADER_LEN, memLen - HEADER_LEN);
+                memLen    = HEADER_LEN;
+            }
+            if (spill == null) {
+                System.arraycopy(buffer, off, memory, memLen, len);
+                memLen += len;
+            } else {
+                spill.write(buffer, off, len);
+            }
+        } // write
+
+        /** Replaces a byte which is held in memory
+         *  @param pos position in the output
+         *  @param b new value
+         */
+        public void patch(int pos, int b) {
+            memory[pos] = (byte) b;
+        } // patch
+
+        /** Writes all held bytes, and removes the spill file
+         *  @param target where to write
+         *  @throws IOException if the target or the spill file cannot be accessed
+         */
+        public void writeTo(OutputStream target) throws IOException {
+            try {
+                target.write(memory, 0, memLen);
+                if (spill != null) {
+                    spill.close();
+                    spill = null;
+                    InputStream in = new FileInputStream(spillFile);
+                    try {
+                        int len;
+                        while ((len = in.read(memory)) >= 0) {
+                            target.write(memory, 0, len);
+                        } // while copying
+                    } finally {
+                        in.close();
+                    }
+                }
+            } finally {
+                discard();
+            }
+        } // writeTo
+    } // inner class HeldOutput
+
+    /** Writes the saxRecord to the output, or to the held stream
+     */
+    public void flushLine() {
+        int len = saxRecord.getPosition();
+        try {
+            saxRecord.write(held != null ? held : byteWriter, len);
+            written += len;
+            saxRecord.setPosition(0);
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+    } // flushLine
+
+    /** Tells whether bytes can be patched at a position of the output file.
+     *  The positional write of a channel is unspecified for a stream which
+     *  was opened for append, and it appends in practice. This is detected by
+     *  a probe: the first byte of the header (which is overwritten by the stream
+     *  afterwards) is written at the position; a normal channel keeps its position,
+     *  while an appending channel moves it, and the probe is truncated again.
+     *  @param channel channel of the output file
+     *  @param pos position of the header
+     *  @return whether the header can be patched in place
+     *  @throws IOException if the channel cannot be accessed
+     */
+    private static boolean isPatchable(FileChannel channel, long pos) throws IOException {
+        long size = channel.size();
+        channel.write(ByteBuffer.wrap(new byte[] { 0x2b }), pos);
+        boolean result = channel.position() == pos;
+        if (! result) { // the probe was appended
+            channel.truncate(size);
+        }
+        return result;
+    } // isPatchable
+
+    /** Receive notification of the beginning of the document.
+     *  The output is written in portions. If the byte writer is a file,
+     *  the size in the header is patched in place at the end;
+     *  otherwise the output is held back until then.
+     */
+    public void startDocument() {
+        if (saxRecord == null) {
+            saxRecord = new ByteRecord(MAX_SAX);
+        }
+        saxRecord.setPosition(0);
+        selectCodepage();
+        elem = "";
+        written    = 0;
+        held       = null;
+        outChannel = null;
+        if (byteWriter instanceof FileOutputStream) {
+            try {
+                outChannel = ((FileOutputStream) byteWriter).getChannel();
+                headerPos  = outChannel.position();
+                if (! isPatchable(outChannel, headerPos)) { // opened for append
+                    outChannel = null;
+                }
+            } catch (IOException exc) { // not seekable - hold the output
+                log.debug(exc.getMessage(), exc);
+                outChannel = null;
+            }
+        }
+        if (heldOutput != null) { // remove the spill file of a failed previous document
+            heldOutput.reset();
+        }
+        if (outChannel == null) {
+            if (heldOutput == null) {
+                heldOutput = new HeldOutput();
+            }
+            held = heldOutput;
+        }
+        // write a temporary header, insert file length in endDocument
+/*
+<!-- head.6788:  2=, size= 3574, 0x80, words=   72   96 1008   96 1008  108  144  240  588  720
+--><!--
+[2b d6 40 f2 7e ae 0d 80 48 00 60 00 f0 03 60 00
+ f0 03 6c 00 90 00 f0 00 4c 02 d0 02 00 00 00 00
+ 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
+ 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
+ 00 00 00 00 00 00 d6 2b]-->
+ */
+        putBracket(DatatypeConverter.parseHexBinary(
+                "2b d6 40 f2 7e ae 0d 80"
+                .replaceAll(" ", ""))
+                ,  new int [] { 72, 96, 1008, 96
+                , 1008, 108, 144, 240, 588, 720, 0, 0
+                , 0,0,0,0,0,0,0
+                , 0,0,0,0,0,0,0
+                , 0,0,0,0,0     } );
+        margins = DatatypeConverter.parseHexBinary(
+                "2b d4 60 00 20 00 1d 01 00 d4 2b"
+                .replaceAll(" ", ""));
+        putBracket(margins);
+    } // startDocument
+
+    /** Receive notification of the end of the document.
+     */
+    public void endDocument()
+            throws SAXException {
+        try {
+            flushLine();
+            long fsize = written - HEADER_LEN; // replace the size in the header
+            if (fsize > 0xffff) {
+                log.warn("document size " + fsize + " exceeds the 2-byte size field of the 6788 header, truncated to "
+                        + (fsize & 0xffff));
+            }
+            if (held != null) {
+                held.patch(SIZE_POS    , (int)  fsize       & 0xff);
+                held.patch(SIZE_POS + 1, (int) (fsize >> 8) & 0xff);
+                held.writeTo(byteWriter);
+                held = null;
+            } else {
+                byteWriter.flush();
+                outChannel.write(ByteBuffer.wrap(new byte[] { (byte) fsize, (byte) (fsize >> 8) })
+                        , headerPos + SIZE_POS);
+                outChannel = null;
+            }
+        } catch (Exception exc) {
+            throw new SAXException(exc.getMessage());
+        } finally {
+            if (held != null) { // failed before it was written
+                held.discard();
+                held = null;
+            }
+        }
+    } // endDocument
+
+    /** Closes the output, and removes the spill file
+     *  if the document was not terminated by {@link #endDocument}
+     */
+    public void closeAll() {
+        if (heldOutput != null) {
+            heldOutput.discard();
+        }
+        held = null;
+        super.closeAll();
+    } // closeAll
+
+    /** Receive notification of the start of an element.
+     *  Looks for the element which contains raw lines.
+     *  @param uri The Namespace URI, or the empty string if the element has no Namespace URI
+     *  or if Namespace processing is not being performed.
+     *  @param localName the local name (without prefix),
+     *  or the empty string if namespace processing is not being performed.
+     *  @param qName the qualified name (with prefix),
+     *  or the empty string if qualified names are not available.
+     *  @param attrs the attributes attached to the element.
+     *  If there are no attributes, it shall be an empty Attributes object.
+     *  @throws SAXException for SAX errors
+     */
+    public void startElement(String uri, String localName, String qName, Attributes attrs)
+            throws SAXException {
+        if (namespace.length() > 0 && qName.startsWith(namespace)) {
+            qName = qName.substring(namespace.length());
+        }
+        elem = qName;
+        try {
+            if (false) {
+            } else if (qName.equals(ROOT_TAG        )) {
+                // ignore
+            } else if (qName.equals(BR_TAG          ) ||
+                       qName.equals(P_TAG           )) {
+                saxRecord.setString(2, "\r\n");
+                if (saxRecord.getPosition() >= MAX_SAX - SAX_SLACK) {
+                    flushLine();
+                }
+            } else {
+            }
+        } catch (Exception exc) {
+            throw new SAXException(exc.getMessage());
+        }
+    } // startElement
+
+    /** Receive notification of the end of an element.
+     *  Looks for the element which contains raw lines.
+     *  Terminates the line.
+     *  @param uri the Namespace URI, or the empty string if the element has no Namespace URI
+     *  or if Namespace processing is not being performed.
+     *  @param localName the local name (without prefix),
+     *  or the empty string if Namespace processing is not being performed.
+     *  @param qName the qualified name (with prefix),
+     *  or the empty string if qualified names are not available.
+     *  @throws SAXException for SAX errors
+     */
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+        if (namespace.length() > 0 && qName.startsWith(namespace)) {
+            qName = qName.substring(namespace.length());
+        }
+        elem = "";
+        try {
+            if (false) {
+            } else if (qName.equals(ROOT_TAG        )) {
+            } else {
+                // all other elements are empty - ignore their end tags
+            }
+        } catch (Exception exc) {
+            throw new SAXException(exc.getMessage());
+        }
+    } // endElement
+
+    /** Receive notification of character data inside an element.
+     *  @param ch the characters.
+     *  @param start the start position in the character array.
+     *  @param len the number of characters to use from the character array.
+     *  @throws SAXException for SAX errors
+     */
+    public void characters(char[] ch, int start, int len)
+            throws SAXException {
+        char chx = ' ';
+        try {
+            if (true) {
+                int pos = 0;
+                while (pos < len) {
+                    chx = ch[start ++];
+                    switch (chx) {
+                        case 0x0d: // ignore CR
+                            break;
+                        case 0x0a: // newline
+                            saxRecord.set1(0x06);
+                            putBracket(margins);
+                            break;
+                        default:
+                            saxRecord.set1((byte) emap.toEbcdic(chx));
+                            break;
+                    } // switch chx
+                    if (saxRecord.getPosition() >= MAX_SAX - SAX_SLACK) {
+                        flushLine();
+                    }
+                    pos ++;
+                } // while pos
+            } // else ignore characters in unknown elements
+        } catch (Exception exc) {
+            System.err.println("IBM6788Converter.characters"
+                    + ", pos = " + saxRecord.getPosition()
+                    + ", chx=" + String.format("%02x", (int) chx)
+                    + ", message=" + exc.getMessage());
+            throw new SAXException(exc.getMessage());
+        }
+    } // characters
+
+} // IBM6788Converter
@@ -0,0 +1,160 @@
+/*  Writes the put_* interface directly as HTML
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.sink;
+import  org.teherba.putrans.sink.TextSink;
+import  java.io.BufferedWriter;
+import  java.io.IOException;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.Writer;
+import  org.xml.sax.Attributes;
+
+/** Writes the document structure as HTML (in XML syntax), byte for byte
+ *  as the SAX route through the XML serializer does:
+ *  with an XML declaration, with the five predefined entities
+ *  for the special characters, and with empty elements collapsed.
+ *  @author Dr. Georg Fischer
+ */
+public class HtmlSink implements TextSink {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** where to write the output */
+    private Writer writer;
+    /** name of the result encoding, for the XML declaration */
+    private String encoding;
+    /** whether the start tag of the current element is not yet closed by "&gt;" */
+    private boolean open;
+
+    /** Constructor
+     *  @param out where to write the output
+     *  @param encoding name of the result encoding, for example "UTF-8"
+     *  @throws IOException if the encoding is not supported
+     */
+    public HtmlSink(OutputStream out, String encoding) throws IOException {
+        this.writer   = new BufferedWriter(new OutputStreamWriter(out, encoding), 16384);
+        this.encoding = encoding;
+        this.open     = false;
+    } // Constructor
+
+    /** Closes the start tag of the current element, if necessary
+     *  @throws IOException if an IO error occurs
+     */
+    private void closeStart() throws IOException {
+        if (open) {
+            writer.write('>');
+            open = false;
+        }
+    } // closeStart
+
+    /** Writes characters, and replaces the special characters by entities.
+     *  Runs of normal characters are written in one call.
+     *  @param ch the characters
+     *  @param start position of the first character in <em>ch</em>
+     *  @param len number of characters
+     *  @throws IOException if an IO error occurs
+     */
+    private void escape(char[] ch, int start, int len) throws IOException {
+        int trap = start + len;
+        int run  = start; // start of the run of normal characters
+        int pos  = start;
+        while (pos < trap) {
+            String entity = null;
+            switch (ch[pos]) {
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '\'':
+                    entity = "&apos;";
+                    break;
+                default:
+                    break;
+            } // switch ch
+            if (entity != null) {
+                writer.write(ch, run, pos - run);
+                writer.write(entity);
+                run = pos + 1;
+            }
+            pos ++;
+        } // while pos
+        writer.write(ch, run, trap - run);
+    } // escape
+
+    public void startDocument() throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"");
+        writer.write(encoding);
+        writer.write("\"?>\r\n");
+    } // startDocument
+
+    public void endDocument() throws IOException {
+        closeStart();
+        writer.write("\r\n");
+        writer.flush();
+    } // endDocument
+
+    public void startElement(String tag, Attributes attrs) throws IOException {
+        closeStart();
+        writer.write('<');
+        writer.write(tag);
+        int iattr = 0;
+        while (iattr < attrs.getLength()) {
+            String value = attrs.getValue(iattr);
+            writer.write(' ');
+            writer.write(attrs.getQName(iattr));
+            writer.write("=\"");
+            escape(value.toCharArray(), 0, value.length());
+            writer.write('"');
+            iattr ++;
+        } // while iattr
+        open = true;
+    } // startElement
+
+    public void endElement(String tag) throws IOException {
+        if (open) { // empty element
+            writer.write("/>");
+            open = false;
+        } else {
+            writer.write("</");
+            writer.write(tag);
+            writer.write('>');
+        }
+    } // endElement
+
+    public void characters(char[] ch, int start, int len) throws IOException {
+        closeStart();
+        escape(ch, start, len);
+    } // characters
+
+    public void comment(String text) throws IOException {
+        closeStart();
+        writer.write("<!--");
+        writer.write(text);
+        writer.write("-->");
+    } // comment
+
+} // HtmlSink
@@ -0,0 +1,96 @@
+/*  Counts the put_* interface, without output
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.sink;
+import  org.teherba.putrans.sink.TextSink;
+import  java.io.IOException;
+import  org.xml.sax.Attributes;
+
+/** Discards the document, and only counts its parts.
+ *  This sink measures the speed of the generator alone, for benchmarks.
+ *  @author Dr. Georg Fischer
+ */
+public class NullSink implements TextSink {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** number of characters */
+    private long chars;
+    /** number of elements */
+    private long elements;
+    /** number of comments */
+    private long comments;
+
+    /** Constructor
+     */
+    public NullSink() {
+        chars    = 0;
+        elements = 0;
+        comments = 0;
+    } // Constructor
+
+    /** Gets the number of characters
+     *  @return characters of the document text
+     */
+    public long getChars() {
+        return chars;
+    } // getChars
+
+    /** Gets the number of elements
+     *  @return started elements
+     */
+    public long getElements() {
+        return elements;
+    } // getElements
+
+    /** Gets the number of comments
+     *  @return comments
+     */
+    public long getComments() {
+        return comments;
+    } // getComments
+
+    public void startDocument() throws IOException {
+    } // startDocument
+
+    public void endDocument() throws IOException {
+    } // endDocument
+
+    public void startElement(String tag, Attributes attrs) throws IOException {
+        elements ++;
+    } // startElement
+
+    public void endElement(String tag) throws IOException {
+    } // endElement
+
+    public void characters(char[] ch, int start, int len) throws IOException {
+        chars += len;
+    } // characters
+
+    public void comment(String text) throws IOException {
+        comments ++;
+    } // comment
+
+    /** Returns the counts
+     *  @return for example "chars=3411, elements=28, comments=4"
+     */
+    public String toString() {
+        return "chars=" + chars + ", elements=" + elements + ", comments=" + comments;
+    } // toString
+
+} // NullSink
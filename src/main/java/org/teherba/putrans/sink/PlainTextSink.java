@@ -0,0 +1,73 @@
+/*  Writes the put_* interface directly as plain text
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.sink;
+import  org.teherba.putrans.sink.TextSink;
+import  java.io.BufferedWriter;
+import  java.io.IOException;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.Writer;
+import  org.xml.sax.Attributes;
+
+/** Writes the document text as plain text, byte for byte as the SAX route
+ *  through the serializer of {@link org.teherba.putrans.TextConverter} does:
+ *  the markup and the comments are dropped, and the elements
+ *  <em>br</em> and <em>p</em> are replaced by CR/LF.
+ *  @author Dr. Georg Fischer
+ */
+public class PlainTextSink implements TextSink {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** where to write the output */
+    private Writer writer;
+
+    /** Constructor
+     *  @param out where to write the output
+     *  @param encoding name of the result encoding, for example "UTF-8"
+     *  @throws IOException if the encoding is not supported
+     */
+    public PlainTextSink(OutputStream out, String encoding) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, encoding), 16384);
+    } // Constructor
+
+    public void startDocument() throws IOException {
+    } // startDocument
+
+    public void endDocument() throws IOException {
+        writer.flush();
+    } // endDocument
+
+    public void startElement(String tag, Attributes attrs) throws IOException {
+        if (tag.equals("br") || tag.equals("p")) {
+            writer.write("\r\n");
+        }
+    } // startElement
+
+    public void endElement(String tag) throws IOException {
+    } // endElement
+
+    public void characters(char[] ch, int start, int len) throws IOException {
+        writer.write(ch, start, len);
+    } // characters
+
+    public void comment(String text) throws IOException {
+    } // comment
+
+} // PlainTextSink
@@ -0,0 +1,166 @@
+/*  Records the put_* interface for a later replay
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.sink;
+import  org.teherba.putrans.sink.TextSink;
+import  java.io.IOException;
+import  java.util.ArrayList;
+import  java.util.Arrays;
+import  org.xml.sax.Attributes;
+import  org.xml.sax.helpers.AttributesImpl;
+
+/** Records the document structure in compact arrays, such that it
+ *  can be replayed to another sink later, for example when the
+ *  chunks of a document were decoded in parallel.
+ *  Each event takes 3 ints; the characters of all texts and comments
+ *  are kept in one buffer.
+ *  @author Dr. Georg Fischer
+ */
+public class RecordingSink implements TextSink {
+    public final static String CVSID = "@(#) $Id$";
+
+    /** codes of the events */
+    private static final int CHARS   = 1;
+    private static final int COMMENT = 2;
+    private static final int START   = 3;
+    private static final int END     = 4;
+
+    /** events as triples (code, arg1, arg2) */
+    private int[] events;
+    /** number of ints used in {@link #events} */
+    private int eventLen;
+    /** characters of all texts and comments */
+    private char[] text;
+    /** number of characters used in {@link #text} */
+    private int textLen;
+    /** element tags and attribute lists, addressed by the events */
+    private ArrayList<Object> objects;
+    /** shared attribute list without attributes */
+    private static final AttributesImpl NO_ATTRS = new AttributesImpl();
+
+    /** Constructor
+     *  @param capacity expected number of characters
+     */
+    public RecordingSink(int capacity) {
+        events   = new int[Math.max(capacity / 8, 64)];
+        eventLen = 0;
+        text     = new char[Math.max(capacity, 64)];
+        textLen  = 0;
+        objects  = new ArrayList<Object>(16);
+    } // Constructor
+
+    /** Appends an event
+     *  @param code code of the event
+     *  @param arg1 1st argument
+     *  @param arg2 2nd argument
+     */
+    private void add(int code, int arg1, int arg2) {
+        if (eventLen + 3 > events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        events[eventLen ++] = code;
+        events[eventLen ++] = arg1;
+        events[eventLen ++] = arg2;
+    } // add
+
+    /** Appends characters to {@link #text}
+     *  @param ch the characters
+     *  @param start position of the first character in <em>ch</em>
+     *  @param len number of characters
+     */
+    private void append(char[] ch, int start, int len) {
+        if (textLen + len > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLen + len));
+        }
+        System.arraycopy(ch, start, text, textLen, len);
+        textLen += len;
+    } // append
+
+    /** Gets the index of an element tag in {@link #objects}
+     *  @param tag local name of the element
+     *  @return index of the (first) identical tag
+     */
+    private int indexOf(String tag) {
+        int result = objects.indexOf(tag); // there are only a few distinct tags
+        if (result < 0) {
+            result = objects.size();
+            objects.add(tag);
+        }
+        return result;
+    } // indexOf
+
+    public void startDocument() throws IOException {
+    } // startDocument
+
+    public void endDocument() throws IOException {
+    } // endDocument
+
+    public void startElement(String tag, Attributes attrs) throws IOException {
+        int iattrs = -1;
+        if (attrs.getLength() > 0) { // the producer may reuse and modify its list
+            iattrs = objects.size();
+            objects.add(new AttributesImpl(attrs));
+        }
+        add(START, indexOf(tag), iattrs);
+    } // startElement
+
+    public void endElement(String tag) throws IOException {
+        add(END, indexOf(tag), 0);
+    } // endElement
+
+    public void characters(char[] ch, int start, int len) throws IOException {
+        add(CHARS, textLen, len);
+        append(ch, start, len);
+    } // characters
+
+    public void comment(String comment) throws IOException {
+        add(COMMENT, textLen, comment.length());
+        append(comment.toCharArray(), 0, comment.length());
+    } // comment
+
+    /** Sends all recorded events to another sink, in their order
+     *  @param target the other sink
+     *  @throws IOException if an IO error occurs
+     */
+    public void replay(TextSink target) throws IOException {
+        int ievent = 0;
+        while (ievent < eventLen) {
+            int arg1 = events[ievent + 1];
+            int arg2 = events[ievent + 2];
+            switch (events[ievent]) {
+                case CHARS:
+                    target.characters(text, arg1, arg2);
+                    break;
+                case COMMENT:
+                    target.comment(new String(text, arg1, arg2));
+                    break;
+                case START:
+                    target.startElement((String) objects.get(arg1), arg2 < 0 ? NO_ATTRS : (Attributes) objects.get(arg2));
+                    break;
+                case END:
+                    target.endElement((String) objects.get(arg1));
+                    break;
+                default:
+                    break;
+            } // switch code
+            ievent += 3;
+        } // while ievent
+    } // replay
+
+} // RecordingSink
@@ -0,0 +1,70 @@
+/*  Receiver of the put_* interface, without SAX
+    @(#) $Id$
+    2026-10-17, Georg Fischer
+*/
+/*
+ * Copyright 2026 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.putrans.sink;
+import  java.io.IOException;
+import  org.xml.sax.Attributes;
+
+/** Receives the document structure which the functional text processing
+ *  interface (put_*) of {@link org.teherba.putrans.TextConverter} emits,
+ *  instead of SAX events for a serializer. Sinks write their output
+ *  directly, for example as HTML or as plain text.
+ *  The elements are given by their local names, without namespace prefix.
+ *  @author Dr. Georg Fischer
+ */
+public interface TextSink {
+
+    /** Starts the document
+     *  @throws IOException if an IO error occurs
+     */
+    public void startDocument() throws IOException;
+
+    /** Ends the document, and flushes the output
+     *  @throws IOException if an IO error occurs
+     */
+    public void endDocument() throws IOException;
+
+    /** Starts an element
+     *  @param tag local name of the element
+     *  @param attrs attributes of the element, possibly empty
+     *  @throws IOException if an IO error occurs
+     */
+    public void startElement(String tag, Attributes attrs) throws IOException;
+
+    /** Ends an element
+     *  @param tag local name of the element
+     *  @throws IOException if an IO error occurs
+     */
+    public void endElement(String tag) throws IOException;
+
+    /** Appends document text
+     *  @param ch the characters
+     *  @param start position of the first character in <em>ch</em>
+     *  @param len number of characters
+     *  @throws IOException if an IO error occurs
+     */
+    public void characters(char[] ch, int start, int len) throws IOException;
+
+    /** Appends a comment
+     *  @param text content of the comment
+     *  @throws IOException if an IO error occurs
+     */
+    public void comment(String text) throws IOException;
+
+} // TextSink
@@ -1,5 +1,8 @@
 /*  IndexPage.java - main web page for Putrans
  *  @(#) $Id: 57d01d0860aef0c2f2783647be70c3c381710c86 $
+ *  2026-10-17: format "auto"
+ *  2026-10-17: cached format list; ETag and Last-Modified
+ *  2026-10-17: textarea before the file input
  *  2017-07-22: copied from xtrans
  *  2017-05-28: javadoc 1.8
  *  2016-09-07, Dr. Georg Fischer: adopted from xslTrans.jsp
@@ -31,6 +34,7 @@ import  org.teherba.xtrans.XtransFactory;
 import  java.io.IOException;
 import  java.io.PrintWriter;
 import  java.io.Serializable;
+import  java.util.ArrayList;
 import  java.util.Iterator;
 import  javax.servlet.http.HttpServletRequest;
 import  javax.servlet.http.HttpServletResponse;
@@ -48,20 +52,89 @@ public class IndexPage implements Serializable {
     /** log4j logger (category) */
     private Logger log;
 
+    /** Pre-rendered options for the format selection,
+     *  valid for one state of one factory's registry
+     */
+    private static class FormatList {
+        /** the registry from which the list was built */
+        PutransFactory factory;
+        /** state of the registry when the list was built */
+        int stamp;
+        /** time when the list was built, in whole seconds */
+        long lastModified;
+        /** format codes */
+        String[] codes;
+        /** rendered options, without the attribute for the selection */
+        String[] options;
+    } // FormatList
+
+    /** The format list which was built last, shared by all requests */
+    private static volatile FormatList formatList = null;
+
     /** No-args Constructor
      */
     public IndexPage() {
         log      = LogManager.getLogger(IndexPage.class.getName());
     } // Constructor
 
+    /** Gets the format list for the current state of the registry,
+     *  and builds it if necessary
+     *  @param factory registry of the transformers
+     *  @return pre-rendered format options
+     */
+    private static FormatList getFormatList(PutransFactory factory) {
+        FormatList result = formatList;
+        if (result == null || result.factory != factory || result.stamp != factory.getStamp()) {
+            ArrayList<String> codes   = new ArrayList<String>(64);
+            ArrayList<String> options = new ArrayList<String>(64);
+            codes  .add(PutransFactory.AUTO_FORMAT);
+            options.add(">" + PutransFactory.AUTO_FORMAT + " - detect the input format</option>\n");
+            Iterator<BaseTransformer> iter = factory.getIterator(); // instantiates all
+            while (iter.hasNext()) {
+                BaseTransformer transformer = iter.next();
+                String code = transformer.getFirstFormatCode();
+                codes  .add(code);
+                options.add(">" + code + " - " + transformer.getDescription() + "</option>\n");
+            } // while iter
+            result = new FormatList();
+            result.factory      = factory;
+            result.stamp        = factory.getStamp(); // after all classes were tried
+            result.lastModified = System.currentTimeMillis() / 1000L * 1000L;
+            result.codes        = codes  .toArray(new String[codes  .size()]);
+            result.options      = options.toArray(new String[options.size()]);
+            formatList = result;
+        }
+        return result;
+    } // getFormatList
+
     /** Output the main dialog page for Xtrans
      *  @param request request with header fields
      *  @param response response with writer
      *  @param basePage refrence to common methods and error messages
      *  @throws IOException if an IO error occurs
+     *  @deprecated use {@link #dialog(HttpServletRequest, HttpServletResponse, BasePage, PutransFactory)}
+     *  with a factory which lives longer than the request
+     */
+    @Deprecated
+    public void dialog(HttpServletRequest request, HttpServletResponse response
+            , BasePage basePage
+            ) throws IOException {
+        dialog(request, response, basePage, new PutransFactory());
+    } // dialog 3
+
+    /** Output the main dialog page for Xtrans.
+     *  The format selection is rendered once for each state of the registry.
+     *  A GET request is answered with status 304 if the client's copy
+     *  (identified by ETag or Last-Modified) is still current.
+     *  @param request request with header fields
+     *  @param response response with writer
+     *  @param basePage refrence to common methods and error messages
+     *  @param factory registry of the transformers
+     *  @throws IOException if an IO error occurs
      */
     public void dialog(HttpServletRequest request, HttpServletResponse response
             , BasePage basePage
+            , PutransFactory factory
             ) throws IOException {
         if (true) { // try {
             String language   = basePage.getFormField("lang"    );
@@ -78,12 +151,30 @@ public class IndexPage implements Serializable {
                 infile        = fileItem.getName();
             }
 
+            FormatList list = getFormatList(factory);
+            if (request.getMethod().equals("GET")) {
+                // the page depends on the registry and on the fields which are echoed
+                String etag = "\"" + Long.toHexString(list.lastModified / 1000L)
+                        + "-" + Integer.toHexString(list.stamp)
+                        + "-" + Integer.toHexString((language + "\t" + dir + "\t" + namespace + "\t" + options + "\t"
+                                + format + "\t" + enc1 + "\t" + intext).hashCode())
+                        + "\"";
+                response.setHeader("ETag", etag);
+                response.setDateHeader("Last-Modified", list.lastModified);
+                String match = request.getHeader("If-None-Match");
+                if (match != null
+                        ? match.equals("*") || match.indexOf(etag) >= 0
+                        : request.getDateHeader("If-Modified-Since") >= list.lastModified) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            } // GET
+
             String target = "xml";
             PrintWriter out = basePage.writeHeader(request, response, language);
             out.write("<title>" + basePage.getAppName() + " Main Page</title>\n");
             out.write("</head>\n<body>\n");
 
-            PutransFactory factory = new PutransFactory();
             String border = "0";
             int index = 0;
             out.write("<!-- dir=\"" + dir + "\", format=\"" + format + "\", target=\""+  target
@@ -95,16 +186,15 @@ public class IndexPage implements Serializable {
 
             out.write("        <tr valign=\"top\">\n");
             out.write("            <td rowspan=\"2\"><strong>Format</strong><br />\n");
-            out.write("                <select name=\"format\" size=\"" + factory.size() + "\">\n");
-                                       Iterator iter = factory.getIterator();
+            out.write("                <select name=\"format\" size=\"" + list.codes.length + "\">\n");
                                        index = 0;
-                                       while (iter.hasNext()) {
-                                           BaseTransformer transformer = (BaseTransformer) iter.next();
-                                           String code = transformer.getFirstFormatCode();
+                                       while (index < list.codes.length) {
+                                           String code = list.codes[index];
                                            out.write("<option value=\"" + code + "\""
                                                    + (code.equals(format) ? " selected" : "" )
-                                                   + ">" + code + " - " + transformer.getDescription() + "</option>\n");
-                                       } // while iter
+                                                   + list.options[index]);
+                                           index ++;
+                                       } // while index
             out.write("                </select>\n");
             out.write("            </td>\n");
 
@@ -263,12 +353,13 @@ public class IndexPage implements Serializable {
         out.write("                            <table border=\"" + border + "\">\n");
         out.write("                                <tr>\n");
         out.write("                                    <td>\n");
+        // the textarea precedes the file, such that the servlet knows it before the upload is streamed
+        out.write("                                    Input source text (non-binary formats only)<br />\n");
+        out.write("                                    <textarea name=\"intext\" cols=\"80\" rows=\"10\">" + intext + "</textarea>\n");
+        out.write("                                    <br /><em><strong>or</strong></em>\n");
         out.write("                                    Name of Input File<br />\n");
         out.write("                                    <input name=\"infile\" type=\"file\" style=\"font-family: Courier, monospace\" \n");
         out.write("                                            maxsize=\"512\" size=\"80\" value=\"" + infile + "\"/> \n");
-        out.write("                                    &nbsp;&nbsp;<em><strong>or</strong></em>\n");
-        out.write("                                    <br />Input source text (non-binary formats only)<br />\n");
-        out.write("                                    <textarea name=\"intext\" cols=\"80\" rows=\"10\">" + intext + "</textarea>\n");
         out.write("                                    <br /><input type=\"submit\" value=\"Transform\" />\n");
         out.write("                                    </td>\n");
         out.write("                                </tr>\n");
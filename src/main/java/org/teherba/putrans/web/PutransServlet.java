@@ -1,255 +1,481 @@
-/*  Servlet which transforms various file formats to and from XML.
-    @(#) $Id: XtransServlet.java 796 2011-09-10 13:58:28Z gfis $
- *  2017-07-22: copied from xtrans
-    2017-05-28: javadoc 1.8
-    2016-10-14: less imports
-    2016-09-14: MultiFormatFactory back to dynamic XtransFactory
-    2016-09-06: package xtrans.web; uses BasePage; completely revised
-    2011-04-06: XtransFactory -> MultiFormatFactory
-    2010-12-13: sqlPretty
-    2008-06-25: with view="xslTrans"; textarea input
-    2007-11-05: also with LexicalHandler
-    2005-07-27, Dr. Georg Fischer
-    For the discussion of "enctype=multipart/form-data" c.f.
-    http://forum.java.sun.com/thread.jspa?threadID=329408&messageID=1340610
-
-    Content-Disposition: attachment; filename="gfis.gif"
-    Content-Type: image/gif
-*/
-/*
- * Copyright 2006 Dr. Georg Fischer <punctum at punctum dot kom>
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.teherba.putrans.web;
-import  org.teherba.putrans.web.IndexPage;
-import  org.teherba.putrans.web.Messages;
-import  org.teherba.xtrans.BaseTransformer;
-import  org.teherba.xtrans.XMLTransformer;
-import  org.teherba.putrans.PutransFactory;
-import  org.teherba.common.web.BasePage;
-import  org.teherba.common.web.MetaInfPage;
-import  java.io.IOException;
-import  java.io.StringReader;
-import  javax.servlet.ServletConfig;
-import  javax.servlet.ServletException;
-import  javax.servlet.http.HttpServlet;
-import  javax.servlet.http.HttpServletRequest;
-import  javax.servlet.http.HttpServletResponse;
+/*  Servlet which transforms various file formats to and from XML.
+    @(#) $Id: XtransServlet.java 796 2011-09-10 13:58:28Z gfis $
+    2026-10-17: output is flushed before closeAll
+    2026-10-17: metrics MBean is unregistered in destroy
+    2026-10-17: only successful results are cached and get an ETag
+    2026-10-17: metrics MBean and view "metrics"
+    2026-10-17: result cache and ETag
+    2026-10-17: format "auto"
+    2026-10-17: index page with the shared factory
+    2026-10-17: streaming multipart upload
+    2026-10-17: new transformers for each request
+ *  2017-07-22: copied from xtrans
+    2017-05-28: javadoc 1.8
+    2016-10-14: less imports
+    2016-09-14: MultiFormatFactory back to dynamic XtransFactory
+    2016-09-06: package xtrans.web; uses BasePage; completely revised
+    2011-04-06: XtransFactory -> MultiFormatFactory
+    2010-12-13: sqlPretty
+    2008-06-25: with view="xslTrans"; textarea input
+    2007-11-05: also with LexicalHandler
+    2005-07-27, Dr. Georg Fischer
+    For the discussion of "enctype=multipart/form-data" c.f.
+    http://forum.java.sun.com/thread.jspa?threadID=329408&messageID=1340610
+
+    Content-Disposition: attachment; filename="gfis.gif"
+    Content-Type: image/gif
+*/
+/*
+ * Copyright 2006 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teherba.putrans.web;
+import  org.teherba.putrans.web.IndexPage;
+import  org.teherba.putrans.web.Messages;
+import  org.teherba.xtrans.BaseTransformer;
+import  org.teherba.xtrans.XMLTransformer;
+import  org.teherba.putrans.Metrics;
+import  org.teherba.putrans.PutransFactory;
+import  org.teherba.putrans.ResultCache;
+import  org.teherba.common.web.BasePage;
+import  org.teherba.common.web.MetaInfPage;
+import  java.io.BufferedInputStream;
+import  java.io.ByteArrayInputStream;
+import  java.io.ByteArrayOutputStream;
+import  java.io.File;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.InputStreamReader;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.StringReader;
+import  java.io.Writer;
+import  java.util.HashMap;
+import  javax.servlet.ServletConfig;
+import  javax.servlet.ServletException;
+import  javax.servlet.http.HttpServlet;
+import  javax.servlet.http.HttpServletRequest;
+import  javax.servlet.http.HttpServletResponse;
 import  org.apache.logging.log4j.Logger;
-import  org.apache.logging.log4j.LogManager;
-import  org.apache.commons.fileupload.FileItem;
-
-/** Servlet which converts between various text processing file formats.
- *  This class is the servlet interface to <em>BaseTransformer</em>,
- *  and ressembles the functionality of the commandline interface.
- *  @author Dr. Georg Fischer
- */
-public class PutransServlet extends HttpServlet {
-    public final static String CVSID = "@(#) $Id: XtransServlet.java 796 2011-09-10 13:58:28Z gfis $";
-    public final static long serialVersionUID = 19470629006L;
-
-    /** URL path to this application */
-    private String applPath;
-    /** log4j logger (category) */
-    private Logger log;
-    /** common code and messages for auxiliary web pages */
-    private BasePage basePage;
-    /** name of this application */
-    private static final String APP_NAME = "Xtrans";
-
-    /** Delivers some {@link BaseTransformer} */
-    private PutransFactory factory;
-
-    /** Initializes the servlet
-     *  @param config configuration data
-     */
-    public void init(ServletConfig config) throws ServletException {
-        super.init(config);
-        log = LogManager.getLogger(PutransServlet.class.getName());
-        factory = new PutransFactory();
-        basePage = new BasePage(APP_NAME);
-        Messages.addMessageTexts(basePage);
-    } // init
-
-    /** Creates the response for a HTTP GET request.
-     *  @param request fields from the client input form
-     *  @param response data to be sent back the user's browser
-     *  @throws IOException if an IO error occurs
-     */
-    public void doGet (HttpServletRequest request, HttpServletResponse response) throws IOException {
-        generateResponse(request, response);
-    } // doGet
-
-    /** Creates the response for a HTTP POST request.
-     *  @param request fields from the client input form
-     *  @param response data to be sent back the user's browser
-     *  @throws IOException if an IO error occurs
-     */
-    public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        generateResponse(request, response);
-    } // doPost
-
-    /** Creates the response for a HTTP GET or POST request.
-     *  @param request fields from the client input form
-     *  @param response data to be sent back the user's browser
-     *  @throws IOException if an IO error occurs
-     */
-    public void generateResponse(HttpServletRequest request, HttpServletResponse response)
-            throws IOException {
-        BaseTransformer generator   = null;
-        BaseTransformer serializer  = null;
-        if (true) { // try {
-            String view = basePage.getFilesAndFields(request, new String[]
-                    { "view"    , "index"
-                    , "lang"    , "en"
-                    , "tool"    , "to"
-                    , "nsp"     , ""
-                    , "opt"     , ""
-                    , "pipeline", "- -mt940 -xsl finance/mt940-camt.052.xsl -xml -"
-                    , "format"  , "line"
-                    , "enc1"    , "UTF-8"
-                    , "enc1"    , "UTF-8"
-                    , "intext"  , ""
-                    } );
-            String language   = basePage.getFormField("lang"    );
-            String dir        = basePage.getFormField("tool"    );
-            String namespace  = basePage.getFormField("nsp"     );
-            String options    = basePage.getFormField("opt"     );
-            String pipeline   = basePage.getFormField("pipeline");
-            String format     = basePage.getFormField("format"  );
-            String enc1       = basePage.getFormField("enc1"    );
-            String enc2       = basePage.getFormField("enc1"    );
-            String intext     = basePage.getFormField("intext"  );
-            FileItem fileItem = basePage.getFormFile(0);
-            String infile     = "(specify)";
-            if (fileItem != null) {
-                infile        = fileItem.getName();
-            }
-
-            //-------------------------------------
-            // first check any parameters
-        /*
-            if (false) {
-            } else if (",ISO-8859-1,UTF-8,"     .indexOf(("," + encoding.toUpperCase() + ",")) < 0) {
-                basePage.writeMessage(request, response, language, new String[]
-                        { "401", "enc"      , encoding  } );
-       */
-            //-------------------------------------
-            String resultFormat  = "xml"; // remains fixed
-
-            // then switch for the different views
-            if (fileItem != null &&
-                    (  ! fileItem.getString().matches("\\s*") && ! intext.equals("")
-                    ||   fileItem.getString().matches("\\s*") &&   intext.equals("")
-                    )) { // either file or intext must be specified
-                basePage.writeMessage(request, response, language, new String[] { "407" } );
-
-            } else if (view.equals("index" )) { // show main dialog
-                (new IndexPage()).dialog(request, response, basePage);
-
-            } else if (view.equals("index2")) { // do the main transform
-                generator  = factory.getTransformer(format); // try whether the format is valid
-                if (generator == null) {
-                    basePage.writeMessage(request, response, language, new String[] { "401", "format", format } );
-                } else {
-                    if (dir.equals("from")) { // interchange source and result formats
-                        String temp  = resultFormat; // xml
-                        resultFormat = format; // foreign
-                        format       = temp; // xml
-                        serializer   = generator; // foreign
-                        generator    = factory.getTransformer(format); // xml
-                    } else {
-                        serializer   = factory.getTransformer(resultFormat); // xml
-                    }
-                    generator .parseOptionString(options);
-                    generator .setSourceEncoding(generator .getOption("enc1", "UTF-8")); // should be symmetrical for testing
-                    serializer.parseOptionString(options);
-                    serializer.setResultEncoding(serializer.getOption("enc2", "UTF-8"));
-                    generator .setContentHandler(serializer);
-                    generator .setLexicalHandler(serializer);
-                    response.setCharacterEncoding(serializer.getResultEncoding());
-
-                    this.doTransform(generator, serializer, fileItem, intext, response);
-                } // index page: foreign -> XML or vice versa
-
-            } else if (view.equals("license")
-                    || view.equals("manifest")
-                    || view.equals("notice")
-                    ) {
-                (new MetaInfPage()).showMetaInf (request, response, basePage, language, view, this);
-
-            } else {
-                basePage.writeMessage(request, response, language, new String[] { "401", "view", view });
-            }
-    /*
-        } catch (Exception exc) {
-            log.error(exc.getMessage(), exc);
-    */
-        }
-    } // generateResponse
-
-    /** Runs the transformation.
-     *  @param generator parser for the input format
-     *  @param serializer generates the output format
-     *  @param fileItem handle for an uploaded file
-     *  @param intext input String from a form field, overtakes <em>fileItem</em> if non-empty
-     *  @param response wher to write the output
-     *  @throws IOException if an IO error occurs
-     */
-    private void doTransform(BaseTransformer generator
-            , BaseTransformer serializer
-            , FileItem fileItem
-            , String intext
-            , HttpServletResponse response
-            ) throws IOException {
-        if (true) { // try {
-            if (serializer instanceof XMLTransformer) {
-                generator.setMimeType("text/xml"); // is needed sometimes because of "&amp;" multiplication
-                response.setHeader("Content-Disposition", "inline; filename=\"" + fileItem.getName() + ".xml\"");
-                // to XML
-            } else { // from XML
-                String name = fileItem.getName();
-                name = (name.endsWith(".xml"))
-                        ? name.substring(0, name.length() - 4) // remove ".xml"
-                        : name + "." + generator.getFileExtension(); // append default extension
-                response.setHeader("Content-Disposition", "attachment; filename=\"" + name + "\"");
-            } // from XML
-
-            response.setContentType(generator.getMimeType());
-            if (generator.isBinaryFormat()) {
-                generator.setByteReader(fileItem.getInputStream ());
-            } else {
-                generator.setCharReader(new StringReader
-                        ( intext.matches("\\s*")
-                        ? fileItem.getString(generator.getSourceEncoding())
-                        : intext
-                        ));
-            }
-            if (serializer.isBinaryFormat()) {
-                serializer.setByteWriter(response.getOutputStream());
-            } else {
-                serializer.setCharWriter(response.getWriter      ());
-            }
-            generator.generate();
-            generator .closeAll();
-            serializer.closeAll();
-    /*
-        } catch (Exception exc) {
-            log.error(exc.getMessage(), exc);
-    */
-        }
-    } // doTransform
-
-} // XtransServlet
+import  org.apache.logging.log4j.LogManager;
+import  org.apache.commons.fileupload.FileItem;
+import  org.apache.commons.fileupload.FileItemIterator;
+import  org.apache.commons.fileupload.FileItemStream;
+import  org.apache.commons.fileupload.servlet.ServletFileUpload;
+import  org.apache.commons.fileupload.util.Streams;
+
+/** Servlet which converts between various text processing file formats.
+ *  This class is the servlet interface to <em>BaseTransformer</em>,
+ *  and ressembles the functionality of the commandline interface.
+ *  @author Dr. Georg Fischer
+ */
+public class PutransServlet extends HttpServlet {
+    public final static String CVSID = "@(#) $Id: XtransServlet.java 796 2011-09-10 13:58:28Z gfis $";
+    public final static long serialVersionUID = 19470629006L;
+
+    /** URL path to this application */
+    private String applPath;
+    /** log4j logger (category) */
+    private Logger log;
+    /** common code and messages for auxiliary web pages */
+    private BasePage basePage;
+    /** name of this application */
+    private static final String APP_NAME = "Xtrans";
+
+    /** Delivers new {@link BaseTransformer}s for each request, which is processed in its own thread */
+    private PutransFactory factory;
+    /** Results of previous conversions */
+    private ResultCache cache;
+
+    /** Initializes the servlet
+     *  @param config configuration data
+     */
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        log = LogManager.getLogger(PutransServlet.class.getName());
+        factory = new PutransFactory();
+        String cacheDir = config.getInitParameter("cacheDir"); // empty: memory only
+        cache = new ResultCache(cacheDir != null && cacheDir.length() > 0 ? new File(cacheDir) : null);
+        basePage = new BasePage(APP_NAME);
+        Messages.addMessageTexts(basePage);
+        Metrics.register();
+    } // init
+
+    /** Removes the metrics MBean, such that the class loader
+     *  of the web application can be collected after a redeployment
+     */
+    public void destroy() {
+        Metrics.unregister();
+        super.destroy();
+    } // destroy
+
+    /** Creates the response for a HTTP GET request.
+     *  @param request fields from the client input form
+     *  @param response data to be sent back the user's browser
+     *  @throws IOException if an IO error occurs
+     */
+    public void doGet (HttpServletRequest request, HttpServletResponse response) throws IOException {
+        generateResponse(request, response);
+    } // doGet
+
+    /** Creates the response for a HTTP POST request.
+     *  @param request fields from the client input form
+     *  @param response data to be sent back the user's browser
+     *  @throws IOException if an IO error occurs
+     */
+    public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        generateResponse(request, response);
+    } // doPost
+
+    /** Creates the response for a HTTP GET or POST request.
+     *  @param request fields from the client input form
+     *  @param response data to be sent back the user's browser
+     *  @throws IOException if an IO error occurs
+     */
+    public void generateResponse(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (ServletFileUpload.isMultipartContent(request)) { // from the form of the index page
+            this.streamResponse(request, response);
+        } else if (request.getServletPath().endsWith("/metrics")
+                || "metrics".equals(request.getParameter("view"))) { // for monitoring tools
+            this.writeMetrics(response);
+        } else { // try {
+            String view = basePage.getFilesAndFields(request, new String[]
+                    { "view"    , "index"
+                    , "lang"    , "en"
+                    , "tool"    , "to"
+                    , "nsp"     , ""
+                    , "opt"     , ""
+                    , "pipeline", "- -mt940 -xsl finance/mt940-camt.052.xsl -xml -"
+                    , "format"  , "line"
+                    , "enc1"    , "UTF-8"
+                    , "enc1"    , "UTF-8"
+                    , "intext"  , ""
+                    } );
+            String language   = basePage.getFormField("lang"    );
+            String dir        = basePage.getFormField("tool"    );
+            String namespace  = basePage.getFormField("nsp"     );
+            String options    = basePage.getFormField("opt"     );
+            String pipeline   = basePage.getFormField("pipeline");
+            String format     = basePage.getFormField("format"  );
+            String enc1       = basePage.getFormField("enc1"    );
+            String enc2       = basePage.getFormField("enc1"    );
+            String intext     = basePage.getFormField("intext"  );
+            FileItem fileItem = basePage.getFormFile(0);
+            String infile     = "(specify)";
+            if (fileItem != null) {
+                infile        = fileItem.getName();
+            }
+
+            //-------------------------------------
+            // first check any parameters
+        /*
+            if (false) {
+            } else if (",ISO-8859-1,UTF-8,"     .indexOf(("," + encoding.toUpperCase() + ",")) < 0) {
+                basePage.writeMessage(request, response, language, new String[]
+                        { "401", "enc"      , encoding  } );
+       */
+            //-------------------------------------
+
+            // then switch for the different views
+            if (fileItem != null &&
+                    (  ! fileItem.getString().matches("\\s*") && ! intext.equals("")
+                    ||   fileItem.getString().matches("\\s*") &&   intext.equals("")
+                    )) { // either file or intext must be specified
+                basePage.writeMessage(request, response, language, new String[] { "407" } );
+
+            } else if (view.equals("index" )) { // show main dialog
+                (new IndexPage()).dialog(request, response, basePage, factory);
+
+            } else if (view.equals("index2")) { // do the main transform
+                this.transform(request, response, language, dir, options, format
+                        , infile, fileItem != null ? fileItem.getInputStream() : null, intext);
+
+            } else if (view.equals("license")
+                    || view.equals("manifest")
+                    || view.equals("notice")
+                    ) {
+                (new MetaInfPage()).showMetaInf (request, response, basePage, language, view, this);
+
+            } else {
+                basePage.writeMessage(request, response, language, new String[] { "401", "view", view });
+            }
+    /*
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+    */
+        }
+    } // generateResponse
+
+    /** Creates the response for a multipart POST request from the index page.
+     *  The parts are parsed as they arrive. The form fields precede the file,
+     *  and the file is converted while it is uploaded, without buffering
+     *  the whole upload in memory or in a temporary file.
+     *  @param request fields and file from the client input form
+     *  @param response data to be sent back the user's browser
+     *  @throws IOException if an IO error occurs
+     */
+    private void streamResponse(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        HashMap<String, String> fields = new HashMap<String, String>(16);
+        String[] defaults = new String[]
+                { "view"    , "index"
+                , "lang"    , "en"
+                , "tool"    , "to"
+                , "opt"     , ""
+                , "format"  , "line"
+                , "intext"  , ""
+                };
+        int ind = 0;
+        while (ind < defaults.length) {
+            fields.put(defaults[ind], defaults[ind + 1]);
+            ind += 2;
+        } // while ind
+        boolean done = false; // whether a response was written
+        try {
+            FileItemIterator iter = (new ServletFileUpload()).getItemIterator(request);
+            while (! done && iter.hasNext()) {
+                FileItemStream item = iter.next();
+                InputStream in = item.openStream();
+                if (item.isFormField()) {
+                    fields.put(item.getFieldName(), Streams.asString(in, "UTF-8"));
+                } else if (item.getName() != null && item.getName().length() > 0) { // a file was chosen
+                    done = true;
+                    String language = fields.get("lang");
+                    if (! fields.get("intext").matches("\\s*")) { // either file or intext must be specified
+                        basePage.writeMessage(request, response, language, new String[] { "407" } );
+                    } else if (! fields.get("view").equals("index2")) {
+                        basePage.writeMessage(request, response, language, new String[] { "401", "view", fields.get("view") });
+                    } else {
+                        this.transform(request, response, language, fields.get("tool"), fields.get("opt"), fields.get("format")
+                                , item.getName(), in, "");
+                    }
+                } // else no file chosen
+            } // while iter
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            if (! response.isCommitted()) {
+                basePage.writeMessage(request, response, fields.get("lang"), new String[] { "401", "infile", String.valueOf(exc.getMessage()) });
+            }
+            done = true;
+        }
+        if (! done) { // no file was uploaded
+            String language = fields.get("lang");
+            if (fields.get("intext").matches("\\s*")) {
+                basePage.writeMessage(request, response, language, new String[] { "407" } );
+            } else if (! fields.get("view").equals("index2")) {
+                basePage.writeMessage(request, response, language, new String[] { "401", "view", fields.get("view") });
+            } else {
+                this.transform(request, response, language, fields.get("tool"), fields.get("opt"), fields.get("format")
+                        , "intext", null, fields.get("intext"));
+            }
+        }
+    } // streamResponse
+
+    /** Writes the current values of the metrics as plain text
+     *  @param response where to write the metrics
+     *  @throws IOException if an IO error occurs
+     */
+    private void writeMetrics(HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        Writer writer = response.getWriter();
+        writer.write(Metrics.getInstance().toString());
+        writer.flush();
+    } // writeMetrics
+
+    /** Selects and wires the transformers, and runs the transformation.
+     *  Inputs which are not too long are looked up in the result cache.
+     *  The cache key is sent as ETag, and a request with a matching
+     *  If-None-Match header is answered with status 304.
+     *  @param request request with header fields
+     *  @param response where to write the output
+     *  @param language code for the language of the messages
+     *  @param dir "to" XML, or "from" XML
+     *  @param options option string for both transformers
+     *  @param format code for the foreign format, or "auto" for the detection of the input format
+     *  @param fileName name of the uploaded file
+     *  @param in stream of the uploaded file, or null
+     *  @param intext input String from a form field, overtakes <em>in</em> if non-empty
+     *  @throws IOException if an IO error occurs
+     */
+    private void transform(HttpServletRequest request
+            , HttpServletResponse response
+            , String language
+            , String dir
+            , String options
+            , String format
+            , String fileName
+            , InputStream in
+            , String intext
+            ) throws IOException {
+        String resultFormat  = "xml"; // remains fixed
+        if (format.equals(PutransFactory.AUTO_FORMAT) && ! dir.equals("from")) {
+            if (in != null && intext.matches("\\s*")) {
+                in = new BufferedInputStream(in, PutransFactory.SNIFF_LEN);
+                String detected = PutransFactory.detectFormat(in);
+                format = detected != null ? detected : format; // "auto" is rejected below
+            } else { // from the textarea
+                format = "text";
+            }
+        }
+        BaseTransformer serializer  = null;
+        BaseTransformer generator   = factory.newTransformer(format); // try whether the format is valid
+        if (generator == null) {
+            basePage.writeMessage(request, response, language, new String[] { "401", "format", format } );
+        } else {
+            if (dir.equals("from")) { // interchange source and result formats
+                String temp  = resultFormat; // xml
+                resultFormat = format; // foreign
+                format       = temp; // xml
+                serializer   = generator; // foreign
+                generator    = factory.newTransformer(format); // xml
+            } else {
+                serializer   = factory.newTransformer(resultFormat); // xml
+            }
+            generator .parseOptionString(options);
+            generator .setSourceEncoding(generator .getOption("enc1", "UTF-8")); // should be symmetrical for testing
+            serializer.parseOptionString(options);
+            serializer.setResultEncoding(serializer.getOption("enc2", "UTF-8"));
+            generator .setContentHandler(serializer);
+            generator .setLexicalHandler(serializer);
+            response.setCharacterEncoding(serializer.getResultEncoding());
+
+            byte[] input = null;
+            String key   = null;
+            if (! intext.matches("\\s*")) {
+                input = intext.getBytes("UTF-8");
+                key   = ResultCache.getKey(input, input.length, format, resultFormat, options + " -intext");
+            } else if (in != null) {
+                in    = new BufferedInputStream(in, 65536);
+                input = cache.readInput(in);
+                if (input != null) {
+                    key = ResultCache.getKey(input, input.length, format, resultFormat, options);
+                    in  = new ByteArrayInputStream(input);
+                }
+            }
+            if (key == null) { // too long for the cache
+                this.setHeaders(generator, serializer, fileName, response);
+                this.doTransform(generator, serializer, in, intext, response.getOutputStream());
+            } else {
+                String etag  = "\"" + key + "\"";
+                String match = request.getHeader("If-None-Match");
+                if (match != null && (match.equals("*") || match.indexOf(etag) >= 0)) { // ETags are only sent for successful results
+                    response.setHeader("ETag", etag);
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                } else {
+                    this.setHeaders(generator, serializer, fileName, response);
+                    byte[] output = cache.get(key);
+                    boolean ok = true;
+                    if (output == null) {
+                        ByteArrayOutputStream buffer = new ByteArrayOutputStream(input.length * 2 + 256);
+                        ok = this.doTransform(generator, serializer, in, intext, buffer);
+                        output = buffer.toByteArray();
+                        if (ok) { // a failed or partial result is neither cached nor tagged
+                            cache.put(key, output);
+                        }
+                    }
+                    if (ok) {
+                        response.setHeader("ETag", etag);
+                    }
+                    response.setContentLength(output.length);
+                    response.getOutputStream().write(output);
+                }
+            }
+        } // index page: foreign -> XML or vice versa
+    } // transform
+
+    /** Sets the content type and the file name of the response
+     *  @param generator parser for the input format
+     *  @param serializer generates the output format
+     *  @param fileName name of the uploaded file
+     *  @param response where to write the output
+     */
+    private void setHeaders(BaseTransformer generator
+            , BaseTransformer serializer
+            , String fileName
+            , HttpServletResponse response
+            ) {
+        if (serializer instanceof XMLTransformer) {
+            generator.setMimeType("text/xml"); // is needed sometimes because of "&amp;" multiplication
+            response.setHeader("Content-Disposition", "inline; filename=\"" + fileName + ".xml\"");
+            // to XML
+        } else { // from XML
+            String name = fileName;
+            name = (name.endsWith(".xml"))
+                    ? name.substring(0, name.length() - 4) // remove ".xml"
+                    : name + "." + generator.getFileExtension(); // append default extension
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + name + "\"");
+        } // from XML
+        response.setContentType(generator.getMimeType());
+    } // setHeaders
+
+    /** Runs the transformation, and records the metrics.
+     *  @param generator parser for the input format
+     *  @param serializer generates the output format
+     *  @param in stream of the uploaded file, or null
+     *  @param intext input String from a form field, overtakes <em>in</em> if non-empty
+     *  @param out where to write the output
+     *  @return whether the transformation was successful
+     *  @throws IOException if an IO error occurs
+     */
+    private boolean doTransform(BaseTransformer generator
+            , BaseTransformer serializer
+            , InputStream in
+            , String intext
+            , OutputStream out
+            ) throws IOException {
+        boolean result = false;
+        long startTime = System.nanoTime();
+        Metrics.CountingInputStream  countIn  = null;
+        Metrics.CountingOutputStream countOut = new Metrics.CountingOutputStream(out);
+        out = countOut;
+        if (in != null) {
+            countIn = new Metrics.CountingInputStream(in);
+            in      = countIn;
+        }
+        try {
+            if (generator.isBinaryFormat()) {
+                generator.setByteReader(in);
+            } else {
+                generator.setCharReader(intext.matches("\\s*")
+                        ? new InputStreamReader(in, generator.getSourceEncoding())
+                        : new StringReader(intext)
+                        );
+            }
+            Writer writer = null;
+            if (serializer.isBinaryFormat()) {
+                serializer.setByteWriter(out);
+            } else {
+                writer = new OutputStreamWriter(out, serializer.getResultEncoding());
+                serializer.setCharWriter(writer);
+            }
+            result = generator.generate();
+            if (writer != null) {
+                writer.flush();
+            }
+            generator .closeAll(); // closes the streams
+            serializer.closeAll();
+        } finally {
+            Metrics.getInstance().recordConversion(generator.getFirstFormatCode(), serializer.getFirstFormatCode()
+                    , countIn != null && intext.matches("\\s*") ? countIn.getCount() : intext.length()
+                    , countOut.getCount()
+                    , System.nanoTime() - startTime, result);
+        }
+        return result;
+    } // doTransform
+
+} // XtransServlet
@@ -0,0 +1,85 @@
+
+                         T  E  S  T
+
+                            der
+
+              I B M - Bildschirmschreibmaschine
+-------------------------------------------------------------------
+
+
+Mit der Taste Men kann folgendes gewhlt werden :
+
+    Verzeichnis - Liste - Seitenformat - Hintergrund - 
+    Diskette (Verzeichnis ansehen)  - Kopieren (auf Diskette)
+
+
+
+Die Schreibmaschine verfgt ber die Taste Code welche unter
+anderem, wie nachstehend aufgefhrt, angewandt werden kann :
+
+
+    Einstellen des Zeilenabstandes       Taste Code + -
+
+    Tastaturklicker                      Taste Code + S
+
+    Ein-/Ausschalten der Groschreibung  Taste Code + N
+
+    Lschen von einem Textabsatz oder    Taste Code + K
+    kompletten Text                      dann whlen und
+                                         Zeilenschaltung  
+
+    Kopieren                             Taste Code + K
+                                         dann whlen und
+                                         Zeilenschaltung
+
+    Versetzen                            Taste Code + K
+                                         dann whlen und
+                                         Zeilenschaltung
+
+    Automatisches Unterstreichen         Taste Code + U
+
+    Wortweises Unterstreichen            Taste Code + I
+
+    Fettdrucken                          Taste Code + B
+
+    Wort lschen                         Taste Code +  
+
+    Ein-Ausschalten der Automatischen
+    Zeilenschaltung                      Taste Code + R
+
+    Zentrieren zwischen Anfangs- und
+    Endrand                              Taste Code + C
+
+    Rechtsbndiges Schreiben am Endrand  Taste Code + O
+
+    Anschlagstrke                       Taste Code + Q
+
+
+
+Randeinstellungen, Leertaste, Rcktaste mit Tasten  -  o. -
+
+Tabulatorstopps setzen mit T+ und lschen mit T-
+
+Rckkehr zur ursprnglichen Schreibposition mit Taste
+
+Eingabe in den Speicher mit Taste
+
+Speicher schlieen nochmals die Taste     drcken  
+
+Wiedergabe eines gespeicherten Jobs mit Taste   
+
+Widergabe abbrechen mit Taste      und weiter mit Taste
+
+mit der Taste  kann der Text vershoben werden 
+
+
+
+Sonderzeichen :     | "  $ % & / ( ) = ?  * + ' # _ -
+                  . : , ; 
+
+
+Lschen eines Speichers mit Taste    und entsprechende Nr.
+des Speichers whlen
+
+
+
@@ -0,0 +1,93 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<html><body><pre><!-- head.6788:  2=, size= 3574, 0x80, words=   72   96 1008   96 1008  108  144  240  588  720
+--><!--
+[2b d6 40 f2 7e ae 0d 80 48 00 60 00 f0 03 60 00
+ f0 03 6c 00 90 00 f0 00 4c 02 d0 02 00 00 00 00
+ 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
+ 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00
+ 00 00 00 00 00 00 d6 2b]-->
+                         <strong><u>T</strong>  <strong>E</strong>  <strong>S</strong>  <strong>T</strong></u> 
+ 
+                            der 
+        
+              I B M - Bildschirmschreibmaschine                          
+------------------------------------------------------------------- 
+        
+ 
+Mit der Taste <strong>Menü</strong> kann folgendes gewählt werden :
+                   
+    Verzeichnis - Liste - Seitenformat - Hintergrund -  
+    Diskette (Verzeichnis ansehen)  - Kopieren (auf Diskette)
+ 
+ 
+                   
+Die Schreibmaschine verfügt über die Taste <strong>Code</strong> welche unter
+anderem, wie nachstehend aufgeführt, angewandt werden kann :
+ 
+ 
+    Einstellen des Zeilenabstandes       Taste Code + -
+ 
+    Tastaturklicker                      Taste Code + S
+ 
+    Ein-/Ausschalten der Großschreibung  Taste Code + N 
+
+    Löschen von einem Textabsatz oder    Taste Code + K 
+    kompletten Text                      dann wählen und 
+                                         Zeilenschaltung  
+                                                         
+    Kopieren                             Taste Code + K  
+                                         dann wählen und 
+                                         Zeilenschaltung 
+ 
+    Versetzen                            Taste Code + K
+                                         dann wählen und 
+                                         Zeilenschaltung 
+ 
+    Automatisches Unterstreichen         Taste Code + U 
+
+    Wortweises Unterstreichen            Taste Code + I 
+ 
+    Fettdrucken                          Taste Code + B
+ 
+    Wort löschen                         Taste Code +  
+ 
+    Ein-Ausschalten der Automatischen
+    Zeilenschaltung                      Taste Code + R 
+ 
+    Zentrieren zwischen Anfangs- und 
+    Endrand                              Taste Code + C 
+ 
+    Rechtsbündiges Schreiben am Endrand  Taste Code + O 
+ 
+    Anschlagstärke                       Taste Code + Q 
+ 
+ 
+ 
+Randeinstellungen, Leertaste, Rücktaste mit Tasten  -  o. -
+ 
+Tabulatorstopps setzen mit T+ und löschen mit T-
+                                                       
+Rückkehr zur ursprünglichen Schreibposition mit Taste
+ 
+Eingabe in den Speicher mit Taste 
+ 
+Speicher schließen nochmals die Taste     drücken  
+        
+Wiedergabe eines gespeicherten Jobs mit Taste   
+
+Widergabe abbrechen mit Taste      und weiter mit Taste
+ 
+mit der Taste  kann der Text vershoben werden 
+
+ 
+ 
+Sonderzeichen :   µ ° | &quot; § $ % &amp; / ( ) = ?  * + &apos; # _ -
+                  . : , ; 
+
+
+Löschen eines Speichers mit Taste    und entsprechende Nr.
+des Speichers wählen
+
+
+
+</pre></body></html>
@@ -0,0 +1 @@
+Files test/IBM1.prev.tst and test/IBM7.tmp/DOCUM002.TXT.xml are identical
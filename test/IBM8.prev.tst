@@ -0,0 +1,2 @@
+Files test/IBM1.prev.tst and test/IBM8.html.tmp are identical
+Files test/IBM8.text.tmp and test/IBM8.copy.tmp are identical